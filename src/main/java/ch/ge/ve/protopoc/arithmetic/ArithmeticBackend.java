@@ -0,0 +1,92 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Service provider interface for the modular arithmetic used by the protocol.
+ * <p>The backend in use is held by {@link BigIntegerArithmetic}, and chosen by {@link ArithmeticBackends}.</p>
+ */
+public interface ArithmeticBackend {
+    /**
+     * @return the name of the backend, as used for its configuration
+     */
+    String getName();
+
+    /**
+     * Modular exponentiation, suitable for secret values: constant-time if the backend supports it.
+     *
+     * @param base     the base
+     * @param exponent the exponent, possibly negative
+     * @param modulus  the modulus
+     * @return <tt>base^exponent mod modulus</tt>
+     */
+    BigInteger modExp(BigInteger base, BigInteger exponent, BigInteger modulus);
+
+    /**
+     * Modular exponentiation, for public values only: the running time may depend on the base and the exponent.
+     *
+     * @param base     the base
+     * @param exponent the exponent, possibly negative
+     * @param modulus  the modulus
+     * @return <tt>base^exponent mod modulus</tt>
+     */
+    default BigInteger modExpPublic(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        return modExp(base, exponent, modulus);
+    }
+
+    /**
+     * @param value   the value to be inverted
+     * @param modulus the modulus
+     * @return <tt>value^-1 mod modulus</tt>
+     */
+    BigInteger modInverse(BigInteger value, BigInteger modulus);
+
+    /**
+     * @param value the numerator
+     * @param n     the denominator, an odd positive integer
+     * @return the Jacobi symbol <tt>(value/n)</tt>
+     */
+    int jacobiSymbol(BigInteger value, BigInteger n);
+
+    /**
+     * @param bases     the bases
+     * @param exponents the exponents, all non-negative
+     * @param modulus   the modulus
+     * @return <tt>&prod; bases_i^exponents_i mod modulus</tt>
+     */
+    default BigInteger multiExp(List<BigInteger> bases, List<BigInteger> exponents, BigInteger modulus) {
+        return MultiExponentiation.parallelMultiExp(bases, exponents, modulus);
+    }
+
+    /**
+     * @param base    the fixed base
+     * @param modulus the modulus
+     * @param order   the order of the subgroup containing the base
+     * @return a precomputed table for the exponentiations of the given base
+     */
+    default FixedBaseExponentiation fixedBase(BigInteger base, BigInteger modulus, BigInteger order) {
+        return new FixedBaseExponentiation(base, modulus, order);
+    }
+}
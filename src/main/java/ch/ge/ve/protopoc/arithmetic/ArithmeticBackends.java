@@ -0,0 +1,120 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selection of the {@link ArithmeticBackend} to be used.
+ * <p>The backend is chosen through the system property {@value #BACKEND_PROPERTY}, which accepts the name of a
+ * backend (<tt>jdk</tt>, <tt>gmp</tt> or <tt>montgomery</tt>) or <tt>benchmark</tt>, to pick the fastest available
+ * backend with a short micro-benchmark at startup. By default, LibGMP is used if it is available, and the JDK
+ * otherwise.</p>
+ */
+public class ArithmeticBackends {
+    public static final String BACKEND_PROPERTY = "protopoc.arithmetic.backend";
+    public static final String BENCHMARK = "benchmark";
+    private static final Logger log = LoggerFactory.getLogger(ArithmeticBackends.class);
+    private static final int BENCHMARK_BIT_LENGTH = 2048;
+    private static final int BENCHMARK_WARM_UP = 10;
+    private static final int BENCHMARK_ITERATIONS = 20;
+
+    /**
+     * @return the backends which may be used on this host
+     */
+    public static List<ArithmeticBackend> available() {
+        List<ArithmeticBackend> backends = new ArrayList<>();
+        if (GmpArithmeticBackend.isAvailable()) {
+            backends.add(new GmpArithmeticBackend());
+        }
+        backends.add(new JdkArithmeticBackend());
+        backends.add(new MontgomeryArithmeticBackend());
+        return backends;
+    }
+
+    /**
+     * @param name the name of the backend
+     * @return the corresponding backend
+     * @throws IllegalArgumentException if no such backend is available
+     */
+    public static ArithmeticBackend byName(String name) {
+        return available().stream().filter(b -> b.getName().equals(name)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown or unavailable arithmetic backend: " + name));
+    }
+
+    /**
+     * @return the backend selected by the system property {@value #BACKEND_PROPERTY}, or the default one
+     */
+    public static ArithmeticBackend fromConfiguration() {
+        String configured = System.getProperty(BACKEND_PROPERTY);
+        ArithmeticBackend backend;
+        if (configured == null) {
+            backend = available().get(0);
+        } else if (BENCHMARK.equals(configured)) {
+            backend = fastest(available());
+        } else {
+            backend = byName(configured);
+        }
+        log.info("Using arithmetic backend: " + backend.getName());
+        return backend;
+    }
+
+    /**
+     * Time a fixed series of modular exponentiations with each backend, and return the fastest
+     *
+     * @param backends the candidate backends
+     * @return the backend which performed the exponentiations the fastest
+     */
+    public static ArithmeticBackend fastest(List<ArithmeticBackend> backends) {
+        Random random = new Random(0L);
+        BigInteger modulus = new BigInteger(BENCHMARK_BIT_LENGTH, random).setBit(BENCHMARK_BIT_LENGTH - 1).setBit(0);
+        List<BigInteger> bases = new ArrayList<>();
+        List<BigInteger> exponents = new ArrayList<>();
+        for (int i = 0; i < BENCHMARK_WARM_UP + BENCHMARK_ITERATIONS; i++) {
+            bases.add(new BigInteger(BENCHMARK_BIT_LENGTH - 1, random));
+            exponents.add(new BigInteger(BENCHMARK_BIT_LENGTH - 1, random));
+        }
+
+        return backends.stream().min(Comparator.comparingLong(backend -> {
+            for (int i = 0; i < BENCHMARK_WARM_UP; i++) {
+                backend.modExp(bases.get(i), exponents.get(i), modulus);
+            }
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            for (int i = BENCHMARK_WARM_UP; i < bases.size(); i++) {
+                backend.modExp(bases.get(i), exponents.get(i), modulus);
+            }
+            long elapsed = stopwatch.elapsed(TimeUnit.MICROSECONDS);
+            log.info(String.format("Arithmetic backend %s: %d modular exponentiations in %dus",
+                    backend.getName(), BENCHMARK_ITERATIONS, elapsed));
+            return elapsed;
+        })).orElseThrow(() -> new IllegalArgumentException("No arithmetic backend to choose from"));
+    }
+}
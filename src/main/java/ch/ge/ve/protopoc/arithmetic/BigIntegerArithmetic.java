@@ -21,59 +21,222 @@
 
 package ch.ge.ve.protopoc.arithmetic;
 
-import ch.ge.ve.protopoc.service.support.JacobiSymbol;
-import com.squareup.jnagmp.Gmp;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- * This class provides simplified access to LibGMP if it is loaded, with fallback to vanilla Java BigInteger methods
+ * This class provides simplified access to the configured {@link ArithmeticBackend} (LibGMP if it is loaded, with
+ * fallback to vanilla Java BigInteger methods, unless configured otherwise through {@link ArithmeticBackends})
  */
 public class BigIntegerArithmetic {
-    private static final Logger log = LoggerFactory.getLogger(BigIntegerArithmetic.class);
-    private static final JacobiSymbol jacobiSymbol = new JacobiSymbol();
-    private static boolean gmpLoaded = false;
+    private static final int MIN_INVERSION_CHUNK_SIZE = 256;
+    private static final Cache<List<BigInteger>, FixedBaseExponentiation> fixedBases =
+            CacheBuilder.newBuilder().maximumSize(16).build();
+    private static volatile CountingArithmeticBackend backend =
+            new CountingArithmeticBackend(ArithmeticBackends.fromConfiguration());
 
-    static {
-        try {
-            Gmp.checkLoaded();
-            gmpLoaded = true;
-        } catch (UnsatisfiedLinkError e) {
-            log.error("LibGMP is not available, computations will be much slower");
-        }
+    /**
+     * @return the backend currently in use, with its operation counts
+     */
+    public static CountingArithmeticBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Replace the backend in use. The cached fixed-base tables are discarded.
+     *
+     * @param arithmeticBackend the new backend
+     */
+    public static void setBackend(ArithmeticBackend arithmeticBackend) {
+        backend = new CountingArithmeticBackend(arithmeticBackend);
+        fixedBases.invalidateAll();
+    }
+
+    /**
+     * Modular exponentiation involving secret values (secret exponent, or secret base): constant-time if the backend
+     * supports it.
+     *
+     * @param base     the base
+     * @param exponent the exponent, possibly negative
+     * @param modulus  the modulus
+     * @return <tt>base^exponent mod modulus</tt>
+     */
+    public static BigInteger modExpSecret(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        return backend.modExp(base, exponent, modulus);
     }
 
-    public static BigInteger modExp(BigInteger base, BigInteger exponent, BigInteger modulus) {
-        if (gmpLoaded) {
-            if (exponent.signum() < 0) {
-                return Gmp.modPowSecure(modInverse(base, modulus), exponent.negate(), modulus);
-            } else {
-                return Gmp.modPowSecure(base, exponent, modulus);
-            }
-        } else {
-            return base.modPow(exponent, modulus);
+    /**
+     * Modular exponentiation of public values, <em>e.g.</em> in proof verifications: the faster, variable-time,
+     * implementation of the backend is used.
+     * <p>Both the base and the exponent must be public, and so must be the way they were chosen: the permuted challenges
+     * <tt>u'_i</tt> of the shuffle proof, for instance, are public values, but their order reveals the secret
+     * permutation.</p>
+     *
+     * @param base     the base
+     * @param exponent the exponent, possibly negative
+     * @param modulus  the modulus
+     * @return <tt>base^exponent mod modulus</tt>
+     */
+    public static BigInteger modExpPublic(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        return backend.modExpPublic(base, exponent, modulus);
+    }
+
+    /**
+     * Modular exponentiation of public values, for a base in the subgroup of order <tt>order</tt>.
+     * <p>Negative exponents of the size of the order are reduced modulo the order, which saves the inversion of the
+     * base. Short negative exponents (typically the challenges of the NIZKPs, of tau bits) still invert the base, as
+     * an inversion costs much less than the exponentiation by a full-size exponent it would avoid.</p>
+     *
+     * @param base     the base, an element of the subgroup of order <tt>order</tt>
+     * @param exponent the exponent, possibly negative
+     * @param modulus  the modulus
+     * @param order    the order of the subgroup containing the base
+     * @return <tt>base^exponent mod modulus</tt>
+     */
+    public static BigInteger modExpPublic(BigInteger base, BigInteger exponent, BigInteger modulus,
+                                          BigInteger order) {
+        if (exponent.signum() < 0 && 2 * exponent.bitLength() >= order.bitLength()) {
+            return backend.modExpPublic(base, exponent.mod(order), modulus);
         }
+        return backend.modExpPublic(base, exponent, modulus);
     }
 
     public static BigInteger modInverse(BigInteger value, BigInteger modulus) {
-        if (gmpLoaded) {
-            return Gmp.modInverse(value, modulus);
-        } else {
-            return value.modInverse(modulus);
+        return backend.modInverse(value, modulus);
+    }
+
+    /**
+     * Compute <tt>&prod; bases_i^exponents_i mod modulus</tt>
+     * <p>The running time depends on the exponents: this is for public exponents only.</p>
+     *
+     * @param bases     the bases
+     * @param exponents the exponents, all non-negative
+     * @param modulus   the modulus
+     * @return the product of the powers
+     * @see MultiExponentiation
+     */
+    public static BigInteger multiExp(List<BigInteger> bases, List<BigInteger> exponents, BigInteger modulus) {
+        return backend.multiExp(bases, exponents, modulus);
+    }
+
+    /**
+     * Invert all the given values at once, using Montgomery's trick: a single modular inversion, and three
+     * multiplications per value.
+     *
+     * @param values  the values to be inverted
+     * @param modulus the modulus
+     * @return the list of the inverses, in the same order as the values
+     * @throws ArithmeticException if one of the values is not invertible
+     */
+    public static List<BigInteger> batchModInverse(List<BigInteger> values, BigInteger modulus) {
+        int n = values.size();
+        if (n == 0) {
+            return new ArrayList<>();
         }
+        // prefix products: prefix[i] = values[0] * ... * values[i]
+        BigInteger[] prefix = new BigInteger[n];
+        prefix[0] = values.get(0).mod(modulus);
+        for (int i = 1; i < n; i++) {
+            prefix[i] = prefix[i - 1].multiply(values.get(i)).mod(modulus);
+        }
+
+        BigInteger inverse = modInverse(prefix[n - 1], modulus);
+        BigInteger[] inverses = new BigInteger[n];
+        for (int i = n - 1; i > 0; i--) {
+            inverses[i] = inverse.multiply(prefix[i - 1]).mod(modulus);
+            inverse = inverse.multiply(values.get(i)).mod(modulus);
+        }
+        inverses[0] = inverse;
+        return Arrays.asList(inverses);
+    }
+
+    /**
+     * Invert all the given values, splitting them in chunks which are each inverted in parallel with
+     * {@link #batchModInverse(List, BigInteger)}.
+     *
+     * @param values  the values to be inverted
+     * @param modulus the modulus
+     * @return the list of the inverses, in the same order as the values
+     * @throws ArithmeticException if one of the values is not invertible
+     */
+    public static List<BigInteger> parallelBatchModInverse(List<BigInteger> values, BigInteger modulus) {
+        int n = values.size();
+        int chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), n / MIN_INVERSION_CHUNK_SIZE));
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(k -> batchModInverse(values.subList((int) ((long) n * k / chunks),
+                        (int) ((long) n * (k + 1) / chunks)), modulus))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
     }
 
     public static int jacobiSymbol(BigInteger value, BigInteger n) {
-        if (gmpLoaded) {
-            return Gmp.kronecker(value, n);
-        } else {
-            return jacobiSymbol.computeJacobiSymbol(value, n);
+        return backend.jacobiSymbol(value, n);
+    }
+
+    /**
+     * Get the fixed-base exponentiation table for the given base, computing it on first use.
+     * <p>Tables are shared by value: two equal bases (for instance two instances of the same public key) use the
+     * same table. Only a small number of tables are retained.</p>
+     *
+     * @param base    the fixed base
+     * @param modulus the modulus
+     * @param order   the order of the subgroup containing the base
+     * @return the (possibly cached) fixed-base exponentiation table
+     */
+    public static FixedBaseExponentiation fixedBase(BigInteger base, BigInteger modulus, BigInteger order) {
+        try {
+            return fixedBases.get(Arrays.asList(base, modulus, order),
+                    () -> backend.fixedBase(base, modulus, order));
+        } catch (ExecutionException e) {
+            throw new IllegalArgumentException("Could not build the fixed-base exponentiation table", e.getCause());
         }
     }
 
+    /**
+     * Compute <tt>base^exponent mod modulus</tt> for a base which is raised to many exponents, using a cached
+     * precomputed table.
+     * <p>The running time depends on the exponent: this is for public exponents only (verification of proofs), secret
+     * exponents must go through {@link #modExpFixedBaseSecret(BigInteger, BigInteger, BigInteger, BigInteger)}.</p>
+     *
+     * @param base     the fixed base
+     * @param exponent the exponent
+     * @param modulus  the modulus
+     * @param order    the order of the subgroup containing the base
+     * @return <tt>base^exponent mod modulus</tt>
+     * @see FixedBaseExponentiation
+     */
+    public static BigInteger modExpFixedBase(BigInteger base, BigInteger exponent, BigInteger modulus,
+                                             BigInteger order) {
+        return fixedBase(base, modulus, order).modExp(exponent);
+    }
+
+    /**
+     * Compute <tt>base^exponent mod modulus</tt> for a public base which is raised to many secret exponents (typically
+     * the generators and the public key, raised to random values), using a cached precomputed table and constant-time
+     * table lookups.
+     *
+     * @param base     the fixed base, a public value
+     * @param exponent the secret exponent
+     * @param modulus  the modulus
+     * @param order    the order of the subgroup containing the base
+     * @return <tt>base^exponent mod modulus</tt>
+     * @see FixedBaseExponentiation#modExpSecret(BigInteger)
+     */
+    public static BigInteger modExpFixedBaseSecret(BigInteger base, BigInteger exponent, BigInteger modulus,
+                                                   BigInteger order) {
+        return fixedBase(base, modulus, order).modExpSecret(exponent);
+    }
+
     public static boolean isGmpLoaded() {
-        return gmpLoaded;
+        return GmpArithmeticBackend.isAvailable();
     }
 }
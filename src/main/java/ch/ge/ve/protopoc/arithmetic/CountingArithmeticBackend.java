@@ -0,0 +1,135 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import java.math.BigInteger;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of an {@link ArithmeticBackend}, recording the number of operations performed through it
+ */
+public class CountingArithmeticBackend implements ArithmeticBackend {
+    /**
+     * The operations being counted
+     */
+    public enum Operation {
+        MOD_EXP, MOD_EXP_PUBLIC, MOD_INVERSE, JACOBI_SYMBOL, MULTI_EXP, FIXED_BASE_TABLE, FIXED_BASE_EXP,
+        FIXED_BASE_SECRET_EXP
+    }
+
+    private final ArithmeticBackend delegate;
+    private final Map<Operation, LongAdder> counters = new EnumMap<>(Operation.class);
+
+    public CountingArithmeticBackend(ArithmeticBackend delegate) {
+        this.delegate = delegate;
+        for (Operation operation : Operation.values()) {
+            counters.put(operation, new LongAdder());
+        }
+    }
+
+    public ArithmeticBackend getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public BigInteger modExp(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        counters.get(Operation.MOD_EXP).increment();
+        return delegate.modExp(base, exponent, modulus);
+    }
+
+    @Override
+    public BigInteger modExpPublic(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        counters.get(Operation.MOD_EXP_PUBLIC).increment();
+        return delegate.modExpPublic(base, exponent, modulus);
+    }
+
+    @Override
+    public BigInteger modInverse(BigInteger value, BigInteger modulus) {
+        counters.get(Operation.MOD_INVERSE).increment();
+        return delegate.modInverse(value, modulus);
+    }
+
+    @Override
+    public int jacobiSymbol(BigInteger value, BigInteger n) {
+        counters.get(Operation.JACOBI_SYMBOL).increment();
+        return delegate.jacobiSymbol(value, n);
+    }
+
+    @Override
+    public BigInteger multiExp(List<BigInteger> bases, List<BigInteger> exponents, BigInteger modulus) {
+        counters.get(Operation.MULTI_EXP).increment();
+        return delegate.multiExp(bases, exponents, modulus);
+    }
+
+    @Override
+    public FixedBaseExponentiation fixedBase(BigInteger base, BigInteger modulus, BigInteger order) {
+        counters.get(Operation.FIXED_BASE_TABLE).increment();
+        return new CountingFixedBaseExponentiation(delegate.fixedBase(base, modulus, order));
+    }
+
+    /**
+     * @return the number of operations performed so far, by operation
+     */
+    public Map<Operation, Long> getCounts() {
+        return Stream.of(Operation.values()).collect(Collectors.toMap(o -> o, o -> counters.get(o).sum(),
+                (a, b) -> a, () -> new EnumMap<>(Operation.class)));
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " " + getCounts();
+    }
+
+    /**
+     * Decorator of a {@link FixedBaseExponentiation}, counting the exponentiations performed with its table
+     */
+    private final class CountingFixedBaseExponentiation extends FixedBaseExponentiation {
+        private final FixedBaseExponentiation delegate;
+
+        CountingFixedBaseExponentiation(FixedBaseExponentiation delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public BigInteger modExp(BigInteger exponent) {
+            counters.get(Operation.FIXED_BASE_EXP).increment();
+            return delegate.modExp(exponent);
+        }
+
+        @Override
+        public BigInteger modExpSecret(BigInteger exponent) {
+            counters.get(Operation.FIXED_BASE_SECRET_EXP).increment();
+            return delegate.modExpSecret(exponent);
+        }
+    }
+}
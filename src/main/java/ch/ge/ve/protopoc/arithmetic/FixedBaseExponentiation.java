@@ -0,0 +1,247 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Fixed-base exponentiation engine, for bases which are raised to many different exponents (typically the generators
+ * of the groups and the system's public key).
+ * <p>The exponent is split into windows of <tt>w</tt> bits. For each window position <tt>i</tt>, the table holds the
+ * values <tt>base^(j * 2^(w * i)) mod modulus</tt>, for <tt>1 &le; j &lt; 2^w</tt>. An exponentiation then costs
+ * one modular multiplication per non-zero window, and no squaring at all.</p>
+ * <p>The table lookups of {@link #modExp(BigInteger)} depend on the value of the exponent: unlike
+ * {@link BigIntegerArithmetic#modExpSecret(BigInteger, BigInteger, BigInteger)} backed by LibGMP
+ * ({@link GmpArithmeticBackend}), this is not a constant-time implementation, and it must only be used with public
+ * exponents. Secret exponents go through {@link #modExpSecret(BigInteger)}, which reads every entry of every window
+ * from a copy of the table laid out as fixed-length words, and selects the right one with a mask: the memory accesses
+ * and the number of multiplications do not depend on the exponent.</p>
+ * <p>It may be extended by decorators (such as the one of {@link CountingArithmeticBackend}), which share the table of
+ * the instance they decorate.</p>
+ */
+public class FixedBaseExponentiation {
+    private final BigInteger base;
+    private final BigInteger modulus;
+    private final BigInteger order;
+    private final int windowSize;
+    private final int exponentBitLength;
+    private final BigInteger[][] table;
+    private final int[][][] words;
+
+    /**
+     * Create the precomputed table for the given base, with a window size chosen according to the size of the group
+     *
+     * @param base    the fixed base, an element of the subgroup of order <tt>order</tt>
+     * @param modulus the modulus
+     * @param order   the order of the subgroup containing the base
+     */
+    public FixedBaseExponentiation(BigInteger base, BigInteger modulus, BigInteger order) {
+        this(base, modulus, order, defaultWindowSize(order.bitLength()));
+    }
+
+    /**
+     * Create the precomputed table for the given base
+     *
+     * @param base       the fixed base, an element of the subgroup of order <tt>order</tt>
+     * @param modulus    the modulus
+     * @param order      the order of the subgroup containing the base
+     * @param windowSize the number of bits of the exponent handled by each table lookup
+     */
+    public FixedBaseExponentiation(BigInteger base, BigInteger modulus, BigInteger order, int windowSize) {
+        Preconditions.checkArgument(modulus.signum() > 0, "The modulus must be positive");
+        Preconditions.checkArgument(order.signum() > 0, "The order must be positive");
+        Preconditions.checkArgument(windowSize >= 1 && windowSize <= 16, "The window size must be in [1, 16]");
+        this.base = base.mod(modulus);
+        this.modulus = modulus;
+        this.order = order;
+        this.windowSize = windowSize;
+        this.exponentBitLength = order.bitLength();
+        this.table = computeTable();
+        this.words = computeWords();
+    }
+
+    /**
+     * Create a new instance sharing the table of the given one
+     *
+     * @param other the instance whose table is reused
+     */
+    protected FixedBaseExponentiation(FixedBaseExponentiation other) {
+        this.base = other.base;
+        this.modulus = other.modulus;
+        this.order = other.order;
+        this.windowSize = other.windowSize;
+        this.exponentBitLength = other.exponentBitLength;
+        this.table = other.table;
+        this.words = other.words;
+    }
+
+    private static int defaultWindowSize(int exponentBitLength) {
+        return exponentBitLength >= 512 ? 6 : 4;
+    }
+
+    private BigInteger[][] computeTable() {
+        int windowCount = (exponentBitLength + windowSize - 1) / windowSize;
+        int entriesPerWindow = (1 << windowSize) - 1;
+        BigInteger[][] powers = new BigInteger[windowCount][entriesPerWindow];
+
+        BigInteger windowBase = base;
+        for (int i = 0; i < windowCount; i++) {
+            powers[i][0] = windowBase;
+            for (int j = 1; j < entriesPerWindow; j++) {
+                powers[i][j] = powers[i][j - 1].multiply(windowBase).mod(modulus);
+            }
+            // windowBase^(2^w) = windowBase^(2^w - 1) * windowBase
+            windowBase = powers[i][entriesPerWindow - 1].multiply(windowBase).mod(modulus);
+        }
+        return powers;
+    }
+
+    /**
+     * The table as little-endian words of the length of the modulus, with an additional entry <tt>1</tt> at index 0 of
+     * each window, so that every window costs one multiplication whatever its digit.
+     */
+    private int[][][] computeWords() {
+        int wordCount = (modulus.bitLength() + 31) / 32;
+        int[][][] windows = new int[table.length][table[0].length + 1][];
+        for (int i = 0; i < table.length; i++) {
+            windows[i][0] = toWords(BigInteger.ONE, wordCount);
+            for (int j = 0; j < table[i].length; j++) {
+                windows[i][j + 1] = toWords(table[i][j], wordCount);
+            }
+        }
+        return windows;
+    }
+
+    private static int[] toWords(BigInteger value, int wordCount) {
+        int[] words = new int[wordCount];
+        for (int k = 0; k < wordCount; k++) {
+            words[k] = value.shiftRight(32 * k).intValue();
+        }
+        return words;
+    }
+
+    private static BigInteger fromWords(int[] words) {
+        byte[] bytes = new byte[4 * words.length + 1];
+        for (int k = 0; k < words.length; k++) {
+            int offset = bytes.length - 4 * (k + 1);
+            bytes[offset] = (byte) (words[k] >>> 24);
+            bytes[offset + 1] = (byte) (words[k] >>> 16);
+            bytes[offset + 2] = (byte) (words[k] >>> 8);
+            bytes[offset + 3] = (byte) words[k];
+        }
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * Compute <tt>base^exponent mod modulus</tt>.
+     * <p>Negative exponents are reduced modulo the order of the base, while exponents larger than the table are handed
+     * over to {@link BigIntegerArithmetic#modExpSecret(BigInteger, BigInteger, BigInteger)}.</p>
+     *
+     * @param exponent the exponent
+     * @return <tt>base^exponent mod modulus</tt>
+     */
+    public BigInteger modExp(BigInteger exponent) {
+        BigInteger e = exponent.signum() < 0 ? exponent.mod(order) : exponent;
+        if (e.bitLength() > exponentBitLength) {
+            return BigIntegerArithmetic.modExpSecret(base, e, modulus);
+        }
+
+        BigInteger result = BigInteger.ONE;
+        for (int i = 0; i < table.length; i++) {
+            int digit = window(e, i);
+            if (digit != 0) {
+                result = result.multiply(table[i][digit - 1]).mod(modulus);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute <tt>base^exponent mod modulus</tt> for a secret exponent.
+     * <p>Each window digit selects its entry by a constant-time scan of the whole window: every entry is read, and
+     * combined into the result under a mask which is all ones for the selected entry only. Each window then costs
+     * exactly one modular multiplication, including the windows whose digit is 0.</p>
+     * <p>Negative exponents are reduced modulo the order of the base, while exponents larger than the table are handed
+     * over to {@link BigIntegerArithmetic#modExpSecret(BigInteger, BigInteger, BigInteger)}.</p>
+     *
+     * @param exponent the secret exponent
+     * @return <tt>base^exponent mod modulus</tt>
+     */
+    public BigInteger modExpSecret(BigInteger exponent) {
+        BigInteger e = exponent.signum() < 0 ? exponent.mod(order) : exponent;
+        if (e.bitLength() > exponentBitLength) {
+            return BigIntegerArithmetic.modExpSecret(base, e, modulus);
+        }
+
+        int[] exponentWords = toWords(e, (words.length * windowSize + 31) / 32);
+        int[] selected = new int[words[0][0].length];
+        BigInteger result = BigInteger.ONE;
+        for (int i = 0; i < words.length; i++) {
+            int digit = window(exponentWords, i);
+            Arrays.fill(selected, 0);
+            for (int j = 0; j < words[i].length; j++) {
+                // all ones if j == digit, all zeros otherwise, without branching on the digit
+                int mask = ((j ^ digit) - 1) >> 31;
+                int[] entry = words[i][j];
+                for (int k = 0; k < selected.length; k++) {
+                    selected[k] |= entry[k] & mask;
+                }
+            }
+            result = result.multiply(fromWords(selected)).mod(modulus);
+        }
+        return result;
+    }
+
+    private int window(int[] exponentWords, int i) {
+        int offset = i * windowSize;
+        int digit = 0;
+        for (int k = windowSize - 1; k >= 0; k--) {
+            int bit = offset + k;
+            digit = (digit << 1) | ((exponentWords[bit >>> 5] >>> (bit & 31)) & 1);
+        }
+        return digit;
+    }
+
+    private int window(BigInteger e, int i) {
+        int offset = i * windowSize;
+        int digit = 0;
+        for (int k = windowSize - 1; k >= 0; k--) {
+            digit = (digit << 1) | (e.testBit(offset + k) ? 1 : 0);
+        }
+        return digit;
+    }
+
+    public BigInteger getBase() {
+        return base;
+    }
+
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    public BigInteger getOrder() {
+        return order;
+    }
+}
@@ -0,0 +1,87 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import com.squareup.jnagmp.Gmp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic backend delegating to LibGMP, through jnagmp. Exponentiations are constant-time, except for
+ * {@link #modExpPublic(BigInteger, BigInteger, BigInteger)}.
+ */
+public class GmpArithmeticBackend implements ArithmeticBackend {
+    public static final String NAME = "gmp";
+    private static final Logger log = LoggerFactory.getLogger(GmpArithmeticBackend.class);
+    private static boolean gmpLoaded = false;
+
+    static {
+        try {
+            Gmp.checkLoaded();
+            gmpLoaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            log.error("LibGMP is not available, computations will be much slower");
+        }
+    }
+
+    /**
+     * @return true if LibGMP could be loaded
+     */
+    public static boolean isAvailable() {
+        return gmpLoaded;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public BigInteger modExp(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        if (exponent.signum() < 0) {
+            return Gmp.modPowSecure(modInverse(base, modulus), exponent.negate(), modulus);
+        } else {
+            return Gmp.modPowSecure(base, exponent, modulus);
+        }
+    }
+
+    @Override
+    public BigInteger modExpPublic(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        if (exponent.signum() < 0) {
+            return Gmp.modPowInsecure(modInverse(base, modulus), exponent.negate(), modulus);
+        } else {
+            return Gmp.modPowInsecure(base, exponent, modulus);
+        }
+    }
+
+    @Override
+    public BigInteger modInverse(BigInteger value, BigInteger modulus) {
+        return Gmp.modInverse(value, modulus);
+    }
+
+    @Override
+    public int jacobiSymbol(BigInteger value, BigInteger n) {
+        return Gmp.kronecker(value, n);
+    }
+}
@@ -0,0 +1,54 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import ch.ge.ve.protopoc.service.support.JacobiSymbol;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic backend relying solely on the methods of {@link BigInteger}
+ */
+public class JdkArithmeticBackend implements ArithmeticBackend {
+    public static final String NAME = "jdk";
+    private final JacobiSymbol jacobiSymbol = new JacobiSymbol();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public BigInteger modExp(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        return base.modPow(exponent, modulus);
+    }
+
+    @Override
+    public BigInteger modInverse(BigInteger value, BigInteger modulus) {
+        return value.modInverse(modulus);
+    }
+
+    @Override
+    public int jacobiSymbol(BigInteger value, BigInteger n) {
+        return jacobiSymbol.computeJacobiSymbol(value, n);
+    }
+}
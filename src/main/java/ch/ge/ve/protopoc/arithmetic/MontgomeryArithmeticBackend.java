@@ -0,0 +1,86 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import ch.ge.ve.protopoc.service.support.JacobiSymbol;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.math.BigInteger;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Pure Java arithmetic backend, performing exponentiations with odd moduli in Montgomery form on 32-bit limbs (see
+ * {@link MontgomeryModulus}), for hosts where LibGMP cannot be loaded: with a fixed window and masked table reads for
+ * the secret exponents, and with a sliding window for the public ones.
+ * <p>The Montgomery constants are computed once per modulus and kept for the (few) moduli in use.</p>
+ */
+public class MontgomeryArithmeticBackend implements ArithmeticBackend {
+    public static final String NAME = "montgomery";
+    private final JacobiSymbol jacobiSymbol = new JacobiSymbol();
+    private final Cache<BigInteger, MontgomeryModulus> moduli = CacheBuilder.newBuilder().maximumSize(8).build();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public BigInteger modExp(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        if (!modulus.testBit(0) || modulus.equals(BigInteger.ONE)) {
+            return base.modPow(exponent, modulus);
+        }
+        if (exponent.signum() < 0) {
+            return modExp(modInverse(base, modulus), exponent.negate(), modulus);
+        }
+        return getMontgomeryModulus(modulus).modExpSecret(base, exponent);
+    }
+
+    @Override
+    public BigInteger modExpPublic(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        if (!modulus.testBit(0) || modulus.equals(BigInteger.ONE)) {
+            return base.modPow(exponent, modulus);
+        }
+        if (exponent.signum() < 0) {
+            return modExpPublic(modInverse(base, modulus), exponent.negate(), modulus);
+        }
+        return getMontgomeryModulus(modulus).modExpPublic(base, exponent);
+    }
+
+    @Override
+    public BigInteger modInverse(BigInteger value, BigInteger modulus) {
+        return value.modInverse(modulus);
+    }
+
+    @Override
+    public int jacobiSymbol(BigInteger value, BigInteger n) {
+        return jacobiSymbol.computeJacobiSymbol(value, n);
+    }
+
+    private MontgomeryModulus getMontgomeryModulus(BigInteger modulus) {
+        try {
+            return moduli.get(modulus, () -> new MontgomeryModulus(modulus));
+        } catch (ExecutionException e) {
+            throw new IllegalArgumentException("Could not compute the Montgomery constants", e.getCause());
+        }
+    }
+}
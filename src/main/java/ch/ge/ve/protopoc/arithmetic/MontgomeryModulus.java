@@ -0,0 +1,378 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Montgomery arithmetic on 32-bit limbs, for a fixed odd modulus <tt>n</tt> of <tt>s</tt> limbs, with
+ * <tt>R = 2^(32 * s)</tt>.
+ * <p>The values are kept as little-endian arrays of 32-bit limbs (stored in <tt>long</tt>s, so that the products need
+ * no masking), in Montgomery form (<tt>x * R mod n</tt>) during a whole exponentiation. The squarings, which make up
+ * most of an exponentiation, only compute half of the cross products.</p>
+ * <p>Instances are immutable and may be shared between threads: each thread works in its own buffers, allocated on
+ * its first exponentiation and reused afterwards, so that apart from the conversions at both ends, an exponentiation
+ * allocates nothing.</p>
+ */
+final class MontgomeryModulus {
+    private static final long LIMB_MASK = 0xFFFFFFFFL;
+    private static final int MAX_WINDOW_SIZE = 6;
+
+    private final BigInteger modulus;
+    private final int size;
+    private final long[] n;
+    private final long nPrime;
+    private final long[] one;
+    private final long[] rSquared;
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * @param modulus the modulus, odd and greater than one
+     */
+    MontgomeryModulus(BigInteger modulus) {
+        Preconditions.checkArgument(modulus.testBit(0) && modulus.compareTo(BigInteger.ONE) > 0,
+                "The modulus must be odd and greater than one");
+        this.modulus = modulus;
+        this.size = (modulus.bitLength() + 31) >>> 5;
+        this.n = toLimbs(modulus, size);
+        this.nPrime = -inverseModWord((int) n[0]) & LIMB_MASK;
+        BigInteger r = BigInteger.ONE.shiftLeft(32 * size);
+        this.one = toLimbs(r.mod(modulus), size);
+        this.rSquared = toLimbs(r.multiply(r).mod(modulus), size);
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(size));
+    }
+
+    BigInteger getModulus() {
+        return modulus;
+    }
+
+    /**
+     * Compute <tt>base^exponent mod n</tt> for a secret exponent, with a fixed window over the bits of the exponent.
+     * <p>The sequence of operations only depends on the bit lengths of the modulus and of the exponent (when the latter
+     * is longer): every window costs the same squarings and one multiplication, the table entry being read with a
+     * masked scan of the whole table, and the final subtraction of the reduction is masked as well.</p>
+     *
+     * @param base     the base
+     * @param exponent the exponent, non-negative
+     * @return <tt>base^exponent mod n</tt>
+     */
+    BigInteger modExpSecret(BigInteger base, BigInteger exponent) {
+        Preconditions.checkArgument(exponent.signum() >= 0, "The exponent must be non-negative");
+        int w = windowSize(modulus.bitLength()) - 1;
+        int windows = (Math.max(exponent.bitLength(), modulus.bitLength()) + w - 1) / w;
+        long[] e = toLimbs(exponent, (windows * w + 31) / 32 + 1);
+        Workspace workspace = workspaces.get();
+        long[][] table = workspace.table;
+        long[] result = workspace.result;
+        long[] selected = workspace.selected;
+        long[] scratch = workspace.scratch;
+
+        // all powers of x, in Montgomery form: 1, x, x^2, ..., x^(2^w - 1)
+        System.arraycopy(one, 0, table[0], 0, size);
+        toMontgomery(base, table[1], scratch);
+        for (int d = 2; d < 1 << w; d++) {
+            multiply(table[d - 1], table[1], table[d], scratch);
+        }
+
+        System.arraycopy(one, 0, result, 0, size);
+        for (int k = windows - 1; k >= 0; k--) {
+            for (int j = 0; j < w; j++) {
+                square(result, result, scratch);
+            }
+            select(table, 1 << w, digit(e, k * w, w), selected);
+            multiply(result, selected, result, scratch);
+        }
+        return fromMontgomery(result, scratch);
+    }
+
+    /**
+     * Compute <tt>base^exponent mod n</tt>, with a sliding window over the bits of the exponent. The running time
+     * depends on the exponent: this must only be used for public exponents.
+     *
+     * @param base     the base
+     * @param exponent the exponent, non-negative
+     * @return <tt>base^exponent mod n</tt>
+     */
+    BigInteger modExpPublic(BigInteger base, BigInteger exponent) {
+        Preconditions.checkArgument(exponent.signum() >= 0, "The exponent must be non-negative");
+        int bitLength = exponent.bitLength();
+        int w = windowSize(bitLength);
+        Workspace workspace = workspaces.get();
+        long[][] oddPowers = workspace.table;
+        long[] result = workspace.result;
+        long[] xSquared = workspace.selected;
+        long[] scratch = workspace.scratch;
+
+        // odd powers of x, in Montgomery form: x, x^3, ..., x^(2^w - 1)
+        toMontgomery(base, oddPowers[0], scratch);
+        square(oddPowers[0], xSquared, scratch);
+        for (int i = 1; i < 1 << (w - 1); i++) {
+            multiply(oddPowers[i - 1], xSquared, oddPowers[i], scratch);
+        }
+
+        System.arraycopy(one, 0, result, 0, size);
+        int i = bitLength - 1;
+        while (i >= 0) {
+            if (!exponent.testBit(i)) {
+                square(result, result, scratch);
+                i--;
+            } else {
+                int l = Math.max(i - w + 1, 0);
+                while (!exponent.testBit(l)) {
+                    l++;
+                }
+                int window = 0;
+                for (int j = i; j >= l; j--) {
+                    window = (window << 1) | (exponent.testBit(j) ? 1 : 0);
+                    square(result, result, scratch);
+                }
+                multiply(result, oddPowers[window >>> 1], result, scratch);
+                i = l - 1;
+            }
+        }
+        return fromMontgomery(result, scratch);
+    }
+
+    private static int windowSize(int exponentBitLength) {
+        if (exponentBitLength > 1024) {
+            return MAX_WINDOW_SIZE;
+        } else if (exponentBitLength > 256) {
+            return 5;
+        } else {
+            return 4;
+        }
+    }
+
+    private void toMontgomery(BigInteger value, long[] result, long[] scratch) {
+        multiply(toLimbs(value.mod(modulus), size), rSquared, result, scratch);
+    }
+
+    private BigInteger fromMontgomery(long[] value, long[] scratch) {
+        // value * 1 * R^-1
+        long[] unit = new long[size];
+        unit[0] = 1;
+        long[] result = new long[size];
+        multiply(value, unit, result, scratch);
+        return fromLimbs(result);
+    }
+
+    /**
+     * Montgomery multiplication, <tt>result = a * b * R^-1 mod n</tt>, computed column by column, each column adding
+     * the products <tt>a_j * b_(i-j)</tt> and <tt>m_j * n_(i-j)</tt> (finely integrated product scanning). The limbs
+     * <tt>m_i</tt> of the multiple of n are chosen so that the lowest <tt>s</tt> columns vanish.
+     * <p>The column sums are accumulated in two words, the low and high halves of the products being added
+     * separately, so that no carry has to be propagated within a column. <tt>result</tt> may be the same array as
+     * <tt>a</tt> or <tt>b</tt>.</p>
+     *
+     * @param a       the first factor, in [0, n)
+     * @param b       the second factor, in [0, n)
+     * @param result  the array receiving the product, of <tt>s</tt> limbs
+     * @param scratch a work buffer of at least <tt>2 * s</tt> limbs
+     */
+    void multiply(long[] a, long[] b, long[] result, long[] scratch) {
+        long[] m = scratch;
+        long low = 0L;
+        long high = 0L;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < i; j++) {
+                long product = a[j] * b[i - j];
+                low += product & LIMB_MASK;
+                high += product >>> 32;
+                product = m[j] * n[i - j];
+                low += product & LIMB_MASK;
+                high += product >>> 32;
+            }
+            long product = a[i] * b[0];
+            low += product & LIMB_MASK;
+            high += product >>> 32;
+            long mi = ((low & LIMB_MASK) * nPrime) & LIMB_MASK;
+            m[i] = mi;
+            product = mi * n[0];
+            low += product & LIMB_MASK;
+            high += product >>> 32;
+            // the low limb is now zero: shift the accumulator to the next column
+            high += low >>> 32;
+            low = high & LIMB_MASK;
+            high >>>= 32;
+        }
+        for (int i = size; i < 2 * size; i++) {
+            for (int j = i - size + 1; j < size; j++) {
+                long product = a[j] * b[i - j];
+                low += product & LIMB_MASK;
+                high += product >>> 32;
+                product = m[j] * n[i - j];
+                low += product & LIMB_MASK;
+                high += product >>> 32;
+            }
+            m[i] = low & LIMB_MASK;
+            high += low >>> 32;
+            low = high & LIMB_MASK;
+            high >>>= 32;
+        }
+        subtractModulus(m, size, low, result);
+    }
+
+    /**
+     * Montgomery squaring, <tt>result = a * a * R^-1 mod n</tt>, computed as {@link #multiply}, but with each cross
+     * product <tt>a_j * a_k</tt> (<tt>j &lt; k</tt>) of a column computed once and doubled.
+     * <p><tt>result</tt> may be the same array as <tt>a</tt>.</p>
+     *
+     * @param a       the value to be squared, in [0, n)
+     * @param result  the array receiving the square, of <tt>s</tt> limbs
+     * @param scratch a work buffer of at least <tt>2 * s</tt> limbs
+     */
+    void square(long[] a, long[] result, long[] scratch) {
+        long[] m = scratch;
+        long low = 0L;
+        long high = 0L;
+        for (int i = 0; i < 2 * size; i++) {
+            int from = Math.max(i - size + 1, 0);
+            long crossLow = 0L;
+            long crossHigh = 0L;
+            for (int j = from, k = i - from; j < k; j++, k--) {
+                long product = a[j] * a[k];
+                crossLow += product & LIMB_MASK;
+                crossHigh += product >>> 32;
+            }
+            low += crossLow << 1;
+            high += crossHigh << 1;
+            if ((i & 1) == 0) {
+                long product = a[i >>> 1] * a[i >>> 1];
+                low += product & LIMB_MASK;
+                high += product >>> 32;
+            }
+            for (int j = from; j < Math.min(i, size); j++) {
+                long product = m[j] * n[i - j];
+                low += product & LIMB_MASK;
+                high += product >>> 32;
+            }
+            if (i < size) {
+                long mi = ((low & LIMB_MASK) * nPrime) & LIMB_MASK;
+                m[i] = mi;
+                long product = mi * n[0];
+                low += product & LIMB_MASK;
+                high += product >>> 32;
+            } else {
+                m[i] = low & LIMB_MASK;
+            }
+            high += low >>> 32;
+            low = high & LIMB_MASK;
+            high >>>= 32;
+        }
+        subtractModulus(m, size, low, result);
+    }
+
+    /**
+     * Reduce a value lower than <tt>2n</tt>, held in <tt>s</tt> limbs from <tt>offset</tt> and an extra top limb,
+     * subtracting n once if needed. The subtraction is always computed, and its result kept or discarded with a mask.
+     */
+    private void subtractModulus(long[] t, int offset, long top, long[] result) {
+        long borrow = 0L;
+        for (int j = 0; j < size; j++) {
+            long difference = t[offset + j] - n[j] - borrow;
+            borrow = difference >>> 63;
+        }
+        // t >= n, unless the subtraction borrowed from an empty top limb
+        long mask = -(((top - borrow) >>> 63) ^ 1L);
+        borrow = 0L;
+        for (int j = 0; j < size; j++) {
+            long difference = t[offset + j] - (n[j] & mask) - borrow;
+            result[j] = difference & LIMB_MASK;
+            borrow = difference >>> 63;
+        }
+    }
+
+    /**
+     * Copy <tt>table[index]</tt> into <tt>result</tt>, reading all the entries of the table, so that the memory
+     * accesses do not depend on the index.
+     */
+    private void select(long[][] table, int entries, int index, long[] result) {
+        Arrays.fill(result, 0, size, 0L);
+        for (int d = 0; d < entries; d++) {
+            long mask = ((long) ((d ^ index) - 1)) >> 63;
+            long[] entry = table[d];
+            for (int j = 0; j < size; j++) {
+                result[j] |= entry[j] & mask;
+            }
+        }
+    }
+
+    private static int digit(long[] limbs, int offset, int w) {
+        int word = offset >>> 5;
+        int bit = offset & 31;
+        long bits = limbs[word] >>> bit;
+        if (bit + w > 32) {
+            bits |= limbs[word + 1] << (32 - bit);
+        }
+        return (int) bits & ((1 << w) - 1);
+    }
+
+    /**
+     * @param word an odd 32-bit word
+     * @return the inverse of word modulo 2^32, by Newton iteration
+     */
+    private static int inverseModWord(int word) {
+        int inverse = word; // correct on the 3 lowest bits
+        for (int i = 0; i < 4; i++) {
+            inverse *= 2 - word * inverse;
+        }
+        return inverse;
+    }
+
+    static long[] toLimbs(BigInteger value, int size) {
+        byte[] bytes = value.toByteArray();
+        long[] limbs = new long[size];
+        for (int k = 0; k < bytes.length && k < 4 * size; k++) {
+            limbs[k >>> 2] |= (bytes[bytes.length - 1 - k] & 0xFFL) << (8 * (k & 3));
+        }
+        return limbs;
+    }
+
+    static BigInteger fromLimbs(long[] limbs) {
+        byte[] bytes = new byte[4 * limbs.length];
+        for (int k = 0; k < bytes.length; k++) {
+            bytes[bytes.length - 1 - k] = (byte) (limbs[k >>> 2] >>> (8 * (k & 3)));
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * The buffers of one thread: the table of powers, the accumulator, the selected table entry, and the scratch
+     * space of the multiplications.
+     */
+    private static final class Workspace {
+        private final long[][] table;
+        private final long[] result;
+        private final long[] selected;
+        private final long[] scratch;
+
+        private Workspace(int size) {
+            this.table = new long[1 << (MAX_WINDOW_SIZE - 1)][size];
+            this.result = new long[size];
+            this.selected = new long[size];
+            this.scratch = new long[2 * size];
+        }
+    }
+}
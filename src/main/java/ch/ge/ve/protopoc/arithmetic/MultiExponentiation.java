@@ -0,0 +1,191 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Multi-exponentiation, <em>i.e.</em> computation of <tt>&prod; base_i^exponent_i mod modulus</tt> as a whole,
+ * sharing the squarings between all the factors instead of computing each power independently.
+ * <p>Small products use Straus' interleaved windowed method, large ones Pippenger's bucket method.</p>
+ * <p>As with {@link FixedBaseExponentiation}, the operations performed depend on the exponents: this must only be
+ * used with public exponents, <em>i.e.</em> for the verification of proofs, never for their generation.</p>
+ */
+public final class MultiExponentiation {
+    /**
+     * Number of factors from which the bucket method outperforms the interleaved windowed method
+     */
+    static final int PIPPENGER_THRESHOLD = 256;
+    private static final int STRAUS_WINDOW_SIZE = 4;
+    private static final int MIN_PARTITION_SIZE = 64;
+
+    private MultiExponentiation() {
+        // static methods only
+    }
+
+    /**
+     * Compute <tt>&prod; bases_i^exponents_i mod modulus</tt>
+     *
+     * @param bases     the bases
+     * @param exponents the exponents, all non-negative
+     * @param modulus   the modulus
+     * @return the product of the powers
+     */
+    public static BigInteger multiExp(List<BigInteger> bases, List<BigInteger> exponents, BigInteger modulus) {
+        Preconditions.checkArgument(bases.size() == exponents.size(),
+                "There should be as many bases as exponents");
+        Preconditions.checkArgument(exponents.stream().allMatch(e -> e.signum() >= 0),
+                "The exponents must be non-negative");
+        BigInteger[] b = bases.toArray(new BigInteger[0]);
+        BigInteger[] e = exponents.toArray(new BigInteger[0]);
+        return multiExp(b, e, 0, b.length, modulus);
+    }
+
+    /**
+     * Compute <tt>&prod; bases_i^exponents_i mod modulus</tt>, splitting the factors in independent partitions
+     * which are computed in parallel.
+     *
+     * @param bases     the bases
+     * @param exponents the exponents, all non-negative
+     * @param modulus   the modulus
+     * @return the product of the powers
+     */
+    public static BigInteger parallelMultiExp(List<BigInteger> bases, List<BigInteger> exponents,
+                                              BigInteger modulus) {
+        Preconditions.checkArgument(bases.size() == exponents.size(),
+                "There should be as many bases as exponents");
+        Preconditions.checkArgument(exponents.parallelStream().allMatch(e -> e.signum() >= 0),
+                "The exponents must be non-negative");
+        BigInteger[] b = bases.toArray(new BigInteger[0]);
+        BigInteger[] e = exponents.toArray(new BigInteger[0]);
+        int n = b.length;
+        int partitions = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), n / MIN_PARTITION_SIZE));
+        return IntStream.range(0, partitions).parallel()
+                .mapToObj(k -> multiExp(b, e, (int) ((long) n * k / partitions),
+                        (int) ((long) n * (k + 1) / partitions), modulus))
+                .reduce((x, y) -> x.multiply(y).mod(modulus))
+                .orElse(BigInteger.ONE);
+    }
+
+    private static BigInteger multiExp(BigInteger[] bases, BigInteger[] exponents, int from, int to,
+                                       BigInteger modulus) {
+        int maxBitLength = 0;
+        for (int i = from; i < to; i++) {
+            maxBitLength = Math.max(maxBitLength, exponents[i].bitLength());
+        }
+        if (to - from < PIPPENGER_THRESHOLD) {
+            return straus(bases, exponents, from, to, maxBitLength, modulus);
+        } else {
+            return pippenger(bases, exponents, from, to, maxBitLength, modulus);
+        }
+    }
+
+    private static BigInteger straus(BigInteger[] bases, BigInteger[] exponents, int from, int to, int maxBitLength,
+                                     BigInteger modulus) {
+        int w = STRAUS_WINDOW_SIZE;
+        int entries = (1 << w) - 1;
+        BigInteger[][] powers = new BigInteger[to - from][entries];
+        for (int i = from; i < to; i++) {
+            BigInteger[] powers_i = powers[i - from];
+            powers_i[0] = bases[i].mod(modulus);
+            for (int d = 1; d < entries; d++) {
+                powers_i[d] = powers_i[d - 1].multiply(powers_i[0]).mod(modulus);
+            }
+        }
+
+        BigInteger result = BigInteger.ONE;
+        for (int j = (maxBitLength + w - 1) / w - 1; j >= 0; j--) {
+            result = square(result, w, modulus);
+            for (int i = from; i < to; i++) {
+                int digit = digit(exponents[i], j * w, w);
+                if (digit != 0) {
+                    result = result.multiply(powers[i - from][digit - 1]).mod(modulus);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BigInteger pippenger(BigInteger[] bases, BigInteger[] exponents, int from, int to,
+                                        int maxBitLength, BigInteger modulus) {
+        int c = bucketWindowSize(to - from);
+        BigInteger[] buckets = new BigInteger[1 << c];
+
+        BigInteger result = BigInteger.ONE;
+        for (int j = (maxBitLength + c - 1) / c - 1; j >= 0; j--) {
+            result = square(result, c, modulus);
+
+            Arrays.fill(buckets, null);
+            for (int i = from; i < to; i++) {
+                int digit = digit(exponents[i], j * c, c);
+                if (digit != 0) {
+                    buckets[digit] = buckets[digit] == null ? bases[i] :
+                            buckets[digit].multiply(bases[i]).mod(modulus);
+                }
+            }
+
+            // &prod; bucket_d^d, computed as a product of running products
+            BigInteger running = BigInteger.ONE;
+            BigInteger windowProduct = BigInteger.ONE;
+            for (int d = buckets.length - 1; d > 0; d--) {
+                if (buckets[d] != null) {
+                    running = running.multiply(buckets[d]).mod(modulus);
+                }
+                if (!BigInteger.ONE.equals(running)) {
+                    windowProduct = windowProduct.multiply(running).mod(modulus);
+                }
+            }
+            result = result.multiply(windowProduct).mod(modulus);
+        }
+        return result;
+    }
+
+    private static int bucketWindowSize(int n) {
+        int log2 = 31 - Integer.numberOfLeadingZeros(n);
+        return Math.max(2, Math.min(16, log2 - 2));
+    }
+
+    private static BigInteger square(BigInteger value, int times, BigInteger modulus) {
+        if (BigInteger.ONE.equals(value)) {
+            return value;
+        }
+        BigInteger result = value;
+        for (int k = 0; k < times; k++) {
+            result = result.multiply(result).mod(modulus);
+        }
+        return result;
+    }
+
+    private static int digit(BigInteger exponent, int offset, int w) {
+        int digit = 0;
+        for (int k = w - 1; k >= 0; k--) {
+            digit = (digit << 1) | (exponent.testBit(offset + k) ? 1 : 0);
+        }
+        return digit;
+    }
+}
@@ -21,7 +21,10 @@
 
 package ch.ge.ve.protopoc.service.algorithm;
 
+import ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic;
+import ch.ge.ve.protopoc.arithmetic.GmpArithmeticBackend;
 import ch.ge.ve.protopoc.service.model.*;
+import ch.ge.ve.protopoc.service.support.Hash;
 import ch.ge.ve.protopoc.service.support.RandomGenerator;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
@@ -29,16 +32,19 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
-import static ch.ge.ve.protopoc.service.support.BigIntegers.multiplyMod;
-import static java.math.BigInteger.ONE;
-import static java.util.function.Function.identity;
-import static java.util.stream.Collectors.toMap;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpFixedBase;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpPublic;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpSecret;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.multiExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.parallelBatchModInverse;
+import static ch.ge.ve.protopoc.service.support.ParallelVectors.parallelMap;
+import static ch.ge.ve.protopoc.service.support.ParallelVectors.productMod;
 
 /**
  * Algorithms related to the decryption of ballots
@@ -48,6 +54,7 @@ public class DecryptionAuthorityAlgorithms {
     private final PublicParameters publicParameters;
     private final GeneralAlgorithms generalAlgorithms;
     private final RandomGenerator randomGenerator;
+    private final AtomicInteger shuffleProofChecks = new AtomicInteger();
 
     public DecryptionAuthorityAlgorithms(PublicParameters publicParameters, GeneralAlgorithms generalAlgorithms,
                                          RandomGenerator randomGenerator) {
@@ -149,7 +156,10 @@ public class DecryptionAuthorityAlgorithms {
         Preconditions.checkArgument(generalAlgorithms.isMember(t_3), "t_3 must be in G_q");
         Preconditions.checkArgument(t_4.parallelStream().allMatch(generalAlgorithms::isMember),
                 "t_4_1 and t_4_2 be in G_q");
-        Preconditions.checkArgument(t_hat.parallelStream().allMatch(generalAlgorithms::isMember),
+        // the sub-streams of the random membership checks are numbered in the order of the checks
+        RandomGenerator membershipRandomGenerator =
+                randomGenerator.subStream("shuffle-proof-" + shuffleProofChecks.getAndIncrement());
+        Preconditions.checkArgument(areAllMembers(t_hat, membershipRandomGenerator.subStream("t_hat")),
                 "all t_hat_i's must be in G_q");
         Preconditions.checkArgument(generalAlgorithms.isInZ_q(s_1), "s_1 must be in Z_q");
         Preconditions.checkArgument(generalAlgorithms.isInZ_q(s_2), "s_2 must be in Z_q");
@@ -159,59 +169,63 @@ public class DecryptionAuthorityAlgorithms {
                 "all s_hat_i's must be in Z_q");
         Preconditions.checkArgument(s_prime.parallelStream().allMatch(generalAlgorithms::isInZ_q),
                 "all s_prime_i's must be in Z_q");
-        Preconditions.checkArgument(bold_c.parallelStream().allMatch(generalAlgorithms::isMember),
+        Preconditions.checkArgument(areAllMembers(bold_c, membershipRandomGenerator.subStream("c")),
                 "all c_i's must be in G_q");
-        Preconditions.checkArgument(bold_c_hat.parallelStream().allMatch(generalAlgorithms::isMember),
+        Preconditions.checkArgument(areAllMembers(bold_c_hat, membershipRandomGenerator.subStream("c_hat")),
                 "all c_hat_i's must be in G_q");
-        Preconditions.checkArgument(bold_e.parallelStream().allMatch(e -> generalAlgorithms.isMember(e.getA()) &&
-                        generalAlgorithms.isMember(e.getB())),
+        Preconditions.checkArgument(areAllMembers(Encryption.components(bold_e),
+                membershipRandomGenerator.subStream("e")),
                 "all e_i's must be in G_q^2");
-        Preconditions.checkArgument(bold_e_prime.parallelStream().allMatch(e -> generalAlgorithms.isMember(e.getA()) &&
-                        generalAlgorithms.isMember(e.getB())),
+        Preconditions.checkArgument(areAllMembers(Encryption.components(bold_e_prime),
+                membershipRandomGenerator.subStream("e_prime")),
                 "all e_prime_i's must be in G_q^2");
         Preconditions.checkArgument(generalAlgorithms.isMember(pk), "pk must be in G_q");
 
         List<BigInteger> bold_h = generalAlgorithms.getGenerators(N);
-        List<BigInteger> bold_u = generalAlgorithms.getNIZKPChallenges(N, new List[]{bold_e, bold_e_prime, bold_c}, tau);
-        Object[] y = {bold_e, bold_e_prime, bold_c, bold_c_hat, pk};
+        // bold_e, bold_e_prime and bold_c are part of both challenges: they are only hashed once
+        List<Encryption> memoized_bold_e = Hash.memoized(bold_e);
+        List<Encryption> memoized_bold_e_prime = Hash.memoized(bold_e_prime);
+        List<BigInteger> memoized_bold_c = Hash.memoized(bold_c);
+        List<BigInteger> bold_u = generalAlgorithms.getNIZKPChallenges(N,
+                new List[]{memoized_bold_e, memoized_bold_e_prime, memoized_bold_c}, tau);
+        Object[] y = {memoized_bold_e, memoized_bold_e_prime, memoized_bold_c, bold_c_hat, pk};
         BigInteger c = generalAlgorithms.getNIZKPChallenge(y, pi.getT().elementsToHash(), tau);
 
-        BigInteger c_prod = bold_c.stream().reduce(multiplyMod(p)).orElse(ONE);
-        BigInteger h_prod = bold_h.stream().reduce(multiplyMod(p)).orElse(ONE);
+        BigInteger c_prod = productMod(bold_c, p);
+        BigInteger h_prod = productMod(bold_h, p);
         BigInteger c_bar = c_prod.multiply(h_prod.modInverse(p)).mod(p);
 
-        BigInteger u = bold_u.stream().reduce(multiplyMod(q)).orElse(ONE);
+        BigInteger u = productMod(bold_u, q);
 
-        BigInteger c_hat = bold_c_hat.get(N - 1).multiply(modExp(h, u.negate(), p));
-        BigInteger c_tilde = IntStream.range(0, N).mapToObj(i -> modExp(bold_c.get(i), bold_u.get(i), p))
-                .reduce(multiplyMod(p)).orElse(ONE);
+        BigInteger c_hat = bold_c_hat.get(N - 1).multiply(modExpFixedBase(h, u.negate(), p, q));
+        BigInteger c_tilde = multiExp(bold_c, bold_u, p);
 
-        BigInteger e_prime_1 = IntStream.range(0, N).mapToObj(i -> modExp(bold_e.get(i).getA(), bold_u.get(i), p))
-                .reduce(multiplyMod(p)).orElse(ONE);
-        BigInteger e_prime_2 = IntStream.range(0, N).mapToObj(i -> modExp(bold_e.get(i).getB(), bold_u.get(i), p))
-                .reduce(multiplyMod(p)).orElse(ONE);
+        List<BigInteger> bold_a = bold_e.stream().map(Encryption::getA).collect(Collectors.toList());
+        List<BigInteger> bold_b = bold_e.stream().map(Encryption::getB).collect(Collectors.toList());
+        BigInteger e_prime_1 = multiExp(bold_a, bold_u, p);
+        BigInteger e_prime_2 = multiExp(bold_b, bold_u, p);
+
+        // invert all the values raised to -c at once, rather than through negative exponents
+        List<BigInteger> toInvert = new ArrayList<>(Arrays.asList(c_bar, c_hat, c_tilde, e_prime_1, e_prime_2));
+        toInvert.addAll(bold_c_hat);
+        List<BigInteger> inverses = parallelBatchModInverse(toInvert, p);
+        List<BigInteger> bold_c_hat_inverse = inverses.subList(5, 5 + N);
 
-        BigInteger t_prime_1 = modExp(c_bar, c.negate(), p).multiply(modExp(g, s_1, p)).mod(p);
-        BigInteger t_prime_2 = modExp(c_hat, c.negate(), p).multiply(modExp(g, s_2, p)).mod(p);
-        BigInteger h_i_s_prime_i = IntStream.range(0, N).parallel()
-                .mapToObj(i -> modExp(bold_h.get(i), s_prime.get(i), p))
-                .reduce(multiplyMod(p)).orElse(ONE);
-        BigInteger t_prime_3 = modExp(c_tilde, c.negate(), p).multiply(modExp(g, s_3, p)).multiply(h_i_s_prime_i).mod(p);
+        BigInteger t_prime_1 = modExpPublic(inverses.get(0), c, p).multiply(modExpFixedBase(g, s_1, p, q)).mod(p);
+        BigInteger t_prime_2 = modExpPublic(inverses.get(1), c, p).multiply(modExpFixedBase(g, s_2, p, q)).mod(p);
+        BigInteger h_i_s_prime_i = multiExp(bold_h, s_prime, p);
+        BigInteger t_prime_3 = modExpPublic(inverses.get(2), c, p).multiply(modExpFixedBase(g, s_3, p, q)).multiply(h_i_s_prime_i).mod(p);
 
-        BigInteger a_prime_i_s_prime_i = IntStream.range(0, N)
-                .parallel()
-                .mapToObj(i -> modExp(bold_e_prime.get(i).getA(), s_prime.get(i), p))
-                .reduce(multiplyMod(p)).orElse(ONE);
-        BigInteger t_prime_4_1 = modExp(e_prime_1, c.negate(), p)
-                .multiply(modExp(pk, s_4.negate(), p))
+        List<BigInteger> bold_a_prime = bold_e_prime.stream().map(Encryption::getA).collect(Collectors.toList());
+        BigInteger a_prime_i_s_prime_i = multiExp(bold_a_prime, s_prime, p);
+        BigInteger t_prime_4_1 = modExpPublic(inverses.get(3), c, p)
+                .multiply(modExpFixedBase(pk, s_4.negate(), p, q))
                 .multiply(a_prime_i_s_prime_i)
                 .mod(p);
-        BigInteger b_prime_i_s_prime_i = IntStream.range(0, N)
-                .parallel()
-                .mapToObj(i -> modExp(bold_e_prime.get(i).getB(), s_prime.get(i), p))
-                .reduce(multiplyMod(p)).orElse(ONE);
-        BigInteger t_prime_4_2 = modExp(e_prime_2, c.negate(), p)
-                .multiply(modExp(g, s_4.negate(), p))
+        List<BigInteger> bold_b_prime = bold_e_prime.stream().map(Encryption::getB).collect(Collectors.toList());
+        BigInteger b_prime_i_s_prime_i = multiExp(bold_b_prime, s_prime, p);
+        BigInteger t_prime_4_2 = modExpPublic(inverses.get(4), c, p)
+                .multiply(modExpFixedBase(g, s_4.negate(), p, q))
                 .multiply(b_prime_i_s_prime_i)
                 .mod(p);
 
@@ -219,12 +233,10 @@ public class DecryptionAuthorityAlgorithms {
         List<BigInteger> tmp_bold_c_hat = new ArrayList<>();
         tmp_bold_c_hat.add(0, h);
         tmp_bold_c_hat.addAll(bold_c_hat);
-        Map<Integer, BigInteger> t_hat_prime_map = IntStream.range(0, N).parallel().boxed()
-                .collect(toMap(identity(), i -> modExp(tmp_bold_c_hat.get(i + 1), c.negate(), p)
-                        .multiply(modExp(g, s_hat.get(i), p))
-                        .multiply(modExp(tmp_bold_c_hat.get(i), s_prime.get(i), p))
-                        .mod(p)));
-        List<BigInteger> t_hat_prime = IntStream.range(0, N).mapToObj(t_hat_prime_map::get).collect(Collectors.toList());
+        List<BigInteger> t_hat_prime = parallelMap(N, i -> modExpPublic(bold_c_hat_inverse.get(i), c, p)
+                .multiply(modExpFixedBase(g, s_hat.get(i), p, q))
+                .multiply(modExpPublic(tmp_bold_c_hat.get(i), s_prime.get(i), p))
+                .mod(p));
 
         boolean isProofValid = t_1.compareTo(t_prime_1) == 0 &&
                 t_2.compareTo(t_prime_2) == 0 &&
@@ -238,6 +250,19 @@ public class DecryptionAuthorityAlgorithms {
         return isProofValid;
     }
 
+    /**
+     * Check the membership of the elements of a large vector of the shuffle proof. Without LibGMP, the Jacobi symbols
+     * dominate the cost of the check: the probabilistic variant is used, with an error probability of
+     * <tt>2^-tau</tt>, as for the challenges of the proof.
+     */
+    private boolean areAllMembers(List<BigInteger> bold_x, RandomGenerator membershipRandomGenerator) {
+        if (BigIntegerArithmetic.getBackend().getDelegate() instanceof GmpArithmeticBackend) {
+            return generalAlgorithms.areAllMembers(bold_x);
+        }
+        return generalAlgorithms.areAllMembers(bold_x, membershipRandomGenerator,
+                publicParameters.getSecurityParameters().getTau());
+    }
+
     /**
      * Algorithm 7.49: GetPartialDecryptions
      *
@@ -246,11 +271,10 @@ public class DecryptionAuthorityAlgorithms {
      * @return the list of the partial decryptions of the provided ElGamal encryptions, using key share sk_j
      */
     public List<BigInteger> getPartialDecryptions(List<Encryption> bold_e, BigInteger sk_j) {
-        Preconditions.checkArgument(bold_e.parallelStream().allMatch(e -> generalAlgorithms.isMember(e.getA()) &&
-                        generalAlgorithms.isMember(e.getB())),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(Encryption.components(bold_e)),
                 "all e_i's must be in G_q^2");
         BigInteger p = publicParameters.getEncryptionGroup().getP();
-        return bold_e.stream().map(e_i -> modExp(e_i.getB(), sk_j, p)).collect(Collectors.toList());
+        return bold_e.stream().map(e_i -> modExpSecret(e_i.getB(), sk_j, p)).collect(Collectors.toList());
     }
 
     /**
@@ -267,10 +291,9 @@ public class DecryptionAuthorityAlgorithms {
                                               List<BigInteger> bold_b_prime) {
         Preconditions.checkArgument(generalAlgorithms.isInZ_q(sk_j), "sk_j must be in Z_q");
         Preconditions.checkArgument(generalAlgorithms.isMember(pk_j), "pk_j must be in G_q");
-        Preconditions.checkArgument(bold_e.parallelStream().allMatch(e -> generalAlgorithms.isMember(e.getA()) &&
-                        generalAlgorithms.isMember(e.getB())),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(Encryption.components(bold_e)),
                 "all e_i's must be in G_q^2");
-        Preconditions.checkArgument(bold_b_prime.parallelStream().allMatch(generalAlgorithms::isMember),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(bold_b_prime),
                 "all b_prime_i's must be in G_q^2");
 
         BigInteger p = publicParameters.getEncryptionGroup().getP();
@@ -279,8 +302,8 @@ public class DecryptionAuthorityAlgorithms {
         BigInteger omega = randomGenerator.randomInZq(q);
         int tau = publicParameters.getSecurityParameters().getTau();
 
-        BigInteger t_0 = modExp(g, omega, p);
-        List<BigInteger> t = bold_e.stream().map(e_i -> modExp(e_i.getB(), omega, p)).collect(Collectors.toList());
+        BigInteger t_0 = modExpSecret(g, omega, p);
+        List<BigInteger> t = bold_e.stream().map(e_i -> modExpSecret(e_i.getB(), omega, p)).collect(Collectors.toList());
         t.add(0, t_0);
         List<BigInteger> bold_b = bold_e.stream().map(Encryption::getB).collect(Collectors.toList());
         Object[] y = {pk_j, bold_b, bold_b_prime};
@@ -29,6 +29,7 @@ import ch.ge.ve.protopoc.service.support.BigIntegers;
 import ch.ge.ve.protopoc.service.support.ByteArrayUtils;
 import ch.ge.ve.protopoc.service.support.Conversion;
 import ch.ge.ve.protopoc.service.support.Hash;
+import ch.ge.ve.protopoc.service.support.RandomGenerator;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -38,13 +39,13 @@ import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static java.util.function.Function.identity;
-import static java.util.stream.Collectors.toMap;
+import static ch.ge.ve.protopoc.service.support.ParallelVectors.parallelMap;
 
 /**
  * This class regroups the general algorithms described in Section 7.2 of the specification
  */
 public class GeneralAlgorithms {
+    private static final int MEMBERSHIP_CHUNK_SIZE = 1024;
     private final Hash hash;
     private final Conversion conversion;
     private final EncryptionGroup encryptionGroup;
@@ -135,6 +136,68 @@ public class GeneralAlgorithms {
                 BigIntegerArithmetic.jacobiSymbol(x, identificationGroup.getP_hat()) == 1;
     }
 
+    /**
+     * Algorithm 7.2 : isMember, applied to all the elements of a vector
+     * <p>The vector is split into chunks, which are checked in parallel; the check stops at the first element found
+     * outside of the group.</p>
+     *
+     * @param bold_x a vector of numbers
+     * @return true if x_i &isin; encryptionGroup for all i, false otherwise
+     */
+    public boolean areAllMembers(Collection<BigInteger> bold_x) {
+        List<BigInteger> values = bold_x instanceof RandomAccess ? (List<BigInteger>) bold_x : new ArrayList<>(bold_x);
+        int n = values.size();
+        return IntStream.range(0, chunkCount(n)).parallel().allMatch(c ->
+                IntStream.range(c * MEMBERSHIP_CHUNK_SIZE, Math.min(n, (c + 1) * MEMBERSHIP_CHUNK_SIZE))
+                        .allMatch(i -> isMember(values.get(i))));
+    }
+
+    /**
+     * Probabilistic variant of {@link #areAllMembers(Collection)}.
+     * <p>The Jacobi symbol is multiplicative: for each chunk, <tt>lambda</tt> products of random subsets of the
+     * elements are computed, and only their Jacobi symbols are checked. An element outside of the group flips the
+     * symbol of each product it belongs to, so that it goes unnoticed with probability at most <tt>2^-lambda</tt>.
+     * The range of each element is still checked exactly.</p>
+     * <p>Each element costs about <tt>lambda / 2</tt> modular multiplications, in exchange for one Jacobi symbol: this
+     * pays off when the Jacobi symbols are expensive compared to multiplications, <em>i.e.</em> without LibGMP.</p>
+     * <p>Each chunk draws its subsets from its own {@link RandomGenerator#subStream(String) sub-stream}, so that the
+     * subsets do not depend on the scheduling of the chunks in the deterministic benchmark mode.</p>
+     *
+     * @param bold_x          a vector of numbers
+     * @param randomGenerator the source of the random subsets, used for this vector only
+     * @param lambda          the number of random subsets per chunk, the error probability being <tt>2^-lambda</tt>
+     * @return true if x_i &isin; encryptionGroup for all i, false if some x_i was found outside of the group
+     */
+    public boolean areAllMembers(Collection<BigInteger> bold_x, RandomGenerator randomGenerator, int lambda) {
+        Preconditions.checkArgument(lambda > 0, "lambda must be positive");
+        BigInteger p = encryptionGroup.getP();
+        BigInteger upperbound = BigInteger.ONE.shiftLeft(lambda);
+        List<BigInteger> values = bold_x instanceof RandomAccess ? (List<BigInteger>) bold_x : new ArrayList<>(bold_x);
+        int n = values.size();
+        return IntStream.range(0, chunkCount(n)).parallel().allMatch(c -> {
+            RandomGenerator chunkRandomGenerator = randomGenerator.subStream("chunk-" + c);
+            BigInteger[] products = new BigInteger[lambda];
+            Arrays.fill(products, BigInteger.ONE);
+            for (int i = c * MEMBERSHIP_CHUNK_SIZE; i < Math.min(n, (c + 1) * MEMBERSHIP_CHUNK_SIZE); i++) {
+                BigInteger x_i = values.get(i);
+                if (x_i.compareTo(BigInteger.ONE) < 0 || x_i.compareTo(p) >= 0) {
+                    return false;
+                }
+                BigInteger subsets = chunkRandomGenerator.randomBigInteger(upperbound);
+                for (int k = 0; k < lambda; k++) {
+                    if (subsets.testBit(k)) {
+                        products[k] = products[k].multiply(x_i).mod(p);
+                    }
+                }
+            }
+            return Arrays.stream(products).allMatch(product -> BigIntegerArithmetic.jacobiSymbol(product, p) == 1);
+        });
+    }
+
+    private static int chunkCount(int n) {
+        return (n + MEMBERSHIP_CHUNK_SIZE - 1) / MEMBERSHIP_CHUNK_SIZE;
+    }
+
     /**
      * Utility to verify membership for Z_q
      *
@@ -208,12 +271,9 @@ public class GeneralAlgorithms {
     public List<BigInteger> getNIZKPChallenges(int n, Object[] y, int kappa) {
         byte[] upper_h = hash.recHash_L(y);
         BigInteger two_to_kappa = BigIntegers.TWO.pow(kappa);
-        Map<Integer, BigInteger> challengesMap = IntStream.rangeClosed(1, n).parallel().boxed()
-                .collect(toMap(identity(), i -> {
-                    byte[] upper_i = hash.recHash_L(BigInteger.valueOf(i));
-                    return conversion.toInteger(hash.hash_L(ByteArrayUtils.concatenate(upper_h, upper_i)))
-                            .mod(two_to_kappa);
-                }));
-        return IntStream.rangeClosed(1, n).mapToObj(challengesMap::get).collect(Collectors.toList());
+        return parallelMap(n, k -> {
+            byte[] upper_i = hash.recHash_L(BigInteger.valueOf(k + 1));
+            return conversion.toInteger(hash.hash_L(ByteArrayUtils.concatenate(upper_h, upper_i))).mod(two_to_kappa);
+        });
     }
 }
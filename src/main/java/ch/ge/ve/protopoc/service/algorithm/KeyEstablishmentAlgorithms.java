@@ -31,7 +31,7 @@ import java.math.BigInteger;
 import java.security.KeyPair;
 import java.util.List;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpSecret;
 
 /**
  * Algorithms used during the key establishment part of the election preparation phase
@@ -51,7 +51,7 @@ public class KeyEstablishmentAlgorithms {
      */
     public KeyPair generateKeyPair(EncryptionGroup eg) {
         BigInteger sk = randomGenerator.randomInZq(eg.getQ());
-        BigInteger pk = modExp(eg.getG(), sk, eg.getP());
+        BigInteger pk = modExpSecret(eg.getG(), sk, eg.getP());
 
         return new KeyPair(new EncryptionPublicKey(pk, eg), new EncryptionPrivateKey(sk, eg));
     }
@@ -22,38 +22,100 @@
 package ch.ge.ve.protopoc.service.algorithm;
 
 import ch.ge.ve.protopoc.service.model.*;
+import ch.ge.ve.protopoc.service.support.Hash;
 import ch.ge.ve.protopoc.service.support.RandomGenerator;
+import ch.ge.ve.protopoc.service.support.SeededRandomVector;
+import ch.ge.ve.protopoc.service.support.VectorStorage;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
-import static ch.ge.ve.protopoc.service.support.BigIntegers.multiplyMod;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpFixedBaseSecret;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpSecret;
+import static ch.ge.ve.protopoc.service.support.ParallelVectors.parallelFill;
+import static ch.ge.ve.protopoc.service.support.ParallelVectors.parallelMap;
+import static ch.ge.ve.protopoc.service.support.ParallelVectors.parallelZip;
+import static ch.ge.ve.protopoc.service.support.ParallelVectors.productMod;
 import static java.math.BigInteger.ONE;
 import static java.math.BigInteger.ZERO;
-import static java.util.function.Function.identity;
-import static java.util.stream.Collectors.toMap;
 
 /**
  * Algorithms performed during the mixing phase, by the autorities
  */
 public class MixingAuthorityAlgorithms {
     private static final Logger log = LoggerFactory.getLogger(MixingAuthorityAlgorithms.class);
+    /**
+     * Minimal number of worker threads for the parallel commitment chain, which performs about twice as many
+     * exponentiations as the sequential one
+     */
+    private static final int PARALLEL_CHAIN_MIN_PARALLELISM = 4;
+    /**
+     * Minimal length for the parallel commitment chain, below which the chain is too short to be worth distributing
+     */
+    private static final int PARALLEL_CHAIN_MIN_LENGTH = 256;
+    /**
+     * Number of secret values regenerated from each seed, when the vectors are kept out of the heap
+     */
+    private static final int SECRET_CHUNK_SIZE = 1024;
+    /**
+     * Number of chunks per worker thread, for the computations on secret vectors split in chunks
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
     private final PublicParameters publicParameters;
     private final GeneralAlgorithms generalAlgorithms;
     private final VoteConfirmationAuthorityAlgorithms voteConfirmationAuthorityAlgorithms;
     private final RandomGenerator randomGenerator;
+    private final RandomGenerator reEncryptionRandomGenerator;
+    private final VectorStorage vectorStorage;
 
     public MixingAuthorityAlgorithms(PublicParameters publicParameters, GeneralAlgorithms generalAlgorithms, VoteConfirmationAuthorityAlgorithms voteConfirmationAuthorityAlgorithms, RandomGenerator randomGenerator) {
+        this(publicParameters, generalAlgorithms, voteConfirmationAuthorityAlgorithms, randomGenerator,
+                VectorStorage.heap());
+    }
+
+    /**
+     * Create the mixing algorithms, storing the public N-length vectors of the shuffle proofs (the permutation
+     * commitment, the commitment chain, and the proof's commitments and responses) in the given storage. With
+     * {@link VectorStorage#mapped(java.nio.file.Path, int)}, these vectors are kept in memory-mapped files, so that the
+     * heap needed does not grow with them.
+     * <p>The secret vectors (the re-encryption randomness, the randomness of the commitments and the randomizations of
+     * the proof) are never written to a file. With a mapped storage, they are not kept on the heap either: only a
+     * seed per chunk of {@value #SECRET_CHUNK_SIZE} values is kept, and the values are regenerated from it when needed
+     * (see {@link SeededRandomVector}). The permuted challenges are a view of the challenges, and the aggregates of the
+     * commitment chain and of the proof are computed by chunks, keeping a single value per chunk. The encryptions,
+     * which are exchanged through the bulletin board, stay on the heap.</p>
+     *
+     * @param publicParameters                    the public parameters
+     * @param generalAlgorithms                   the general algorithms
+     * @param voteConfirmationAuthorityAlgorithms the vote confirmation algorithms
+     * @param randomGenerator                     the random generator
+     * @param vectorStorage                       the storage of the public N-length vectors
+     */
+    public MixingAuthorityAlgorithms(PublicParameters publicParameters, GeneralAlgorithms generalAlgorithms,
+                                     VoteConfirmationAuthorityAlgorithms voteConfirmationAuthorityAlgorithms,
+                                     RandomGenerator randomGenerator, VectorStorage vectorStorage) {
         this.publicParameters = publicParameters;
         this.generalAlgorithms = generalAlgorithms;
         this.voteConfirmationAuthorityAlgorithms = voteConfirmationAuthorityAlgorithms;
         this.randomGenerator = randomGenerator;
+        // the re-encryption randomness may be drawn in the background, while the permutation is being precomputed
+        this.reEncryptionRandomGenerator = randomGenerator.subStream("re-encryption");
+        this.vectorStorage = vectorStorage;
+    }
+
+    /**
+     * @return true if the N-length vectors are kept out of the heap, in which case the re-encryption randomness
+     * should be drawn when shuffling rather than precomputed in a {@link ReEncryptionRandomnessPool}, which holds it
+     * on the heap
+     */
+    public boolean isOutOfCore() {
+        return vectorStorage.isMapped();
     }
 
     /**
@@ -87,27 +149,61 @@ public class MixingAuthorityAlgorithms {
      * @return the result of a shuffle, with re-encryption of the values
      */
     public Shuffle genShuffle(List<Encryption> bold_e, EncryptionPublicKey pk) {
-        Preconditions.checkArgument(bold_e.stream().allMatch(e -> generalAlgorithms.isMember(e.getA()) &&
-                        generalAlgorithms.isMember(e.getB())),
+        return genShuffle(bold_e, pk, null);
+    }
+
+    /**
+     * Algorithm 7.41: GenShuffle, drawing the re-encryption randomness from a pool of precomputed values
+     *
+     * @param bold_e the list of ElGamal encryptions
+     * @param pk     the encryption key
+     * @param pool   the pool of re-encryption randomness for the key pk, or <tt>null</tt> to compute it on demand
+     * @return the result of a shuffle, with re-encryption of the values
+     */
+    public Shuffle genShuffle(List<Encryption> bold_e, EncryptionPublicKey pk, ReEncryptionRandomnessPool pool) {
+        return genShuffle(bold_e, pk, pool, null);
+    }
+
+    /**
+     * Algorithm 7.41: GenShuffle, with a permutation generated beforehand
+     *
+     * @param bold_e the list of ElGamal encryptions
+     * @param pk     the encryption key
+     * @param pool   the pool of re-encryption randomness for the key pk, or <tt>null</tt> to compute it on demand
+     * @param psy    the permutation, as generated by {@link #genPermutation(int)}, or <tt>null</tt> to generate it
+     * @return the result of a shuffle, with re-encryption of the values
+     */
+    public Shuffle genShuffle(List<Encryption> bold_e, EncryptionPublicKey pk, ReEncryptionRandomnessPool pool,
+                              Permutation psy) {
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(Encryption.components(bold_e)),
                 "all e_i's should be in G_q^2");
-        List<Integer> psy = genPermutation(bold_e.size());
-
-        // Parallel streams do not preserve order.
-        // But it is more efficient to distribute the re-encryptions across cores and sort them than to
-        // re-encrypt sequentially
-        Map<Integer, ReEncryption> reEncryptionMap = IntStream.range(0, bold_e.size()).parallel().boxed()
-                .collect(toMap(identity(), i -> genReEncryption(bold_e.get(i), pk)));
-        List<ReEncryption> reEncryptions = IntStream.range(0, bold_e.size())
-                .mapToObj(reEncryptionMap::get).collect(Collectors.toList());
-
-        List<Encryption> bold_e_prime = psy.stream()
-                .map(reEncryptions::get)
-                .map(ReEncryption::getEncryption)
-                .collect(Collectors.toList());
+        Preconditions.checkArgument(pool == null ||
+                        pool.getPublicKey().getPublicKey().equals(pk.getPublicKey()),
+                "The pool should hold randomness for the key pk");
+        Preconditions.checkArgument(psy == null || psy.size() == bold_e.size(),
+                "The length of psy should be equal to that of bold_e");
+        if (psy == null) {
+            psy = genPermutation(bold_e.size());
+        }
+
+        if (pool == null && isOutOfCore()) {
+            // the randomness is regenerated from its seeds, and its powers are computed when re-encrypting
+            List<BigInteger> bold_r_prime = randomSecretVector(reEncryptionRandomGenerator, bold_e.size());
+            List<Encryption> reEncryptions = parallelZip(bold_e, bold_r_prime,
+                    (e_i, r_prime_i) -> genReEncryption(e_i, pk, genReEncryptionRandomness(pk, r_prime_i))
+                            .getEncryption());
+            return new Shuffle(psy.apply(reEncryptions), bold_r_prime, psy);
+        }
 
+        List<ReEncryptionRandomness> bold_rho = pool == null ?
+                genReEncryptionRandomness(pk, bold_e.size()) : pool.take(bold_e.size());
+        List<ReEncryption> reEncryptions = parallelZip(bold_e, bold_rho,
+                (e_i, rho_i) -> genReEncryption(e_i, pk, rho_i));
+        // e'_i is the re-encryption of e_psy(i)
+        List<Encryption> bold_e_prime = psy.apply(reEncryptions.stream()
+                .map(ReEncryption::getEncryption).collect(Collectors.toList()));
         List<BigInteger> bold_r_prime = reEncryptions.stream()
-                .map(ReEncryption::getRandomness)
-                .collect(Collectors.toList());
+                .map(ReEncryption::getRandomness).collect(Collectors.toList());
 
         return new Shuffle(bold_e_prime, bold_r_prime, psy);
     }
@@ -119,20 +215,19 @@ public class MixingAuthorityAlgorithms {
      * @param upper_n the permutation size
      * @return a random permutation following Knuth's shuffle algorithm (permutation is 0 based, to mirror java indices)
      */
-    public List<Integer> genPermutation(int upper_n) {
-        Integer[] upper_i = IntStream.range(0, upper_n).boxed()
-                .collect(Collectors.toList()).toArray(new Integer[0]);
+    public Permutation genPermutation(int upper_n) {
+        int[] upper_i = IntStream.range(0, upper_n).toArray();
 
-        List<Integer> psy = new ArrayList<>();
+        int[] psy = new int[upper_n];
 
         // indices are 0 base, as opposed to the 1 based in the algorithm
         for (int i = 0; i < upper_n; i++) {
             int k = randomGenerator.randomIntInRange(i, upper_n - 1);
-            psy.add(upper_i[k]);
+            psy[i] = upper_i[k];
             upper_i[k] = upper_i[i];
         }
 
-        return psy;
+        return Permutation.of(psy);
     }
 
     /**
@@ -147,17 +242,74 @@ public class MixingAuthorityAlgorithms {
                 generalAlgorithms.isMember(e.getB()), "a and b should be in G_q^2");
         Preconditions.checkArgument(generalAlgorithms.isMember(publicKey.getPublicKey()),
                 "pk should be in G_q");
+        return reEncrypt(e, genReEncryptionRandomness(publicKey));
+    }
+
+    /**
+     * Algorithm 7.43: GenReEncryption, with randomness drawn beforehand
+     *
+     * @param e          the original encryption
+     * @param publicKey  the public key used
+     * @param randomness the randomness r', with the corresponding powers pk^r' and g^r'
+     * @return a re-encryption of the provided ElGamal encryption
+     */
+    public ReEncryption genReEncryption(Encryption e, EncryptionPublicKey publicKey,
+                                        ReEncryptionRandomness randomness) {
+        Preconditions.checkArgument(generalAlgorithms.isMember(e.getA()) &&
+                generalAlgorithms.isMember(e.getB()), "a and b should be in G_q^2");
+        Preconditions.checkArgument(generalAlgorithms.isMember(publicKey.getPublicKey()),
+                "pk should be in G_q");
+        return reEncrypt(e, randomness);
+    }
+
+    /**
+     * Draw the randomness of a re-encryption, as in Algorithm 7.43: GenReEncryption. It does not depend on the
+     * encryption, so that it may be computed in advance.
+     *
+     * @param publicKey the public key used
+     * @return the randomness r', with the corresponding powers pk^r' and g^r'
+     */
+    public ReEncryptionRandomness genReEncryptionRandomness(EncryptionPublicKey publicKey) {
+        BigInteger q = publicParameters.getEncryptionGroup().getQ();
+
+        BigInteger r_prime = reEncryptionRandomGenerator.randomInZq(q);
+
+        return genReEncryptionRandomness(publicKey, r_prime);
+    }
+
+    private ReEncryptionRandomness genReEncryptionRandomness(EncryptionPublicKey publicKey, BigInteger r_prime) {
         BigInteger p = publicParameters.getEncryptionGroup().getP();
         BigInteger q = publicParameters.getEncryptionGroup().getQ();
         BigInteger g = publicParameters.getEncryptionGroup().getG();
         BigInteger pk = publicKey.getPublicKey();
 
-        BigInteger r_prime = randomGenerator.randomInZq(q);
+        return new ReEncryptionRandomness(r_prime, modExpFixedBaseSecret(pk, r_prime, p, q),
+                modExpFixedBaseSecret(g, r_prime, p, q));
+    }
+
+    /**
+     * Draw the randomness of n re-encryptions. The values of r' are drawn sequentially, in the same order as by
+     * {@link #genReEncryptionRandomness(EncryptionPublicKey)}, and the powers are then computed in parallel.
+     *
+     * @param publicKey the public key used
+     * @param n         the number of re-encryptions
+     * @return the randomness r', with the corresponding powers pk^r' and g^r', for each re-encryption
+     */
+    public List<ReEncryptionRandomness> genReEncryptionRandomness(EncryptionPublicKey publicKey, int n) {
+        BigInteger q = publicParameters.getEncryptionGroup().getQ();
+
+        List<BigInteger> bold_r_prime = randomVectorInZq(reEncryptionRandomGenerator, n, q);
 
-        BigInteger a_prime = e.getA().multiply(modExp(pk, r_prime, p)).mod(p);
-        BigInteger b_prime = e.getB().multiply(modExp(g, r_prime, p)).mod(p);
+        return parallelMap(n, i -> genReEncryptionRandomness(publicKey, bold_r_prime.get(i)));
+    }
+
+    private ReEncryption reEncrypt(Encryption e, ReEncryptionRandomness randomness) {
+        BigInteger p = publicParameters.getEncryptionGroup().getP();
 
-        return new ReEncryption(new Encryption(a_prime, b_prime), r_prime);
+        BigInteger a_prime = e.getA().multiply(randomness.getPk_r_prime()).mod(p);
+        BigInteger b_prime = e.getB().multiply(randomness.getG_r_prime()).mod(p);
+
+        return new ReEncryption(new Encryption(a_prime, b_prime), randomness.getR_prime());
     }
 
     /**
@@ -172,19 +324,37 @@ public class MixingAuthorityAlgorithms {
      * <em><strong>A commitment-consistent proof of a shuffle</strong></em>
      */
     public ShuffleProof genShuffleProof(List<Encryption> bold_e, List<Encryption> bold_e_prime,
-                                        List<BigInteger> bold_r_prime, List<Integer> psy,
+                                        List<BigInteger> bold_r_prime, Permutation psy,
                                         EncryptionPublicKey publicKey) {
+        return genShuffleProof(bold_e, bold_e_prime, bold_r_prime, psy, publicKey, null);
+    }
+
+    /**
+     * Algorithm 7.44: GenShuffleProof, with the generators and the permutation commitment computed beforehand
+     *
+     * @param bold_e         the vector of ElGamal encryptions
+     * @param bold_e_prime   the vector of permuted ElGamal re-encryptions
+     * @param bold_r_prime   the randomizations used for the re-encryption
+     * @param psy            the permutation used
+     * @param publicKey      the public key for the encryption
+     * @param precomputation the generators and the commitment to psy, as computed by
+     *                       {@link #precomputePermutation(int)} and {@link #restrictPermutation(PrecomputedPermutation,
+     *                       int)}, or <tt>null</tt> to compute them
+     * @return a proof of the validity of the shuffle, as per Wikström's
+     * <em><strong>A commitment-consistent proof of a shuffle</strong></em>
+     */
+    public ShuffleProof genShuffleProof(List<Encryption> bold_e, List<Encryption> bold_e_prime,
+                                        List<BigInteger> bold_r_prime, Permutation psy,
+                                        EncryptionPublicKey publicKey, PrecomputedPermutation precomputation) {
         BigInteger p = publicParameters.getEncryptionGroup().getP();
         BigInteger q = publicParameters.getEncryptionGroup().getQ();
         BigInteger g = publicParameters.getEncryptionGroup().getG();
         BigInteger h = publicParameters.getEncryptionGroup().getH();
         int tau = publicParameters.getSecurityParameters().getTau();
 
-        Preconditions.checkArgument(bold_e.parallelStream().allMatch(e ->
-                        generalAlgorithms.isMember(e.getA()) && generalAlgorithms.isMember(e.getB())),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(Encryption.components(bold_e)),
                 "all e_i's should be in G_q^2");
-        Preconditions.checkArgument(bold_e_prime.parallelStream().allMatch(e_prime ->
-                        generalAlgorithms.isMember(e_prime.getA()) && generalAlgorithms.isMember(e_prime.getB())),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(Encryption.components(bold_e_prime)),
                 "all e_prime_i's should be in G_q^2");
         Preconditions.checkArgument(bold_r_prime.parallelStream().allMatch(generalAlgorithms::isInZ_q),
                 "all r_prime_i's should be in Z_q");
@@ -195,25 +365,32 @@ public class MixingAuthorityAlgorithms {
                 "The length of bold_r_prime should be equal to that of bold_e");
         Preconditions.checkArgument(psy.size() == upper_n,
                 "The length of psy should be equal to that of bold_e");
-        Preconditions.checkArgument(psy.containsAll(
-                IntStream.range(0, psy.size()).boxed().collect(Collectors.toList())),
-                "The permutation should contain all number from 0 (inclusive) to length (exclusive)");
 
         BigInteger pk = publicKey.getPublicKey();
 
 
-        List<BigInteger> bold_h = generalAlgorithms.getGenerators(upper_n);
-        PermutationCommitment permutationCommitment = genPermutationCommitment(psy, bold_h);
+        Preconditions.checkArgument(precomputation == null || precomputation.getPsy().equals(psy),
+                "The precomputed commitment should be a commitment to psy");
+
+        List<BigInteger> bold_h = precomputation == null ? generalAlgorithms.getGenerators(upper_n) :
+                precomputation.getBold_h();
+        PermutationCommitment permutationCommitment = precomputation == null ?
+                genPermutationCommitment(psy, bold_h) : precomputation.getPermutationCommitment();
         List<BigInteger> bold_c = permutationCommitment.getBold_c();
         List<BigInteger> bold_r = permutationCommitment.getBold_r();
+        // bold_e, bold_e_prime and bold_c are part of both challenges: they are only hashed once
+        List<Encryption> memoized_bold_e = Hash.memoized(bold_e);
+        List<Encryption> memoized_bold_e_prime = Hash.memoized(bold_e_prime);
+        List<BigInteger> memoized_bold_c = Hash.memoized(bold_c);
         List<BigInteger> bold_u = generalAlgorithms.getNIZKPChallenges(upper_n,
-                new List[]{bold_e, bold_e_prime, bold_c},
+                new List[]{memoized_bold_e, memoized_bold_e_prime, memoized_bold_c},
                 tau);
 
-        List<BigInteger> bold_u_prime = psy.stream()
-                .map(bold_u::get).collect(Collectors.toList());
+        List<BigInteger> bold_u_prime = psy.view(bold_u);
 
-        CommitmentChain commitmentChain = genCommitmentChain(h, bold_u_prime);
+        CommitmentChain commitmentChain =
+                useParallelCommitmentChain(upper_n, ForkJoinPool.getCommonPoolParallelism()) ?
+                        genCommitmentChainParallel(h, bold_u_prime) : genCommitmentChain(h, bold_u_prime);
         List<BigInteger> bold_c_hat = commitmentChain.getBold_c();
         List<BigInteger> bold_r_hat = commitmentChain.getBold_r();
 
@@ -222,13 +399,11 @@ public class MixingAuthorityAlgorithms {
         BigInteger omega_3 = randomGenerator.randomInZq(q);
         BigInteger omega_4 = randomGenerator.randomInZq(q);
 
-        List<BigInteger> bold_omega_hat = IntStream.range(0, upper_n).parallel()
-                .mapToObj(i -> randomGenerator.randomInZq(q)).collect(Collectors.toList());
-        List<BigInteger> bold_omega_prime = IntStream.range(0, upper_n).parallel()
-                .mapToObj(i -> randomGenerator.randomInZq(q)).collect(Collectors.toList());
+        List<BigInteger> bold_omega_hat = randomSecretVector(randomGenerator, upper_n);
+        List<BigInteger> bold_omega_prime = randomSecretVector(randomGenerator, upper_n);
 
-        Object[] y = {bold_e, bold_e_prime, bold_c, bold_c_hat, pk};
-        ShuffleProof.T t = computeT(bold_e_prime, upper_n, p, g, h, pk, bold_h, bold_c_hat,
+        Object[] y = {memoized_bold_e, memoized_bold_e_prime, memoized_bold_c, bold_c_hat, pk};
+        ShuffleProof.T t = computeT(bold_e_prime, upper_n, p, q, g, h, pk, bold_h, bold_c_hat,
                 omega_1, omega_2, omega_3, omega_4, bold_omega_hat, bold_omega_prime);
         BigInteger c = generalAlgorithms.getNIZKPChallenge(y, t.elementsToHash(), tau);
 
@@ -245,21 +420,14 @@ public class MixingAuthorityAlgorithms {
                                     List<BigInteger> bold_omega_hat, List<BigInteger> bold_omega_prime, BigInteger c) {
         BigInteger s_1 = computeS1(q, bold_r, omega_1, c);
 
-        List<BigInteger> v = computeV(N, q, bold_u_prime);
-
-        BigInteger s_2 = computeSi(N, q, bold_r_hat, omega_2, c, v);
+        BigInteger s_2 = computeS2(N, q, bold_r_hat, omega_2, c, bold_u_prime);
         BigInteger s_3 = computeSi(N, q, bold_r, omega_3, c, bold_u);
         BigInteger s_4 = computeSi(N, q, bold_r_prime, omega_4, c, bold_u);
 
-        List<BigInteger> s_hat = new ArrayList<>();
-        List<BigInteger> s_prime = new ArrayList<>();
-        for (int i = 0; i < N; i++) {
-            BigInteger s_hat_i = bold_omega_hat.get(i).add(c.multiply(bold_r_hat.get(i))).mod(q);
-            s_hat.add(s_hat_i);
-
-            BigInteger s_prime_i = bold_omega_prime.get(i).add(c.multiply(bold_u_prime.get(i))).mod(q);
-            s_prime.add(s_prime_i);
-        }
+        List<BigInteger> s_hat = vectorStorage.seal(parallelFill(vectorStorage.allocate(N),
+                i -> bold_omega_hat.get(i).add(c.multiply(bold_r_hat.get(i))).mod(q)));
+        List<BigInteger> s_prime = vectorStorage.seal(parallelFill(vectorStorage.allocate(N),
+                i -> bold_omega_prime.get(i).add(c.multiply(bold_u_prime.get(i))).mod(q)));
 
         return new ShuffleProof.S(s_1, s_2, s_3, s_4, s_hat, s_prime);
     }
@@ -274,17 +442,35 @@ public class MixingAuthorityAlgorithms {
         return omega_2.add(c.multiply(r_hat)).mod(q);
     }
 
-    private List<BigInteger> computeV(int N, BigInteger q, List<BigInteger> bold_u_prime) {
-        List<BigInteger> v = new ArrayList<>();
-        v.add(ONE);
-        for (int i = N - 2; i >= 0; i--) {
-            // inserting always at index 0 means that index 0 always contains the previous value
-            // and that values will be held in reverse order to the insertion order, which is equivalent to the
-            // algorithm described
-            BigInteger v_i = bold_u_prime.get(i + 1).multiply(v.get(0)).mod(q);
-            v.add(0, v_i);
+    /**
+     * <tt>s_2 = omega_2 + c * &sum;r_hat_i * v_i</tt>, with <tt>v_i = u'_(i+1) * ... * u'_(N-1)</tt>. The vector v is
+     * not stored: its value at the end of each chunk is computed beforehand, and the chunks then compute the other
+     * values from the end, in parallel.
+     */
+    private BigInteger computeS2(int N, BigInteger q, List<BigInteger> bold_r_hat, BigInteger omega_2, BigInteger c,
+                                 List<BigInteger> bold_u_prime) {
+        int[] bounds = chunkBounds(N);
+        int chunks = bounds.length - 1;
+        // v_last[k] = v_(bounds[k + 1] - 1), the value of v at the end of chunk k
+        BigInteger[] v_last = new BigInteger[chunks];
+        v_last[chunks - 1] = ONE;
+        for (int k = chunks - 1; k > 0; k--) {
+            BigInteger v_i = v_last[k];
+            for (int i = bounds[k + 1] - 1; i >= bounds[k]; i--) {
+                v_i = bold_u_prime.get(i).multiply(v_i).mod(q);
+            }
+            v_last[k - 1] = v_i;
         }
-        return v;
+        BigInteger r_hat = IntStream.range(0, chunks).parallel().mapToObj(k -> {
+            BigInteger v_i = v_last[k];
+            BigInteger sum = ZERO;
+            for (int i = bounds[k + 1] - 1; i >= bounds[k]; i--) {
+                sum = sum.add(bold_r_hat.get(i).multiply(v_i)).mod(q);
+                v_i = bold_u_prime.get(i).multiply(v_i).mod(q);
+            }
+            return sum;
+        }).reduce(BigInteger::add).orElse(ZERO).mod(q);
+        return omega_2.add(c.multiply(r_hat)).mod(q);
     }
 
     private BigInteger computeS1(BigInteger q, List<BigInteger> bold_r, BigInteger omega_1, BigInteger c) {
@@ -295,61 +481,42 @@ public class MixingAuthorityAlgorithms {
         return omega_1.add(c.multiply(r_bar)).mod(q);
     }
 
-    private ShuffleProof.T computeT(List<Encryption> bold_e_prime, int N, BigInteger p, BigInteger g, BigInteger h,
-                                    BigInteger pk, List<BigInteger> bold_h, List<BigInteger> bold_c_hat,
+    private ShuffleProof.T computeT(List<Encryption> bold_e_prime, int N, BigInteger p, BigInteger q, BigInteger g,
+                                    BigInteger h, BigInteger pk, List<BigInteger> bold_h, List<BigInteger> bold_c_hat,
                                     BigInteger omega_1, BigInteger omega_2, BigInteger omega_3, BigInteger omega_4,
                                     List<BigInteger> bold_omega_hat, List<BigInteger> bold_omega_prime) {
-        BigInteger t_1 = modExp(g, omega_1, p);
-        BigInteger t_2 = modExp(g, omega_2, p);
-
-        BigInteger h_prod = getBoldHProduct(N, p, bold_h, bold_omega_prime);
-        BigInteger t_3 = modExp(g, omega_3, p).multiply(h_prod).mod(p);
+        BigInteger t_1 = modExpFixedBaseSecret(g, omega_1, p, q);
+        BigInteger t_2 = modExpFixedBaseSecret(g, omega_2, p, q);
 
-        BigInteger a_prime_prod = getAPrimeProd(bold_e_prime, N, p, bold_omega_prime);
-        BigInteger t_4_1 = modExp(pk, omega_4.negate(), p).multiply(a_prime_prod).mod(p);
+        BigInteger h_prod = getBoldHProduct(p, bold_h, bold_omega_prime);
+        BigInteger t_3 = modExpFixedBaseSecret(g, omega_3, p, q).multiply(h_prod).mod(p);
 
-        BigInteger b_prime_prod = getBPrimeProd(bold_e_prime, N, p, bold_omega_prime);
-        BigInteger t_4_2 = modExp(g, omega_4.negate(), p).multiply(b_prime_prod).mod(p);
+        BigInteger a_prime_prod = getAPrimeProd(bold_e_prime, p, bold_omega_prime);
+        BigInteger t_4_1 = modExpFixedBaseSecret(pk, omega_4.negate(), p, q).multiply(a_prime_prod).mod(p);
 
-        // insert c_hat_0, thus offsetting c_hat indices by 1...
-        List<BigInteger> tmp_bold_c_hat = new ArrayList<>();
-        tmp_bold_c_hat.add(0, h);
-        tmp_bold_c_hat.addAll(bold_c_hat);
+        BigInteger b_prime_prod = getBPrimeProd(bold_e_prime, p, bold_omega_prime);
+        BigInteger t_4_2 = modExpFixedBaseSecret(g, omega_4.negate(), p, q).multiply(b_prime_prod).mod(p);
 
-        Map<Integer, BigInteger> bold_t_hat_map = IntStream.range(0, N).parallel().boxed()
-                .collect(toMap(identity(), i -> modExp(g, bold_omega_hat.get(i), p)
-                        .multiply(modExp(tmp_bold_c_hat.get(i), bold_omega_prime.get(i), p))
-                        .mod(p)));
-
-        List<BigInteger> bold_t_hat = IntStream.range(0, N)
-                .mapToObj(bold_t_hat_map::get).collect(Collectors.toList());
-        tmp_bold_c_hat.remove(0); // restore c_hat to its former state
+        // c_hat_0 = h, thus offsetting c_hat indices by 1
+        List<BigInteger> bold_t_hat = vectorStorage.seal(parallelFill(vectorStorage.allocate(N), i -> {
+            BigInteger c_hat_i_minus_one = i == 0 ? h : bold_c_hat.get(i - 1);
+            return modExpFixedBaseSecret(g, bold_omega_hat.get(i), p, q)
+                    .multiply(modExpSecret(c_hat_i_minus_one, bold_omega_prime.get(i), p))
+                    .mod(p);
+        }));
         return new ShuffleProof.T(t_1, t_2, t_3, Arrays.asList(t_4_1, t_4_2), bold_t_hat);
     }
 
-    private BigInteger getBPrimeProd(List<Encryption> bold_e_prime, int N, BigInteger p, List<BigInteger> bold_omega_prime) {
-        return IntStream.range(0, N)
-                .parallel()
-                .mapToObj(i -> modExp(bold_e_prime.get(i).getB(), bold_omega_prime.get(i), p))
-                .reduce(multiplyMod(p))
-                .orElse(ONE);
+    private BigInteger getBPrimeProd(List<Encryption> bold_e_prime, BigInteger p, List<BigInteger> bold_omega_prime) {
+        return productMod(bold_e_prime.size(), i -> modExpSecret(bold_e_prime.get(i).getB(), bold_omega_prime.get(i), p), p);
     }
 
-    private BigInteger getAPrimeProd(List<Encryption> bold_e_prime, int N, BigInteger p, List<BigInteger> bold_omega_prime) {
-        return IntStream.range(0, N)
-                .parallel()
-                .mapToObj(i -> modExp(bold_e_prime.get(i).getA(), bold_omega_prime.get(i), p))
-                .reduce(multiplyMod(p))
-                .orElse(ONE);
+    private BigInteger getAPrimeProd(List<Encryption> bold_e_prime, BigInteger p, List<BigInteger> bold_omega_prime) {
+        return productMod(bold_e_prime.size(), i -> modExpSecret(bold_e_prime.get(i).getA(), bold_omega_prime.get(i), p), p);
     }
 
-
-    private BigInteger getBoldHProduct(int n, BigInteger p, List<BigInteger> bold_h, List<BigInteger> bold_omega_prime) {
-        return IntStream.range(0, n)
-                .parallel()
-                .mapToObj(i -> modExp(bold_h.get(i), bold_omega_prime.get(i), p))
-                .reduce(multiplyMod(p))
-                .orElse(ONE);
+    private BigInteger getBoldHProduct(BigInteger p, List<BigInteger> bold_h, List<BigInteger> bold_omega_prime) {
+        return productMod(bold_h.size(), i -> modExpSecret(bold_h.get(i), bold_omega_prime.get(i), p), p);
     }
 
     /**
@@ -359,10 +526,7 @@ public class MixingAuthorityAlgorithms {
      * @param bold_h a list of independent generators
      * @return a commitment to the permutation
      */
-    public PermutationCommitment genPermutationCommitment(List<Integer> psy, List<BigInteger> bold_h) {
-        Preconditions.checkArgument(psy.containsAll(
-                IntStream.range(0, psy.size()).boxed().collect(Collectors.toList())),
-                "The permutation should contain all number from 0 (inclusive) to length (exclusive)");
+    public PermutationCommitment genPermutationCommitment(Permutation psy, List<BigInteger> bold_h) {
         Preconditions.checkArgument(psy.size() == bold_h.size(),
                 "The lengths of psy and bold_h should be identical");
         Preconditions.checkArgument(bold_h.parallelStream().allMatch(h_i -> BigInteger.ONE.compareTo(h_i) != 0 &&
@@ -373,21 +537,78 @@ public class MixingAuthorityAlgorithms {
         BigInteger g = publicParameters.getEncryptionGroup().getG();
 
         // Loop indexed over j_i instead of i, for performance reasons, with a reverse permutation lookup
-        List<Integer> reversePsy = reversePermutation(psy);
+        Permutation reversePsy = psy.inverse();
+
+        List<BigInteger> bold_r = randomSecretVector(randomGenerator, psy.size());
+        List<BigInteger> bold_c = parallelFill(vectorStorage.allocate(psy.size()), j_i -> {
+            int i = reversePsy.get(j_i);
+            return modExpFixedBaseSecret(g, bold_r.get(j_i), p, q).multiply(bold_h.get(i)).mod(p);
+        });
 
-        Map<Integer, BigInteger> bold_r_map = IntStream.range(0, psy.size()).parallel().boxed()
-                .collect(Collectors.toMap(identity(), j_i -> randomGenerator.randomInZq(q)));
-        Map<Integer, BigInteger> bold_c_map = IntStream.range(0, psy.size()).parallel().boxed()
-                .collect(Collectors.toMap(identity(), j_i -> {
-                    Integer i = reversePsy.get(j_i);
-                    BigInteger r_j_i = bold_r_map.get(j_i);
-                    return modExp(g, r_j_i, p).multiply(bold_h.get(i)).mod(p);
-                }));
+        return new PermutationCommitment(vectorStorage.seal(bold_c), bold_r);
+    }
+
+    /**
+     * Offline part of Algorithms 7.41 (GenShuffle) and 7.44 (GenShuffleProof): generate a permutation of an upper
+     * bound of the number of encryptions, and commit to it.
+     * <p>Neither depends on the encryptions: they may be computed during the voting phase, and restricted to the
+     * actual number of encryptions once it is known, with {@link #restrictPermutation(PrecomputedPermutation, int)}.
+     * </p>
+     *
+     * @param upper_n_max an upper bound of the number of encryptions
+     * @return a permutation of size upper_n_max, the generators and the commitment to the permutation
+     */
+    public PrecomputedPermutation precomputePermutation(int upper_n_max) {
+        Permutation psy = genPermutation(upper_n_max);
+        List<BigInteger> bold_h = generalAlgorithms.getGenerators(upper_n_max);
+        return new PrecomputedPermutation(psy, bold_h, genPermutationCommitment(psy, bold_h));
+    }
 
-        List<BigInteger> bold_c = IntStream.range(0, psy.size()).mapToObj(bold_c_map::get).collect(Collectors.toList());
-        List<BigInteger> bold_r = IntStream.range(0, psy.size()).mapToObj(bold_r_map::get).collect(Collectors.toList());
+    /**
+     * Online part of the precomputation: restrict a precomputed permutation to the actual number of encryptions.
+     * <p>The restriction maps <tt>i &lt; upper_n</tt> to the rank of <tt>psy(i)</tt> among the values
+     * <tt>psy(0), ..., psy(upper_n - 1)</tt>. It is a uniformly random permutation of size upper_n, and the commitment
+     * to it is the sub-vector of the commitment at these values. Since the generators do not depend on the number of
+     * generators requested, they are the first upper_n precomputed generators.</p>
+     *
+     * @param precomputation the precomputed permutation, of size at least upper_n
+     * @param upper_n        the number of encryptions
+     * @return a permutation of size upper_n, the generators and the commitment to the permutation
+     */
+    public PrecomputedPermutation restrictPermutation(PrecomputedPermutation precomputation, int upper_n) {
+        int upper_n_max = precomputation.size();
+        Preconditions.checkArgument(0 <= upper_n && upper_n <= upper_n_max,
+                "The precomputed permutation should be at least of size upper_n");
+        if (upper_n == upper_n_max) {
+            return precomputation;
+        }
+        Permutation psy = precomputation.getPsy();
+        List<BigInteger> bold_c = precomputation.getPermutationCommitment().getBold_c();
+        List<BigInteger> bold_r = precomputation.getPermutationCommitment().getBold_r();
 
-        return new PermutationCommitment(bold_c, bold_r);
+        boolean[] kept = new boolean[upper_n_max];
+        for (int i = 0; i < upper_n; i++) {
+            kept[psy.get(i)] = true;
+        }
+        int[] ranks = new int[upper_n_max];
+        int[] keptIndices = new int[upper_n];
+        List<BigInteger> bold_c_restricted = vectorStorage.allocate(upper_n);
+        int rank = 0;
+        for (int j = 0; j < upper_n_max; j++) {
+            if (kept[j]) {
+                ranks[j] = rank;
+                keptIndices[rank] = j;
+                bold_c_restricted.set(rank, bold_c.get(j));
+                rank++;
+            }
+        }
+        List<BigInteger> bold_r_restricted = bold_r instanceof SeededRandomVector ?
+                ((SeededRandomVector) bold_r).select(keptIndices) :
+                Arrays.asList(IntStream.of(keptIndices).mapToObj(bold_r::get).toArray(BigInteger[]::new));
+        Permutation psy_restricted = Permutation.of(IntStream.range(0, upper_n).map(i -> ranks[psy.get(i)]).toArray());
+
+        return new PrecomputedPermutation(psy_restricted, precomputation.getBold_h().subList(0, upper_n),
+                new PermutationCommitment(vectorStorage.seal(bold_c_restricted), bold_r_restricted));
     }
 
     /**
@@ -402,37 +623,139 @@ public class MixingAuthorityAlgorithms {
         BigInteger q = publicParameters.getEncryptionGroup().getQ();
         BigInteger g = publicParameters.getEncryptionGroup().getG();
 
-        Preconditions.checkArgument(generalAlgorithms.isMember(c_0),
-                "c_0 must be in G_q");
-        Preconditions.checkArgument(bold_u.parallelStream().allMatch(generalAlgorithms::isInZ_q),
-                "all u_i's must be in Z_q");
-
-        List<BigInteger> bold_c = new ArrayList<>();
-        List<BigInteger> bold_r = new ArrayList<>();
+        checkCommitmentChainArguments(c_0, bold_u);
 
-        bold_c.add(c_0); // c_0, we'll remove it afterwards
+        int n = bold_u.size();
+        List<BigInteger> bold_r = randomSecretVector(randomGenerator, n);
+        List<BigInteger> bold_c = vectorStorage.allocate(n);
 
-        for (int i = 0; i < bold_u.size(); i++) {
-            BigInteger c_i_minus_one = bold_c.get(i); // offset by one, due to adding c_0 as a prefix
+        BigInteger c_i_minus_one = c_0;
+        for (int i = 0; i < n; i++) {
             BigInteger u_prime_i = bold_u.get(i);
+            BigInteger r_i = bold_r.get(i);
+            BigInteger c_i = modExpFixedBaseSecret(g, r_i, p, q).multiply(modExpSecret(c_i_minus_one, u_prime_i, p)).mod(p);
 
-            BigInteger r_i = randomGenerator.randomInZq(q);
-            BigInteger c_i = modExp(g, r_i, p).multiply(modExp(c_i_minus_one, u_prime_i, p)).mod(p);
+            bold_c.set(i, c_i);
+            c_i_minus_one = c_i;
+        }
+
+        return new CommitmentChain(vectorStorage.seal(bold_c), bold_r);
+    }
 
-            bold_c.add(c_i);
-            bold_r.add(r_i);
+    /**
+     * Algorithm 7.46: GenCommitmentChain, computed in parallel
+     * <p>Unrolling <tt>c_i = g^r_i * c_(i-1)^u_i</tt> gives the closed form <tt>c_i = g^R_i * c_0^U_i</tt>, with
+     * <tt>R_i = r_i + u_i * R_(i-1) mod q</tt> and <tt>U_i = u_i * U_(i-1) mod q</tt> (<tt>R_0 = 0</tt>,
+     * <tt>U_0 = 1</tt>). These aggregates are computed sequentially, at the cost of two multiplications per element,
+     * and the chain elements are then computed independently.</p>
+     * <p>The exponents <tt>R_i</tt> and <tt>U_i</tt> depend on the secret permutation, and are full-size: this costs two
+     * constant-time exponentiations by <tt>|q|</tt>-bit exponents per element, instead of one by a <tt>|q|</tt>-bit
+     * and one by a <tt>tau</tt>-bit exponent for the sequential algorithm, so about twice as much work in total, in
+     * exchange for its distribution across all cores.</p>
+     * <p>The randomness is drawn sequentially, in the same order as in
+     * {@link #genCommitmentChain(BigInteger, List)}: given the same random values, both yield the same chain.</p>
+     *
+     * @param c_0    initial commitment
+     * @param bold_u the permuted challenges
+     * @return a commitment chain relative to the permuted list of public challenges
+     */
+    public CommitmentChain genCommitmentChainParallel(BigInteger c_0, List<BigInteger> bold_u) {
+        BigInteger p = publicParameters.getEncryptionGroup().getP();
+        BigInteger q = publicParameters.getEncryptionGroup().getQ();
+        BigInteger g = publicParameters.getEncryptionGroup().getG();
+
+        checkCommitmentChainArguments(c_0, bold_u);
+
+        int n = bold_u.size();
+        List<BigInteger> bold_r = randomSecretVector(randomGenerator, n);
+        // the aggregates R_i and U_i are only kept before the start of each chunk
+        int[] bounds = chunkBounds(n);
+        int chunks = bounds.length - 1;
+        BigInteger[] upper_r_start = new BigInteger[chunks];
+        BigInteger[] upper_u_start = new BigInteger[chunks];
+        BigInteger upper_r_i = ZERO;
+        BigInteger upper_u_i = ONE;
+        for (int k = 0; k < chunks; k++) {
+            upper_r_start[k] = upper_r_i;
+            upper_u_start[k] = upper_u_i;
+            for (int i = bounds[k]; i < bounds[k + 1]; i++) {
+                BigInteger u_prime_i = bold_u.get(i);
+                upper_r_i = bold_r.get(i).add(u_prime_i.multiply(upper_r_i)).mod(q);
+                upper_u_i = u_prime_i.multiply(upper_u_i).mod(q);
+            }
         }
 
-        bold_c.remove(0);
+        List<BigInteger> bold_c = vectorStorage.allocate(n);
+        IntStream.range(0, chunks).parallel().forEach(k -> {
+            BigInteger upper_r_k = upper_r_start[k];
+            BigInteger upper_u_k = upper_u_start[k];
+            for (int i = bounds[k]; i < bounds[k + 1]; i++) {
+                BigInteger u_prime_i = bold_u.get(i);
+                upper_r_k = bold_r.get(i).add(u_prime_i.multiply(upper_r_k)).mod(q);
+                upper_u_k = u_prime_i.multiply(upper_u_k).mod(q);
+                bold_c.set(i, modExpFixedBaseSecret(g, upper_r_k, p, q)
+                        .multiply(modExpFixedBaseSecret(c_0, upper_u_k, p, q)).mod(p));
+            }
+        });
+
+        return new CommitmentChain(vectorStorage.seal(bold_c), bold_r);
+    }
 
-        return new CommitmentChain(bold_c, bold_r);
+    /**
+     * The parallel commitment chain costs about twice as many exponentiations and two more secret N-vectors than the
+     * sequential one: it is only used when there are enough cores to make up for it, and a long enough chain.
+     *
+     * @param n           the length of the chain
+     * @param parallelism the number of worker threads available
+     * @return true if {@link #genCommitmentChainParallel(BigInteger, List)} should be used
+     */
+    static boolean useParallelCommitmentChain(int n, int parallelism) {
+        return parallelism >= PARALLEL_CHAIN_MIN_PARALLELISM && n >= PARALLEL_CHAIN_MIN_LENGTH;
     }
 
-    private List<Integer> reversePermutation(List<Integer> psy) {
-        Preconditions.checkArgument(psy.containsAll(
-                IntStream.range(0, psy.size()).boxed().collect(Collectors.toList())),
-                "The permutation should contain all number from 0 (inclusive) to length (exclusive)");
+    /**
+     * Secret vectors are never put in the vector storage, which may be backed by files: with a mapped storage, they
+     * are regenerated from secret seeds, and they stay on the heap otherwise.
+     */
+    private List<BigInteger> randomSecretVector(RandomGenerator randomGenerator, int n) {
+        BigInteger q = publicParameters.getEncryptionGroup().getQ();
+        return isOutOfCore() ? new SeededRandomVector(randomGenerator, n, q, SECRET_CHUNK_SIZE) :
+                randomVectorInZq(randomGenerator, n, q);
+    }
+
+    /**
+     * @param n the length of a vector
+     * @return the bounds of the contiguous chunks of the vector processed in parallel, from 0 to n
+     */
+    private static int[] chunkBounds(int n) {
+        int chunks = Math.max(1, Math.min(n, ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD));
+        return IntStream.rangeClosed(0, chunks).map(k -> (int) ((long) n * k / chunks)).toArray();
+    }
+
+    private static List<BigInteger> allocateSecret(int n) {
+        return Arrays.asList(new BigInteger[n]);
+    }
+
+    /**
+     * In the {@link RandomGenerator#isDeterministic() deterministic} benchmark mode, the values are drawn sequentially,
+     * so that they only depend on the state of the generator, and not on the scheduling of the threads. Otherwise,
+     * they are drawn in parallel, from the per-thread generators if the random generator provides them.
+     */
+    private static List<BigInteger> randomVectorInZq(RandomGenerator randomGenerator, int n, BigInteger q) {
+        List<BigInteger> bold_x = allocateSecret(n);
+        if (!randomGenerator.isDeterministic()) {
+            return parallelFill(bold_x, i -> randomGenerator.randomInZq(q));
+        }
+        for (int i = 0; i < n; i++) {
+            bold_x.set(i, randomGenerator.randomInZq(q));
+        }
+        return bold_x;
+    }
 
-        return IntStream.range(0, psy.size()).mapToObj(psy::indexOf).collect(Collectors.toList());
+    private void checkCommitmentChainArguments(BigInteger c_0, List<BigInteger> bold_u) {
+        Preconditions.checkArgument(generalAlgorithms.isMember(c_0),
+                "c_0 must be in G_q");
+        Preconditions.checkArgument(bold_u.parallelStream().allMatch(generalAlgorithms::isInZ_q),
+                "all u_i's must be in Z_q");
     }
 }
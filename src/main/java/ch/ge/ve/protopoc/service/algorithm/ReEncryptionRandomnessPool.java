@@ -0,0 +1,192 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.algorithm;
+
+import ch.ge.ve.protopoc.service.model.EncryptionPublicKey;
+import ch.ge.ve.protopoc.service.model.ReEncryptionRandomness;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of re-encryption randomness <tt>(r', pk^r', g^r')</tt>, for Algorithm 7.41: GenShuffle.
+ * <p>The encryption key is known as soon as the keys are established, long before the mixing starts: the pool is
+ * filled by low priority background threads during the voting phase, and the shuffle then only costs two modular
+ * multiplications per encryption. When the pool runs dry, the randomness is computed on demand.</p>
+ * <p>The values are taken in the order in which they were drawn, and the missing ones are drawn afterwards: with a
+ * single background thread, the shuffle uses the first values drawn from the generator, however far the
+ * precomputation went (see {@link ch.ge.ve.protopoc.service.support.RandomGenerator#deterministicForBenchmark(long,
+ * String)}).</p>
+ * <p>A background thread only computes a value once there is room for it in the pool, so that no computed value is
+ * lost when the threads are stopped.</p>
+ * <p>The values of <tt>r'</tt> are as secret as the permutation: they are only kept in memory, and discarded when the
+ * pool is stopped.</p>
+ */
+public class ReEncryptionRandomnessPool {
+    private static final Logger log = LoggerFactory.getLogger(ReEncryptionRandomnessPool.class);
+    private static final long STOP_TIMEOUT_SECONDS = 60;
+    private final MixingAuthorityAlgorithms mixingAuthorityAlgorithms;
+    private final EncryptionPublicKey publicKey;
+    private final BlockingQueue<ReEncryptionRandomness> pool;
+    private final Semaphore room;
+    private final List<Future<?>> fillers = new ArrayList<>();
+    private final AtomicLong poolHits = new AtomicLong();
+    private final AtomicLong poolMisses = new AtomicLong();
+    private ExecutorService executor;
+
+    /**
+     * @param mixingAuthorityAlgorithms the algorithms generating the randomness
+     * @param publicKey                 the encryption key
+     * @param capacity                  the maximal number of precomputed values, typically the size of the electorate
+     */
+    public ReEncryptionRandomnessPool(MixingAuthorityAlgorithms mixingAuthorityAlgorithms,
+                                      EncryptionPublicKey publicKey, int capacity) {
+        Preconditions.checkArgument(capacity > 0, "The capacity must be positive");
+        this.mixingAuthorityAlgorithms = mixingAuthorityAlgorithms;
+        this.publicKey = publicKey;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+        this.room = new Semaphore(capacity);
+    }
+
+    /**
+     * Start filling the pool in the background
+     *
+     * @param threads the number of background threads
+     */
+    public synchronized void start(int threads) {
+        Preconditions.checkArgument(threads > 0, "There must be at least one thread");
+        Preconditions.checkState(executor == null, "The pool has already been started");
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("re-encryption-pool-%d")
+                .setDaemon(true)
+                .setPriority(Thread.MIN_PRIORITY)
+                .build());
+        for (int i = 0; i < threads; i++) {
+            fillers.add(executor.submit(this::fill));
+        }
+    }
+
+    private void fill() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                room.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // the room was reserved: the value always fits, even if the thread is interrupted meanwhile
+            pool.add(mixingAuthorityAlgorithms.genReEncryptionRandomness(publicKey));
+        }
+    }
+
+    /**
+     * Stop the background threads, and take n values: the precomputed ones first, in the order in which they were
+     * computed, then values computed on demand.
+     *
+     * @param n the number of values
+     * @return the values, in the order in which they were drawn
+     */
+    public synchronized List<ReEncryptionRandomness> take(int n) {
+        Preconditions.checkArgument(n >= 0, "The number of values must be non-negative");
+        stopFilling();
+        List<ReEncryptionRandomness> values = new ArrayList<>(n);
+        room.release(pool.drainTo(values, n));
+        int misses = n - values.size();
+        if (misses > 0) {
+            values.addAll(mixingAuthorityAlgorithms.genReEncryptionRandomness(publicKey, misses));
+        }
+        poolHits.addAndGet(n - misses);
+        poolMisses.addAndGet(misses);
+        return values;
+    }
+
+    private void stopFilling() {
+        if (executor != null && !executor.isTerminated()) {
+            executor.shutdownNow();
+            try {
+                // the background threads finish the value being computed
+                if (!executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Re-encryption randomness pool threads still running");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reportFailures();
+        }
+    }
+
+    private void reportFailures() {
+        for (Future<?> filler : fillers) {
+            if (filler.isDone()) {
+                try {
+                    filler.get();
+                } catch (ExecutionException e) {
+                    log.error("A re-encryption randomness pool thread failed, the pool stopped filling early",
+                            e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the background threads, and discard the remaining values
+     */
+    public synchronized void stop() {
+        stopFilling();
+        pool.clear();
+        log.info(String.format("Re-encryption randomness pool stopped: %d values taken from the pool, %d computed " +
+                "on demand", poolHits.get(), poolMisses.get()));
+    }
+
+    /**
+     * @return the number of precomputed values currently available
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * @return the number of values taken from the pool so far
+     */
+    public long getHits() {
+        return poolHits.get();
+    }
+
+    /**
+     * @return the number of values computed on demand so far, as the pool was empty
+     */
+    public long getMisses() {
+        return poolMisses.get();
+    }
+
+    public EncryptionPublicKey getPublicKey() {
+        return publicKey;
+    }
+}
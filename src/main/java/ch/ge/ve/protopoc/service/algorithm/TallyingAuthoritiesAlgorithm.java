@@ -26,16 +26,24 @@ import ch.ge.ve.protopoc.service.exception.TallyingRuntimeException;
 import ch.ge.ve.protopoc.service.model.DecryptionProof;
 import ch.ge.ve.protopoc.service.model.Encryption;
 import ch.ge.ve.protopoc.service.model.PublicParameters;
+import ch.ge.ve.protopoc.service.support.RandomGenerator;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.batchModInverse;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpFixedBase;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpPublic;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modInverse;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.multiExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.parallelBatchModInverse;
+import static ch.ge.ve.protopoc.service.support.ParallelVectors.parallelZip;
 import static java.math.BigInteger.ONE;
 
 /**
@@ -46,10 +54,13 @@ public class TallyingAuthoritiesAlgorithm {
 
     private final PublicParameters publicParameters;
     private final GeneralAlgorithms generalAlgorithms;
+    private final RandomGenerator randomGenerator;
 
-    public TallyingAuthoritiesAlgorithm(PublicParameters publicParameters, GeneralAlgorithms generalAlgorithms) {
+    public TallyingAuthoritiesAlgorithm(PublicParameters publicParameters, GeneralAlgorithms generalAlgorithms,
+                                        RandomGenerator randomGenerator) {
         this.publicParameters = publicParameters;
         this.generalAlgorithms = generalAlgorithms;
+        this.randomGenerator = randomGenerator;
     }
 
     /**
@@ -63,6 +74,25 @@ public class TallyingAuthoritiesAlgorithm {
      */
     public boolean checkDecryptionProofs(List<DecryptionProof> bold_pi_prime, List<BigInteger> bold_pk,
                                          List<Encryption> bold_e, List<List<BigInteger>> upper_bold_b_prime) {
+        return checkDecryptionProofs(bold_pi_prime, bold_pk, bold_e, upper_bold_b_prime, false);
+    }
+
+    /**
+     * Algorithm 7.51: GenDecryptionProofs, with optional batch verification
+     * <p>In batch verification mode, the N equations of each proof are combined with short random exponents into a
+     * single check (see {@link #checkDecryptionProofInBatch(DecryptionProof, BigInteger, List, List)}). Should that
+     * check fail, the proof is verified again equation by equation.</p>
+     *
+     * @param bold_pi_prime      the vector of the decryption proofs, by authority
+     * @param bold_pk            the vector of the public key shares, by authority
+     * @param bold_e             the vector of the encrypted ballots
+     * @param upper_bold_b_prime the matrix of partial decryptions, by authority, by ballot
+     * @param batchVerification  whether the equations of each proof should be verified in batch
+     * @return true if all the proofs are valid, false otherwise
+     */
+    public boolean checkDecryptionProofs(List<DecryptionProof> bold_pi_prime, List<BigInteger> bold_pk,
+                                         List<Encryption> bold_e, List<List<BigInteger>> upper_bold_b_prime,
+                                         boolean batchVerification) {
         // Validity checks
         Preconditions.checkArgument(bold_pi_prime.parallelStream().allMatch(pi_prime ->
                         pi_prime.getT().parallelStream().allMatch(generalAlgorithms::isMember) &&
@@ -70,11 +100,9 @@ public class TallyingAuthoritiesAlgorithm {
                 "all pi_prime_i's t's should be in G_q, and s in Z_q");
         Preconditions.checkArgument(bold_pk.parallelStream().allMatch(generalAlgorithms::isMember),
                 "all public key shares should be in G_q");
-        Preconditions.checkArgument(bold_e.parallelStream().allMatch(e -> generalAlgorithms.isMember(e.getA()) &&
-                        generalAlgorithms.isMember(e.getB())),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(Encryption.components(bold_e)),
                 "all e_i's must be in G_q^2");
-        Preconditions.checkArgument(upper_bold_b_prime.parallelStream()
-                        .flatMap(List::parallelStream).allMatch(generalAlgorithms::isMember),
+        Preconditions.checkArgument(upper_bold_b_prime.stream().allMatch(generalAlgorithms::areAllMembers),
                 "all elements within upper_bold_b_prime should be in G_q");
 
         // Size checks
@@ -88,10 +116,60 @@ public class TallyingAuthoritiesAlgorithm {
                 "There should be as many rows to upper_bold_b_prime as there are authorities");
         Preconditions.checkArgument(upper_bold_b_prime.stream().map(List::size).allMatch(l -> l == N),
                 "There should be as many columns to upper_bold_b_prime as there are encryptions");
-        return IntStream.range(0, s).allMatch(j ->
+        return IntStream.range(0, s).allMatch(j -> batchVerification ?
+                checkDecryptionProofInBatch(bold_pi_prime.get(j), bold_pk.get(j), bold_e, upper_bold_b_prime.get(j)) :
                 checkDecryptionProof(bold_pi_prime.get(j), bold_pk.get(j), bold_e, upper_bold_b_prime.get(j)));
     }
 
+    /**
+     * Small exponents batch verification of a decryption proof.
+     * <p>Rather than checking <tt>t_i = b'_i^-c * b_i^s</tt> for each i, the verifier draws random exponents
+     * <tt>r_i</tt> of tau bits and checks <tt>&prod;t_i^r_i = (&prod;b'_i^r_i)^-c * (&prod;b_i^r_i)^s</tt>, which
+     * only holds for an invalid proof with probability 2^-tau. This relies on all the values being members of G_q,
+     * which is checked beforehand by {@link #checkDecryptionProofs(List, List, List, List, boolean)}.</p>
+     * <p>If the combined check fails, the proof is checked equation by equation, with
+     * {@link #checkDecryptionProof(DecryptionProof, BigInteger, List, List)}.</p>
+     *
+     * @param pi_prime     the proof
+     * @param pk_j         the authority's public key
+     * @param bold_e       the vector of the encryptions
+     * @param bold_b_prime the vector of the partial decryptions
+     * @return true if the proof is valid, false otherwise
+     */
+    private boolean checkDecryptionProofInBatch(DecryptionProof pi_prime, BigInteger pk_j, List<Encryption> bold_e,
+                                                List<BigInteger> bold_b_prime) {
+        BigInteger p = publicParameters.getEncryptionGroup().getP();
+        BigInteger q = publicParameters.getEncryptionGroup().getQ();
+        BigInteger g = publicParameters.getEncryptionGroup().getG();
+        int tau = publicParameters.getSecurityParameters().getTau();
+        int N = bold_e.size();
+        Preconditions.checkArgument(pi_prime.getT().size() == N + 1,
+                "pi.t should contain one element per encryption, plus one");
+
+        List<BigInteger> bold_b = bold_e.stream().map(Encryption::getB).collect(Collectors.toList());
+        Object[] y = {pk_j, bold_b, bold_b_prime};
+        BigInteger[] t = pi_prime.getT().toArray(new BigInteger[0]);
+        BigInteger c = generalAlgorithms.getNIZKPChallenge(y, t, tau);
+        BigInteger s = pi_prime.getS();
+
+        BigInteger t_prime_0 = modExpPublic(modInverse(pk_j, p), c, p).multiply(modExpFixedBase(g, s, p, q)).mod(p);
+
+        BigInteger upperbound = ONE.shiftLeft(tau);
+        List<BigInteger> bold_r = IntStream.range(0, N)
+                .mapToObj(i -> randomGenerator.randomBigInteger(upperbound)).collect(Collectors.toList());
+        BigInteger t_prod = multiExp(pi_prime.getT().subList(1, N + 1), bold_r, p);
+        BigInteger b_prime_prod = multiExp(bold_b_prime, bold_r, p);
+        BigInteger b_prod = multiExp(bold_b, bold_r, p);
+        BigInteger t_prod_prime = modExpPublic(modInverse(b_prime_prod, p), c, p).multiply(modExpPublic(b_prod, s, p)).mod(p);
+
+        boolean isProofValid = t[0].compareTo(t_prime_0) == 0 && t_prod.compareTo(t_prod_prime) == 0;
+        if (!isProofValid) {
+            log.warn("Batch verification of a decryption proof failed, checking each equation individually");
+            return checkDecryptionProof(pi_prime, pk_j, bold_e, bold_b_prime);
+        }
+        return true;
+    }
+
     /**
      * Algorithm 7.52: CheckDecryptionProof
      *
@@ -110,7 +188,7 @@ public class TallyingAuthoritiesAlgorithm {
                 "pi.s must be in Z_q");
         Preconditions.checkArgument(generalAlgorithms.isMember(pk_j),
                 "the public key must be in G_q");
-        Preconditions.checkArgument(bold_b_prime.parallelStream().allMatch(generalAlgorithms::isMember),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(bold_b_prime),
                 "all elements of bold_b_prime must be in G_q");
         BigInteger p = publicParameters.getEncryptionGroup().getP();
         BigInteger q = publicParameters.getEncryptionGroup().getQ();
@@ -121,11 +199,17 @@ public class TallyingAuthoritiesAlgorithm {
         Object[] y = {pk_j, bold_b, bold_b_prime};
         BigInteger[] t = pi_prime.getT().toArray(new BigInteger[0]);
         BigInteger c = generalAlgorithms.getNIZKPChallenge(y, t, tau);
-        BigInteger t_prime_0 = modExp(pk_j, c.negate(), p).multiply(modExp(g, pi_prime.getS(), p)).mod(p);
+        // invert pk_j and all the b_prime_i's at once, rather than through negative exponents
+        List<BigInteger> toInvert = new ArrayList<>();
+        toInvert.add(pk_j);
+        toInvert.addAll(bold_b_prime);
+        List<BigInteger> inverses = batchModInverse(toInvert, p);
+
+        BigInteger t_prime_0 = modExpPublic(inverses.get(0), c, p).multiply(modExpFixedBase(g, pi_prime.getS(), p, q)).mod(p);
         List<BigInteger> t_prime = IntStream.range(0, bold_b.size())
                 .mapToObj(i ->
-                        modExp(bold_b_prime.get(i), c.negate(), p)
-                                .multiply(modExp(bold_b.get(i), pi_prime.getS(), p)).mod(p))
+                        modExpPublic(inverses.get(i + 1), c, p)
+                                .multiply(modExpPublic(bold_b.get(i), pi_prime.getS(), p)).mod(p))
                 .collect(Collectors.toList());
         t_prime.add(0, t_prime_0);
 
@@ -146,11 +230,9 @@ public class TallyingAuthoritiesAlgorithm {
      */
     public List<BigInteger> getDecryptions(List<Encryption> bold_e, List<List<BigInteger>> upper_bold_b_prime) {
         // Validity checks
-        Preconditions.checkArgument(bold_e.parallelStream().allMatch(e -> generalAlgorithms.isMember(e.getA()) &&
-                        generalAlgorithms.isMember(e.getB())),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(Encryption.components(bold_e)),
                 "all e_i's must be in G_q^2");
-        Preconditions.checkArgument(upper_bold_b_prime.parallelStream()
-                        .flatMap(List::parallelStream).allMatch(generalAlgorithms::isMember),
+        Preconditions.checkArgument(upper_bold_b_prime.stream().allMatch(generalAlgorithms::areAllMembers),
                 "all elements within upper_bold_b_prime should be in G_q");
 
         // Size checks
@@ -161,13 +243,15 @@ public class TallyingAuthoritiesAlgorithm {
                 "There should be one row in upper_bold_b_prime per authority");
         Preconditions.checkArgument(upper_bold_b_prime.stream().map(List::size).allMatch(l -> l == N),
                 "Each row of upper_bold_b_prime should contain one partial decryption per ballot");
-        return IntStream.range(0, N).mapToObj(i -> {
-            BigInteger b_prime_i = IntStream.range(0, s).mapToObj(j -> upper_bold_b_prime.get(j).get(i))
-                    .reduce(BigInteger::multiply)
-                    .orElse(ONE)
-                    .mod(p);
-            return bold_e.get(i).getA().multiply(b_prime_i.modInverse(p)).mod(p);
-        }).collect(Collectors.toList());
+        List<BigInteger> bold_b_prime = IntStream.range(0, N).parallel().mapToObj(i ->
+                IntStream.range(0, s).mapToObj(j -> upper_bold_b_prime.get(j).get(i))
+                        .reduce(BigInteger::multiply)
+                        .orElse(ONE)
+                        .mod(p))
+                .collect(Collectors.toList());
+        List<BigInteger> bold_b_prime_inverse = parallelBatchModInverse(bold_b_prime, p);
+        return parallelZip(bold_e, bold_b_prime_inverse, (e_i, b_prime_i_inverse) ->
+                e_i.getA().multiply(b_prime_i_inverse).mod(p));
     }
 
     /**
@@ -179,7 +263,7 @@ public class TallyingAuthoritiesAlgorithm {
      * and each value v_{ij} = 1 represents somebody’s vote for a specific candidate j &isin; {1, ..., n}
      */
     public List<List<Boolean>> getVotes(List<BigInteger> bold_m, int n) {
-        Preconditions.checkArgument(bold_m.parallelStream().allMatch(generalAlgorithms::isMember),
+        Preconditions.checkArgument(generalAlgorithms.areAllMembers(bold_m),
                 "all m_i's must be in G_q");
         Preconditions.checkArgument(n >= 2, "There must be at least two candidates");
         List<BigInteger> bold_p;
@@ -25,22 +25,31 @@ import ch.ge.ve.protopoc.service.exception.IncompatibleParametersRuntimeExceptio
 import ch.ge.ve.protopoc.service.exception.NotEnoughPrimesInGroupException;
 import ch.ge.ve.protopoc.service.model.*;
 import ch.ge.ve.protopoc.service.model.polynomial.Point;
-import ch.ge.ve.protopoc.service.support.ByteArrayUtils;
+import ch.ge.ve.protopoc.service.support.BatchVerification;
 import ch.ge.ve.protopoc.service.support.Conversion;
 import ch.ge.ve.protopoc.service.support.Hash;
+import ch.ge.ve.protopoc.service.support.ObliviousTransferKeyDerivation;
 import ch.ge.ve.protopoc.service.support.RandomGenerator;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpFixedBase;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpPublic;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpSecret;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.multiExp;
 import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.ZERO;
 
 /**
  * Algorithms related to the vote casting phase, performed by the authorities
@@ -51,8 +60,8 @@ public class VoteCastingAuthorityAlgorithms {
     private final ElectionSet electionSet;
     private final GeneralAlgorithms generalAlgorithms;
     private final RandomGenerator randomGenerator;
-    private final Hash hash;
     private final Conversion conversion = new Conversion();
+    private final ObliviousTransferKeyDerivation keyDerivation;
 
     public VoteCastingAuthorityAlgorithms(PublicParameters publicParameters, ElectionSet electionSet,
                                           GeneralAlgorithms generalAlgorithms, RandomGenerator randomGenerator,
@@ -61,7 +70,8 @@ public class VoteCastingAuthorityAlgorithms {
         this.electionSet = electionSet;
         this.generalAlgorithms = generalAlgorithms;
         this.randomGenerator = randomGenerator;
-        this.hash = hash;
+        this.keyDerivation = new ObliviousTransferKeyDerivation(hash, publicParameters.getUpper_l_m(),
+                publicParameters.getSecurityParameters().getUpper_l());
     }
 
     /**
@@ -76,6 +86,23 @@ public class VoteCastingAuthorityAlgorithms {
      */
     public boolean checkBallot(Integer i, BallotAndQuery alpha, EncryptionPublicKey pk,
                                List<BigInteger> bold_x_hat, Collection<BallotEntry> upper_b) {
+        return checkBallotWithoutProof(i, alpha, pk, bold_x_hat, upper_b) &&
+                checkBallotProof(alpha.getPi(), alpha.getX_hat(), getA(alpha), alpha.getB(), pk);
+    }
+
+    /**
+     * Algorithm 7.22: CheckBallot, except for the verification of the ballot proof, so that the proofs of several
+     * ballots may then be verified at once by {@link #checkBallotProofs(List, EncryptionPublicKey)}
+     *
+     * @param i          the voter index
+     * @param alpha      the submitted ballot, including the oblivious transfer query
+     * @param pk         the encryption public key
+     * @param bold_x_hat the vector of public voter credentials
+     * @param upper_b    the current ballot list
+     * @return true if the voter has no ballot yet, and the ballot matches the voter's public credential
+     */
+    public boolean checkBallotWithoutProof(Integer i, BallotAndQuery alpha, EncryptionPublicKey pk,
+                                           List<BigInteger> bold_x_hat, Collection<BallotEntry> upper_b) {
         Preconditions.checkNotNull(i);
         Preconditions.checkNotNull(alpha);
         List<BigInteger> bold_a = alpha.getBold_a();
@@ -97,15 +124,19 @@ public class VoteCastingAuthorityAlgorithms {
         Preconditions.checkElementIndex(i, bold_x_hat.size());
         Preconditions.checkNotNull(upper_b);
 
-        BigInteger p = publicParameters.getEncryptionGroup().getP();
         BigInteger x_hat_i = bold_x_hat.get(i);
-        if (!hasBallot(i, upper_b) && alpha.getX_hat().compareTo(x_hat_i) == 0) {
-            BigInteger a = bold_a.stream().reduce(BigInteger::multiply)
-                    .orElse(ONE)
-                    .mod(p);
-            return checkBallotProof(alpha.getPi(), alpha.getX_hat(), a, alpha.getB(), pk);
-        }
-        return false;
+        return !hasBallot(i, upper_b) && alpha.getX_hat().compareTo(x_hat_i) == 0;
+    }
+
+    /**
+     * @param alpha a ballot
+     * @return the product a of the a_j's of the ballot, the first part of the ElGamal encryption of the vote
+     */
+    private BigInteger getA(BallotAndQuery alpha) {
+        BigInteger p = publicParameters.getEncryptionGroup().getP();
+        return alpha.getBold_a().stream().reduce(BigInteger::multiply)
+                .orElse(ONE)
+                .mod(p);
     }
 
     /**
@@ -134,6 +165,143 @@ public class VoteCastingAuthorityAlgorithms {
      */
     public boolean checkBallotProof(NonInteractiveZKP pi, BigInteger x_hat, BigInteger a, BigInteger b,
                                     EncryptionPublicKey pk) {
+        checkBallotProofArguments(pi, x_hat, a, b, pk);
+        List<BigInteger> t = pi.getT();
+        List<BigInteger> s = pi.getS();
+        BigInteger s_1 = s.get(0);
+        BigInteger s_2 = s.get(1);
+        BigInteger s_3 = s.get(2);
+
+        log.debug(String.format("checkBallotProof: a = %s", a));
+
+        BigInteger p = publicParameters.getEncryptionGroup().getP();
+        BigInteger q = publicParameters.getEncryptionGroup().getQ();
+        BigInteger g = publicParameters.getEncryptionGroup().getG();
+        BigInteger p_hat = publicParameters.getIdentificationGroup().getP_hat();
+        BigInteger q_hat = publicParameters.getIdentificationGroup().getQ_hat();
+        BigInteger g_hat = publicParameters.getIdentificationGroup().getG_hat();
+        int tau = publicParameters.getSecurityParameters().getTau();
+
+        BigInteger[] y = new BigInteger[]{x_hat, a, b};
+        BigInteger[] t_array = new BigInteger[3];
+        t.toArray(t_array);
+        BigInteger c = generalAlgorithms.getNIZKPChallenge(y, t_array, tau);
+        log.debug(String.format("checkBallotProof: c = %s", c));
+
+        BigInteger t_prime_1 = modExpPublic(x_hat, c.negate(), p_hat, q_hat).multiply(modExpFixedBase(g_hat, s_1, p_hat, q_hat)).mod(p_hat);
+        BigInteger t_prime_2 = modExpPublic(a, c.negate(), p, q).multiply(s_2).multiply(modExpFixedBase(pk.getPublicKey(), s_3, p, q)).mod(p);
+        BigInteger t_prime_3 = modExpPublic(b, c.negate(), p, q).multiply(modExpFixedBase(g, s_3, p, q)).mod(p);
+
+        return t_array[0].compareTo(t_prime_1) == 0 &&
+                t_array[1].compareTo(t_prime_2) == 0 &&
+                t_array[2].compareTo(t_prime_3) == 0;
+    }
+
+    /**
+     * Batch verification of several ballot proofs, as defined in Algorithm 7.24: CheckBallotProof
+     * <p>The proofs are combined with random exponents <tt>r_k</tt> of tau bits, and the three verification equations
+     * are checked once for the whole batch, <em>e.g.</em> <tt>&prod;t_3k^r_k * &prod;b_k^(c_k*r_k) =
+     * g^(&sum;r_k*s_3k)</tt>. When a combined check fails, the batch is split until the invalid proofs are isolated
+     * (see {@link BatchVerification}).</p>
+     *
+     * @param bold_pi    the proofs
+     * @param bold_x_hat the public voting credentials, one per proof
+     * @param bold_a     the first parts of the ElGamal encryptions, one per proof
+     * @param bold_b     the second parts of the ElGamal encryptions, one per proof
+     * @param pk         the encryption public key
+     * @return for each proof, true if it is valid, false otherwise
+     */
+    public List<Boolean> checkBallotProofs(List<NonInteractiveZKP> bold_pi, List<BigInteger> bold_x_hat,
+                                           List<BigInteger> bold_a, List<BigInteger> bold_b,
+                                           EncryptionPublicKey pk) {
+        int n = bold_pi.size();
+        Preconditions.checkArgument(bold_x_hat.size() == n && bold_a.size() == n && bold_b.size() == n,
+                "There should be as many x_hat's, a's and b's as proofs");
+        IntStream.range(0, n).parallel().forEach(k ->
+                checkBallotProofArguments(bold_pi.get(k), bold_x_hat.get(k), bold_a.get(k), bold_b.get(k), pk));
+        // the combination with small exponents is only sound for group members
+        Preconditions.checkArgument(bold_x_hat.parallelStream().allMatch(generalAlgorithms::isMember_G_q_hat),
+                "All x_hat's must be in G_q_hat");
+        Preconditions.checkArgument(bold_a.parallelStream().allMatch(generalAlgorithms::isMember) &&
+                        bold_b.parallelStream().allMatch(generalAlgorithms::isMember),
+                "All a's and b's must be in G_q");
+
+        BigInteger p = publicParameters.getEncryptionGroup().getP();
+        BigInteger q = publicParameters.getEncryptionGroup().getQ();
+        BigInteger g = publicParameters.getEncryptionGroup().getG();
+        BigInteger p_hat = publicParameters.getIdentificationGroup().getP_hat();
+        BigInteger q_hat = publicParameters.getIdentificationGroup().getQ_hat();
+        BigInteger g_hat = publicParameters.getIdentificationGroup().getG_hat();
+        int tau = publicParameters.getSecurityParameters().getTau();
+        BigInteger upperbound = ONE.shiftLeft(tau);
+
+        List<BigInteger> bold_c = IntStream.range(0, n).parallel().mapToObj(k -> generalAlgorithms.getNIZKPChallenge(
+                new BigInteger[]{bold_x_hat.get(k), bold_a.get(k), bold_b.get(k)},
+                bold_pi.get(k).getT().toArray(new BigInteger[3]), tau)).collect(Collectors.toList());
+
+        Predicate<List<Integer>> batchCheck = indices -> {
+            List<BigInteger> bold_r = indices.stream().map(k -> randomGenerator.randomBigInteger(upperbound))
+                    .collect(Collectors.toList());
+            List<BigInteger> bold_t_1 = new ArrayList<>(), bold_t_2 = new ArrayList<>(), bold_t_3 = new ArrayList<>();
+            List<BigInteger> bold_s_2 = new ArrayList<>();
+            List<BigInteger> bold_cr_hat = new ArrayList<>(), bold_cr = new ArrayList<>();
+            BigInteger s_1_sum = ZERO, s_3_sum = ZERO;
+            for (int l = 0; l < indices.size(); l++) {
+                int k = indices.get(l);
+                BigInteger r_k = bold_r.get(l);
+                List<BigInteger> t_k = bold_pi.get(k).getT();
+                List<BigInteger> s_k = bold_pi.get(k).getS();
+                bold_t_1.add(t_k.get(0));
+                bold_t_2.add(t_k.get(1));
+                bold_t_3.add(t_k.get(2));
+                bold_s_2.add(s_k.get(1));
+                bold_cr_hat.add(bold_c.get(k).multiply(r_k).mod(q_hat));
+                bold_cr.add(bold_c.get(k).multiply(r_k).mod(q));
+                s_1_sum = s_1_sum.add(r_k.multiply(s_k.get(0)));
+                s_3_sum = s_3_sum.add(r_k.multiply(s_k.get(2)));
+            }
+            List<BigInteger> bold_x_hat_k = indices.stream().map(bold_x_hat::get).collect(Collectors.toList());
+            List<BigInteger> bold_a_k = indices.stream().map(bold_a::get).collect(Collectors.toList());
+            List<BigInteger> bold_b_k = indices.stream().map(bold_b::get).collect(Collectors.toList());
+
+            BigInteger lhs_1 = multiExp(bold_t_1, bold_r, p_hat)
+                    .multiply(multiExp(bold_x_hat_k, bold_cr_hat, p_hat)).mod(p_hat);
+            BigInteger rhs_1 = modExpFixedBase(g_hat, s_1_sum.mod(q_hat), p_hat, q_hat);
+            BigInteger lhs_2 = multiExp(bold_t_2, bold_r, p)
+                    .multiply(multiExp(bold_a_k, bold_cr, p)).mod(p);
+            BigInteger rhs_2 = multiExp(bold_s_2, bold_r, p)
+                    .multiply(modExpFixedBase(pk.getPublicKey(), s_3_sum.mod(q), p, q)).mod(p);
+            BigInteger lhs_3 = multiExp(bold_t_3, bold_r, p)
+                    .multiply(multiExp(bold_b_k, bold_cr, p)).mod(p);
+            BigInteger rhs_3 = modExpFixedBase(g, s_3_sum.mod(q), p, q);
+
+            return lhs_1.compareTo(rhs_1) == 0 && lhs_2.compareTo(rhs_2) == 0 && lhs_3.compareTo(rhs_3) == 0;
+        };
+
+        return BatchVerification.verify(n, batchCheck, k ->
+                checkBallotProof(bold_pi.get(k), bold_x_hat.get(k), bold_a.get(k), bold_b.get(k), pk));
+    }
+
+    /**
+     * Batch verification of the proofs of several ballots, which have passed the other checks of
+     * {@link #checkBallotWithoutProof(Integer, BallotAndQuery, EncryptionPublicKey, List, Collection)}
+     *
+     * @param bold_alpha the ballots
+     * @param pk         the encryption public key
+     * @return for each ballot, true if its proof is valid, false otherwise
+     * @see #checkBallotProofs(List, List, List, List, EncryptionPublicKey)
+     */
+    public List<Boolean> checkBallotProofs(List<BallotAndQuery> bold_alpha, EncryptionPublicKey pk) {
+        return checkBallotProofs(
+                bold_alpha.stream().map(BallotAndQuery::getPi).collect(Collectors.toList()),
+                bold_alpha.stream().map(BallotAndQuery::getX_hat).collect(Collectors.toList()),
+                bold_alpha.stream().map(this::getA).collect(Collectors.toList()),
+                bold_alpha.stream().map(BallotAndQuery::getB).collect(Collectors.toList()),
+                pk);
+    }
+
+    private void checkBallotProofArguments(NonInteractiveZKP pi, BigInteger x_hat, BigInteger a, BigInteger b,
+                                           EncryptionPublicKey pk) {
         Preconditions.checkNotNull(pi);
         List<BigInteger> t = pi.getT();
         Preconditions.checkNotNull(t);
@@ -161,29 +329,6 @@ public class VoteCastingAuthorityAlgorithms {
         Preconditions.checkArgument(generalAlgorithms.isInZ_q(s_3), "s_3 must be in Z_q");
 
         Preconditions.checkArgument(pk.getEncryptionGroup() == publicParameters.getEncryptionGroup());
-
-        log.debug(String.format("checkBallotProof: a = %s", a));
-
-        BigInteger p = publicParameters.getEncryptionGroup().getP();
-        BigInteger q = publicParameters.getEncryptionGroup().getQ();
-        BigInteger g = publicParameters.getEncryptionGroup().getG();
-        BigInteger p_hat = publicParameters.getIdentificationGroup().getP_hat();
-        BigInteger g_hat = publicParameters.getIdentificationGroup().getG_hat();
-        int tau = publicParameters.getSecurityParameters().getTau();
-
-        BigInteger[] y = new BigInteger[]{x_hat, a, b};
-        BigInteger[] t_array = new BigInteger[3];
-        t.toArray(t_array);
-        BigInteger c = generalAlgorithms.getNIZKPChallenge(y, t_array, tau);
-        log.debug(String.format("checkBallotProof: c = %s", c));
-
-        BigInteger t_prime_1 = modExp(x_hat, c.negate(), p_hat).multiply(modExp(g_hat, s_1, p_hat)).mod(p_hat);
-        BigInteger t_prime_2 = modExp(a, c.negate(), p).multiply(s_2).multiply(modExp(pk.getPublicKey(), s_3, p)).mod(p);
-        BigInteger t_prime_3 = modExp(b, c.negate(), p).multiply(modExp(g, s_3, p)).mod(p);
-
-        return t_array[0].compareTo(t_prime_1) == 0 &&
-                t_array[1].compareTo(t_prime_2) == 0 &&
-                t_array[2].compareTo(t_prime_3) == 0;
     }
 
     /**
@@ -246,36 +391,34 @@ public class VoteCastingAuthorityAlgorithms {
         int u = 0; // index 0 based, as opposed to the specification 1 based
         int v = 0; // same comment
 
+        // the responses to distinct voters are computed concurrently
+        RandomGenerator voterRandomGenerator = randomGenerator.subStream("voter-" + i);
         for (int j = 0; j < t; j++) {
-            BigInteger r_j = randomGenerator.randomInZq(q);
+            BigInteger r_j = voterRandomGenerator.randomInZq(q);
 
             Integer k_ij = bold_K.get(i).get(j);
             for (int l = 0; l < k_ij; l++) {
-                bold_b.add(modExp(bold_a.get(u++), r_j, p));
+                bold_b.add(modExpSecret(bold_a.get(u++), r_j, p));
             }
 
             Integer n_j = bold_n.get(j);
             for (int l = 0; l < n_j; l++) {
                 Point point_iv = upper_bold_p.get(i).get(v);
-                @SuppressWarnings("SuspiciousNameCombination")
-                byte[] M_v = ByteArrayUtils.concatenate(
-                        conversion.toByteArray(point_iv.x, upper_l_m / 2),
-                        conversion.toByteArray(point_iv.y, upper_l_m / 2)
-                );
+                byte[] M_v = new byte[upper_l_m];
+                ByteBuffer buffer = ByteBuffer.wrap(M_v);
+                conversion.toByteArray(point_iv.x, upper_l_m / 2, buffer);
+                //noinspection SuspiciousNameCombination
+                conversion.toByteArray(point_iv.y, upper_l_m / 2, buffer);
                 log.debug(String.format("Encoding point %s as %s", point_iv, Arrays.toString(M_v)));
-                BigInteger k = modExp(bold_p.get(v), r_j, p);
-                byte[] bold_upper_k = new byte[0];
-                int l_m = (int) Math.ceil((double) upper_l_m / publicParameters.getSecurityParameters().getUpper_l());
-                for (int z = 1; z <= l_m; z++) {
-                    bold_upper_k = ByteArrayUtils.concatenate(bold_upper_k, hash.recHash_L(k, BigInteger.valueOf(z)));
-                }
-                bold_upper_k = ByteArrayUtils.truncate(bold_upper_k, upper_l_m);
-                bold_c[v] = ByteArrayUtils.xor(M_v, bold_upper_k);
+                BigInteger k = modExpSecret(bold_p.get(v), r_j, p);
+                // M_v is not used anymore: the mask is applied in place
+                keyDerivation.xorInPlace(k, M_v);
+                bold_c[v] = M_v;
                 log.debug(String.format("bold_c[%d] = %s", v, Arrays.toString(bold_c[v])));
                 v++;
             }
 
-            bold_d.add(modExp(pk.getPublicKey(), r_j, p));
+            bold_d.add(modExpSecret(pk.getPublicKey(), r_j, p));
             bold_r.add(r_j);
         }
 
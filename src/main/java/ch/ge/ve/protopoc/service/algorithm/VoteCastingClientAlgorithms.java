@@ -29,6 +29,7 @@ import ch.ge.ve.protopoc.service.model.polynomial.Point;
 import ch.ge.ve.protopoc.service.support.ByteArrayUtils;
 import ch.ge.ve.protopoc.service.support.Conversion;
 import ch.ge.ve.protopoc.service.support.Hash;
+import ch.ge.ve.protopoc.service.support.ObliviousTransferKeyDerivation;
 import ch.ge.ve.protopoc.service.support.RandomGenerator;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
@@ -40,7 +41,9 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.batchModInverse;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpFixedBaseSecret;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpSecret;
 import static java.math.BigInteger.ONE;
 import static java.math.BigInteger.ZERO;
 
@@ -54,12 +57,15 @@ public class VoteCastingClientAlgorithms {
     private final RandomGenerator randomGenerator;
     private final GeneralAlgorithms generalAlgorithms;
     private final Conversion conversion = new Conversion();
+    private final ObliviousTransferKeyDerivation keyDerivation;
 
     public VoteCastingClientAlgorithms(PublicParameters publicParameters, GeneralAlgorithms generalAlgorithms, RandomGenerator randomGenerator, Hash hash) {
         this.publicParameters = publicParameters;
         this.hash = hash;
         this.randomGenerator = randomGenerator;
         this.generalAlgorithms = generalAlgorithms;
+        this.keyDerivation = new ObliviousTransferKeyDerivation(hash, publicParameters.getUpper_l_m(),
+                publicParameters.getSecurityParameters().getUpper_l());
     }
 
     /**
@@ -86,20 +92,21 @@ public class VoteCastingClientAlgorithms {
                 "The key must not be 1");
 
         BigInteger p_hat = publicParameters.getIdentificationGroup().getP_hat();
+        BigInteger q_hat = publicParameters.getIdentificationGroup().getQ_hat();
         BigInteger g_hat = publicParameters.getIdentificationGroup().getG_hat();
         BigInteger p = publicParameters.getEncryptionGroup().getP();
         BigInteger q = publicParameters.getEncryptionGroup().getQ();
         BigInteger g = publicParameters.getEncryptionGroup().getG();
 
         BigInteger x = conversion.toInteger(upper_x, publicParameters.getUpper_a_x());
-        BigInteger x_hat = modExp(g_hat, x, p_hat);
+        BigInteger x_hat = modExpFixedBaseSecret(g_hat, x, p_hat, q_hat);
 
         List<BigInteger> bold_q = computeBoldQ(bold_s);
         BigInteger m = computeM(bold_q, p);
         ObliviousTransferQuery query = genQuery(bold_q, pk);
         BigInteger a = computeA(query, p);
         BigInteger r = computeR(query, q);
-        BigInteger b = modExp(g, r, p);
+        BigInteger b = modExpFixedBaseSecret(g, r, p, q);
         NonInteractiveZKP pi = genBallotProof(x, m, r, x_hat, a, b, pk);
         BallotAndQuery alpha = new BallotAndQuery(x_hat, query.getBold_a(), b, pi);
 
@@ -183,7 +190,7 @@ public class VoteCastingClientAlgorithms {
 
         for (BigInteger q_i : bold_q) {
             BigInteger r_i = randomGenerator.randomInZq(q);
-            BigInteger a_i = q_i.multiply(modExp(pk.getPublicKey(), r_i, p)).mod(p);
+            BigInteger a_i = q_i.multiply(modExpFixedBaseSecret(pk.getPublicKey(), r_i, p, q)).mod(p);
             bold_a.add(a_i);
             bold_r.add(r_i);
         }
@@ -239,9 +246,9 @@ public class VoteCastingClientAlgorithms {
         BigInteger omega_2 = randomGenerator.randomInGq(encryptionGroup);
         BigInteger omega_3 = randomGenerator.randomInZq(q);
 
-        BigInteger t_1 = modExp(g_hat, omega_1, p_hat);
-        BigInteger t_2 = omega_2.multiply(modExp(pk.getPublicKey(), omega_3, p)).mod(p);
-        BigInteger t_3 = modExp(g, omega_3, p);
+        BigInteger t_1 = modExpFixedBaseSecret(g_hat, omega_1, p_hat, q_hat);
+        BigInteger t_2 = omega_2.multiply(modExpFixedBaseSecret(pk.getPublicKey(), omega_3, p, q)).mod(p);
+        BigInteger t_3 = modExpFixedBaseSecret(g, omega_3, p, q);
 
         BigInteger[] y = new BigInteger[]{x_hat, a, b};
         BigInteger[] t = new BigInteger[]{t_1, t_2, t_3};
@@ -249,7 +256,7 @@ public class VoteCastingClientAlgorithms {
         log.debug(String.format("genBallotProof: c = %s", c));
 
         BigInteger s_1 = omega_1.add(c.multiply(x)).mod(q_hat);
-        BigInteger s_2 = omega_2.multiply(modExp(m, c, p)).mod(p);
+        BigInteger s_2 = omega_2.multiply(modExpSecret(m, c, p)).mod(p);
         BigInteger s_3 = omega_3.add(c.multiply(r)).mod(q);
         List<BigInteger> s = Arrays.asList(s_1, s_2, s_3);
 
@@ -331,6 +338,7 @@ public class VoteCastingClientAlgorithms {
         byte[][] c = beta.getC();
         List<BigInteger> d = beta.getD();
         BigInteger p = publicParameters.getEncryptionGroup().getP();
+        List<BigInteger> d_inverse = batchModInverse(d, p);
         BigInteger p_prime = publicParameters.getPrimeField().getP_prime();
         int upper_l_m = publicParameters.getUpper_l_m();
 
@@ -338,12 +346,9 @@ public class VoteCastingClientAlgorithms {
         for (int j = 0; j < bold_k.size(); j++) {
             for (int l = 0; l < bold_k.get(j); l++) {
                 log.debug("c[" + (bold_s.get(i) - 1) + "] = " + Arrays.toString(c[bold_s.get(i) - 1]));
-                BigInteger k = b.get(i).multiply(modExp(d.get(j), bold_r.get(i).negate(), p)).mod(p);
-                byte[] bold_upper_k = computeBoldUpperK(upper_l_m, k);
-                byte[] M_i = ByteArrayUtils.xor(
-                        // selections are 1-based
-                        c[bold_s.get(i) - 1],
-                        bold_upper_k);
+                BigInteger k = b.get(i).multiply(modExpSecret(d_inverse.get(j), bold_r.get(i), p)).mod(p);
+                // selections are 1-based
+                byte[] M_i = keyDerivation.xor(k, c[bold_s.get(i) - 1]);
                 BigInteger x_i = conversion.toInteger(ByteArrayUtils.extract(M_i, 0, upper_l_m / 2));
                 BigInteger y_i = conversion.toInteger(ByteArrayUtils.extract(M_i, upper_l_m / 2, M_i.length));
                 if (log.isDebugEnabled()) {
@@ -361,16 +366,6 @@ public class VoteCastingClientAlgorithms {
         return bold_p;
     }
 
-    private byte[] computeBoldUpperK(int upper_l_m, BigInteger k) {
-        byte[] bold_upper_k = new byte[0];
-        int l_m = (int) Math.ceil((double) upper_l_m / publicParameters.getSecurityParameters().getUpper_l());
-        for (int z = 1; z <= l_m; z++) {
-            bold_upper_k = ByteArrayUtils.concatenate(bold_upper_k, hash.recHash_L(k, BigInteger.valueOf(z)));
-        }
-        bold_upper_k = ByteArrayUtils.truncate(bold_upper_k, upper_l_m);
-        return bold_upper_k;
-    }
-
     /**
      * Algorithm 7.28: GetReturnCodes
      *
@@ -24,16 +24,25 @@ package ch.ge.ve.protopoc.service.algorithm;
 import ch.ge.ve.protopoc.service.exception.BallotNotFoundRuntimeException;
 import ch.ge.ve.protopoc.service.model.*;
 import ch.ge.ve.protopoc.service.model.polynomial.Point;
+import ch.ge.ve.protopoc.service.support.BatchVerification;
 import ch.ge.ve.protopoc.service.support.ByteArrayUtils;
 import ch.ge.ve.protopoc.service.support.Hash;
+import ch.ge.ve.protopoc.service.support.RandomGenerator;
 import com.google.common.base.Preconditions;
 
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpFixedBase;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpPublic;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.multiExp;
+import static java.math.BigInteger.ONE;
+import static java.math.BigInteger.ZERO;
 
 /**
  * Algorithms for the vote confirmation phase, on the authorities side
@@ -42,13 +51,16 @@ public class VoteConfirmationAuthorityAlgorithms {
     private final PublicParameters publicParameters;
     private final GeneralAlgorithms generalAlgorithms;
     private final VoteCastingAuthorityAlgorithms voteCastingAuthorityAlgorithms;
+    private final RandomGenerator randomGenerator;
     private final Hash hash;
 
     public VoteConfirmationAuthorityAlgorithms(PublicParameters publicParameters, GeneralAlgorithms generalAlgorithms,
-                                               VoteCastingAuthorityAlgorithms voteCastingAuthorityAlgorithms, Hash hash) {
+                                               VoteCastingAuthorityAlgorithms voteCastingAuthorityAlgorithms,
+                                               RandomGenerator randomGenerator, Hash hash) {
         this.publicParameters = publicParameters;
         this.generalAlgorithms = generalAlgorithms;
         this.voteCastingAuthorityAlgorithms = voteCastingAuthorityAlgorithms;
+        this.randomGenerator = randomGenerator;
         this.hash = hash;
     }
 
@@ -66,10 +78,27 @@ public class VoteConfirmationAuthorityAlgorithms {
      */
     public boolean checkConfirmation(Integer i, Confirmation gamma, List<BigInteger> bold_y_hat,
                                      Collection<BallotEntry> upper_b, Collection<ConfirmationEntry> upper_c) {
+        return checkConfirmationWithoutProof(i, gamma, bold_y_hat, upper_b, upper_c) &&
+                checkConfirmationProof(gamma.getPi(), gamma.getY_hat());
+    }
+
+    /**
+     * Algorithm 7.34: CheckConfirmation, except for the verification of the confirmation proof, so that the proofs of
+     * several confirmations may then be verified at once by {@link #checkConfirmationProofs(List)}
+     *
+     * @param i          the voter index
+     * @param gamma      the voter's confirmation
+     * @param bold_y_hat the list of public confirmation credentials, as generated during the preparation phase
+     * @param upper_b    the current list of ballots
+     * @param upper_c    the current list of confirmations
+     * @return true if the confirmation is allowed (ballot present, confirmation not present, credentials match)
+     */
+    public boolean checkConfirmationWithoutProof(Integer i, Confirmation gamma, List<BigInteger> bold_y_hat,
+                                                 Collection<BallotEntry> upper_b,
+                                                 Collection<ConfirmationEntry> upper_c) {
         return voteCastingAuthorityAlgorithms.hasBallot(i, upper_b) &&
                 !hasConfirmation(i, upper_c) &&
-                bold_y_hat.get(i).compareTo(gamma.getY_hat()) == 0 &&
-                checkConfirmationProof(gamma.getPi(), gamma.getY_hat());
+                bold_y_hat.get(i).compareTo(gamma.getY_hat()) == 0;
     }
 
     /**
@@ -91,32 +120,99 @@ public class VoteConfirmationAuthorityAlgorithms {
      * @return true if the proof of knowledge is valid, false otherwise
      */
     public boolean checkConfirmationProof(NonInteractiveZKP pi, BigInteger y_hat) {
-        Preconditions.checkNotNull(pi);
-        Preconditions.checkNotNull(pi.getT());
-        Preconditions.checkNotNull(pi.getS());
-        Preconditions.checkNotNull(y_hat);
-        Preconditions.checkArgument(pi.getT().size() == 1);
-        Preconditions.checkArgument(pi.getS().size() == 1);
+        checkConfirmationProofArguments(pi, y_hat);
 
         BigInteger p_hat = publicParameters.getIdentificationGroup().getP_hat();
+        BigInteger q_hat = publicParameters.getIdentificationGroup().getQ_hat();
         BigInteger g_hat = publicParameters.getIdentificationGroup().getG_hat();
         int tau = publicParameters.getSecurityParameters().getTau();
 
         BigInteger t = pi.getT().get(0);
         BigInteger s = pi.getS().get(0);
 
-        Preconditions.checkArgument(generalAlgorithms.isMember_G_q_hat(t),
+        BigInteger c = generalAlgorithms.getNIZKPChallenge(new BigInteger[]{y_hat}, new BigInteger[]{t}, tau);
+        BigInteger t_prime = modExpFixedBase(g_hat, s, p_hat, q_hat).multiply(modExpPublic(y_hat, c.negate(), p_hat, q_hat)).mod(p_hat);
+
+        return t.compareTo(t_prime) == 0;
+    }
+
+    /**
+     * Batch verification of several confirmation proofs, as defined in Algorithm 7.36: CheckConfirmationProof
+     * <p>The proofs are combined with random exponents <tt>r_k</tt> of tau bits, and checked at once with
+     * <tt>&prod;t_k^r_k * &prod;y_hat_k^(c_k*r_k) = g_hat^(&sum;r_k*s_k)</tt>. When the combined check fails, the
+     * batch is split until the invalid proofs are isolated (see {@link BatchVerification}).</p>
+     *
+     * @param bold_pi    the proofs of knowledge of the private confirmation credentials
+     * @param bold_y_hat the public confirmation credentials, one per proof
+     * @return for each proof, true if it is valid, false otherwise
+     */
+    public List<Boolean> checkConfirmationProofs(List<NonInteractiveZKP> bold_pi, List<BigInteger> bold_y_hat) {
+        int n = bold_pi.size();
+        Preconditions.checkArgument(bold_y_hat.size() == n, "There should be as many y_hat's as proofs");
+        IntStream.range(0, n).parallel().forEach(k -> checkConfirmationProofArguments(bold_pi.get(k), bold_y_hat.get(k)));
+
+        BigInteger p_hat = publicParameters.getIdentificationGroup().getP_hat();
+        BigInteger q_hat = publicParameters.getIdentificationGroup().getQ_hat();
+        BigInteger g_hat = publicParameters.getIdentificationGroup().getG_hat();
+        int tau = publicParameters.getSecurityParameters().getTau();
+        BigInteger upperbound = ONE.shiftLeft(tau);
+
+        List<BigInteger> bold_t = bold_pi.stream().map(pi -> pi.getT().get(0)).collect(Collectors.toList());
+        List<BigInteger> bold_c = IntStream.range(0, n).parallel().mapToObj(k -> generalAlgorithms.getNIZKPChallenge(
+                new BigInteger[]{bold_y_hat.get(k)}, new BigInteger[]{bold_t.get(k)}, tau))
+                .collect(Collectors.toList());
+
+        Predicate<List<Integer>> batchCheck = indices -> {
+            List<BigInteger> bold_r = indices.stream().map(k -> randomGenerator.randomBigInteger(upperbound))
+                    .collect(Collectors.toList());
+            List<BigInteger> bold_cr = IntStream.range(0, indices.size())
+                    .mapToObj(l -> bold_c.get(indices.get(l)).multiply(bold_r.get(l)).mod(q_hat))
+                    .collect(Collectors.toList());
+            BigInteger s_sum = IntStream.range(0, indices.size())
+                    .mapToObj(l -> bold_r.get(l).multiply(bold_pi.get(indices.get(l)).getS().get(0)))
+                    .reduce(BigInteger::add).orElse(ZERO).mod(q_hat);
+
+            BigInteger lhs = multiExp(indices.stream().map(bold_t::get).collect(Collectors.toList()), bold_r, p_hat)
+                    .multiply(multiExp(indices.stream().map(bold_y_hat::get).collect(Collectors.toList()),
+                            bold_cr, p_hat))
+                    .mod(p_hat);
+            BigInteger rhs = modExpFixedBase(g_hat, s_sum, p_hat, q_hat);
+            return lhs.compareTo(rhs) == 0;
+        };
+
+        return BatchVerification.verify(n, batchCheck,
+                k -> checkConfirmationProof(bold_pi.get(k), bold_y_hat.get(k)));
+    }
+
+    /**
+     * Batch verification of the proofs of several confirmations, which have passed the other checks of
+     * {@link #checkConfirmationWithoutProof(Integer, Confirmation, List, Collection, Collection)}
+     *
+     * @param bold_gamma the confirmations
+     * @return for each confirmation, true if its proof is valid, false otherwise
+     * @see #checkConfirmationProofs(List, List)
+     */
+    public List<Boolean> checkConfirmationProofs(List<Confirmation> bold_gamma) {
+        return checkConfirmationProofs(
+                bold_gamma.stream().map(Confirmation::getPi).collect(Collectors.toList()),
+                bold_gamma.stream().map(Confirmation::getY_hat).collect(Collectors.toList()));
+    }
+
+    private void checkConfirmationProofArguments(NonInteractiveZKP pi, BigInteger y_hat) {
+        Preconditions.checkNotNull(pi);
+        Preconditions.checkNotNull(pi.getT());
+        Preconditions.checkNotNull(pi.getS());
+        Preconditions.checkNotNull(y_hat);
+        Preconditions.checkArgument(pi.getT().size() == 1);
+        Preconditions.checkArgument(pi.getS().size() == 1);
+
+        Preconditions.checkArgument(generalAlgorithms.isMember_G_q_hat(pi.getT().get(0)),
                 "t must be in G_q_hat");
-        Preconditions.checkArgument(generalAlgorithms.isInZ_q_hat(s),
+        Preconditions.checkArgument(generalAlgorithms.isInZ_q_hat(pi.getS().get(0)),
                 "s must be in Z_q_hat");
         //noinspection SuspiciousNameCombination
         Preconditions.checkArgument(generalAlgorithms.isMember_G_q_hat(y_hat),
                 "y_hat must be in G_q_hat");
-
-        BigInteger c = generalAlgorithms.getNIZKPChallenge(new BigInteger[]{y_hat}, new BigInteger[]{t}, tau);
-        BigInteger t_prime = modExp(g_hat, s, p_hat).multiply(modExp(y_hat, c.negate(), p_hat)).mod(p_hat);
-
-        return t.compareTo(t_prime) == 0;
     }
 
     /**
@@ -39,7 +39,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpSecret;
 import static java.math.BigInteger.ZERO;
 import static java.util.Collections.singletonList;
 
@@ -97,7 +97,7 @@ public class VoteConfirmationClientAlgorithms {
         BigInteger y = conversion.toInteger(upper_y, publicParameters.getUpper_a_y())
                 .add(h_js.stream().reduce(BigInteger::add).orElse(ZERO))
                 .mod(q_hat);
-        BigInteger y_hat = modExp(g_hat, y, p_hat);
+        BigInteger y_hat = modExpSecret(g_hat, y, p_hat);
         NonInteractiveZKP pi = genConfirmationProof(y, y_hat);
 
         return new Confirmation(y_hat, pi);
@@ -192,7 +192,7 @@ public class VoteConfirmationClientAlgorithms {
 
         BigInteger omega = randomGenerator.randomInZq(q_hat);
 
-        BigInteger t = modExp(g_hat, omega, p_hat);
+        BigInteger t = modExpSecret(g_hat, omega, p_hat);
         BigInteger[] bold_v = new BigInteger[]{y_hat};
         BigInteger[] bold_t = new BigInteger[]{t};
         BigInteger c = generalAlgorithms.getNIZKPChallenge(bold_v, bold_t, tau);
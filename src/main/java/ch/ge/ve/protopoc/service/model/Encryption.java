@@ -25,12 +25,15 @@ import ch.ge.ve.protopoc.service.support.Hash;
 import com.google.common.collect.ComparisonChain;
 
 import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
  * Model class containing one encryption of one ballot
  */
-public final class Encryption implements Hash.Hashable, Comparable<Encryption> {
+public final class Encryption implements Hash.ImmutableHashable, Comparable<Encryption> {
     private final BigInteger a;
     private final BigInteger b;
 
@@ -47,6 +50,14 @@ public final class Encryption implements Hash.Hashable, Comparable<Encryption> {
         return b;
     }
 
+    /**
+     * @param bold_e a list of encryptions
+     * @return a read-only view of the components of the encryptions, <tt>(a_1, b_1, ..., a_n, b_n)</tt>
+     */
+    public static List<BigInteger> components(List<Encryption> bold_e) {
+        return new Components(bold_e);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -81,4 +92,23 @@ public final class Encryption implements Hash.Hashable, Comparable<Encryption> {
                 .compare(this.b, o.b)
                 .result();
     }
+
+    private static final class Components extends AbstractList<BigInteger> implements RandomAccess {
+        private final List<Encryption> encryptions;
+
+        Components(List<Encryption> encryptions) {
+            this.encryptions = encryptions;
+        }
+
+        @Override
+        public BigInteger get(int index) {
+            Encryption encryption = encryptions.get(index / 2);
+            return index % 2 == 0 ? encryption.a : encryption.b;
+        }
+
+        @Override
+        public int size() {
+            return 2 * encryptions.size();
+        }
+    }
 }
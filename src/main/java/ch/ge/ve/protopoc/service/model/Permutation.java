@@ -0,0 +1,165 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Model class representing a permutation psy of <tt>{0, ..., N - 1}</tt> (0 based, to mirror java indices)
+ * <p>The permutation is backed by an <tt>int</tt> array: validating, inverting and applying it are all linear in
+ * N.</p>
+ */
+public final class Permutation {
+    private final int[] psy;
+
+    private Permutation(int[] psy) {
+        this.psy = psy;
+    }
+
+    /**
+     * @param psy the images of <tt>0, ..., N - 1</tt>
+     * @return the corresponding permutation
+     * @throws IllegalArgumentException if the values are not a permutation of <tt>{0, ..., N - 1}</tt>
+     */
+    public static Permutation of(int... psy) {
+        int[] values = psy.clone();
+        boolean[] seen = new boolean[values.length];
+        for (int value : values) {
+            Preconditions.checkArgument(0 <= value && value < values.length && !seen[value],
+                    "The permutation should contain all number from 0 (inclusive) to length (exclusive)");
+            seen[value] = true;
+        }
+        return new Permutation(values);
+    }
+
+    /**
+     * @param psy the images of <tt>0, ..., N - 1</tt>
+     * @return the corresponding permutation
+     * @throws IllegalArgumentException if the values are not a permutation of <tt>{0, ..., N - 1}</tt>
+     */
+    public static Permutation of(List<Integer> psy) {
+        return of(Ints.toArray(psy));
+    }
+
+    public int size() {
+        return psy.length;
+    }
+
+    /**
+     * @param i an index in <tt>{0, ..., N - 1}</tt>
+     * @return psy(i)
+     */
+    public int get(int i) {
+        return psy[i];
+    }
+
+    /**
+     * @return the inverse permutation psy<sup>-1</sup>
+     */
+    public Permutation inverse() {
+        int[] inverse = new int[psy.length];
+        for (int i = 0; i < psy.length; i++) {
+            inverse[psy[i]] = i;
+        }
+        return new Permutation(inverse);
+    }
+
+    /**
+     * @param list a list of size N
+     * @param <T>  the type of the elements
+     * @return the permuted list <tt>(list_psy(0), ..., list_psy(N - 1))</tt>
+     */
+    public <T> List<T> apply(List<T> list) {
+        Preconditions.checkArgument(list.size() == psy.length,
+                "The list should be of the same size as the permutation");
+        Object[] permuted = new Object[psy.length];
+        for (int i = 0; i < psy.length; i++) {
+            permuted[i] = list.get(psy[i]);
+        }
+        @SuppressWarnings("unchecked")
+        List<T> result = (List<T>) Collections.unmodifiableList(Arrays.asList(permuted));
+        return result;
+    }
+
+    /**
+     * @param list a list of size N
+     * @param <T>  the type of the elements
+     * @return a read-only view of the permuted list <tt>(list_psy(0), ..., list_psy(N - 1))</tt>, whose elements are
+     * not copied
+     */
+    public <T> List<T> view(List<T> list) {
+        Preconditions.checkArgument(list.size() == psy.length,
+                "The list should be of the same size as the permutation");
+        return new PermutedView<>(list);
+    }
+
+    /**
+     * @return a read-only view of the images of <tt>0, ..., N - 1</tt>
+     */
+    public List<Integer> asList() {
+        return Collections.unmodifiableList(Ints.asList(psy));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Permutation that = (Permutation) o;
+        return Arrays.equals(psy, that.psy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(psy);
+    }
+
+    @Override
+    public String toString() {
+        return "Permutation" + Arrays.toString(psy);
+    }
+
+    private final class PermutedView<T> extends AbstractList<T> implements RandomAccess {
+        private final List<T> list;
+
+        private PermutedView(List<T> list) {
+            this.list = list;
+        }
+
+        @Override
+        public T get(int i) {
+            return list.get(psy[i]);
+        }
+
+        @Override
+        public int size() {
+            return psy.length;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.model;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Model class representing the part of a shuffle which does not depend on the encryptions to be shuffled: the
+ * permutation, the independent generators and the commitment to the permutation
+ */
+public final class PrecomputedPermutation {
+    private final Permutation psy;
+    private final List<BigInteger> bold_h;
+    private final PermutationCommitment permutationCommitment;
+
+    public PrecomputedPermutation(Permutation psy, List<BigInteger> bold_h,
+                                  PermutationCommitment permutationCommitment) {
+        Preconditions.checkArgument(psy.size() == bold_h.size() &&
+                        psy.size() == permutationCommitment.getBold_c().size(),
+                "The permutation, the generators and the commitment should have the same size");
+        this.psy = psy;
+        this.bold_h = ImmutableList.copyOf(bold_h);
+        this.permutationCommitment = permutationCommitment;
+    }
+
+    public Permutation getPsy() {
+        return psy;
+    }
+
+    public List<BigInteger> getBold_h() {
+        return bold_h;
+    }
+
+    public PermutationCommitment getPermutationCommitment() {
+        return permutationCommitment;
+    }
+
+    /**
+     * @return the size of the permutation
+     */
+    public int size() {
+        return psy.size();
+    }
+}
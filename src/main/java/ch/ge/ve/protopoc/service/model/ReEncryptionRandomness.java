@@ -0,0 +1,78 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.model;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * Model class used to represent the randomness of a re-encryption, together with the corresponding powers of the
+ * public key and of the generator, which do not depend on the encryption to be re-encrypted
+ */
+public final class ReEncryptionRandomness {
+    private final BigInteger r_prime;
+    private final BigInteger pk_r_prime;
+    private final BigInteger g_r_prime;
+
+    public ReEncryptionRandomness(BigInteger r_prime, BigInteger pk_r_prime, BigInteger g_r_prime) {
+        this.r_prime = r_prime;
+        this.pk_r_prime = pk_r_prime;
+        this.g_r_prime = g_r_prime;
+    }
+
+    public BigInteger getR_prime() {
+        return r_prime;
+    }
+
+    public BigInteger getPk_r_prime() {
+        return pk_r_prime;
+    }
+
+    public BigInteger getG_r_prime() {
+        return g_r_prime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReEncryptionRandomness that = (ReEncryptionRandomness) o;
+        return Objects.equals(r_prime, that.r_prime) &&
+                Objects.equals(pk_r_prime, that.pk_r_prime) &&
+                Objects.equals(g_r_prime, that.g_r_prime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(r_prime, pk_r_prime, g_r_prime);
+    }
+
+    @Override
+    public String toString() {
+        // the randomness is secret: it would reveal the permutation of the shuffle
+        return "ReEncryptionRandomness{" +
+                "pk_r_prime=" + pk_r_prime +
+                ", g_r_prime=" + g_r_prime +
+                '}';
+    }
+}
@@ -21,6 +21,7 @@
 
 package ch.ge.ve.protopoc.service.model;
 
+import ch.ge.ve.protopoc.service.support.MappedBigIntegerVector;
 import com.google.common.collect.ImmutableList;
 
 import java.math.BigInteger;
@@ -33,12 +34,12 @@ import java.util.Objects;
 public final class Shuffle {
     private final List<Encryption> bold_e_prime;
     private final List<BigInteger> bold_r_prime;
-    private final List<Integer> psy;
+    private final Permutation psy;
 
-    public Shuffle(List<Encryption> bold_e_prime, List<BigInteger> bold_r_prime, List<Integer> psy) {
+    public Shuffle(List<Encryption> bold_e_prime, List<BigInteger> bold_r_prime, Permutation psy) {
         this.bold_e_prime = ImmutableList.copyOf(bold_e_prime);
-        this.bold_r_prime = ImmutableList.copyOf(bold_r_prime);
-        this.psy = ImmutableList.copyOf(psy);
+        this.bold_r_prime = MappedBigIntegerVector.immutableCopyOf(bold_r_prime);
+        this.psy = psy;
     }
 
     public List<Encryption> getBold_e_prime() {
@@ -46,11 +47,11 @@ public final class Shuffle {
     }
 
     public List<BigInteger> getBold_r_prime() {
-        return ImmutableList.copyOf(bold_r_prime);
+        return bold_r_prime;
     }
 
-    public List<Integer> getPsy() {
-        return ImmutableList.copyOf(psy);
+    public Permutation getPsy() {
+        return psy;
     }
 
     @Override
@@ -21,6 +21,7 @@
 
 package ch.ge.ve.protopoc.service.model;
 
+import ch.ge.ve.protopoc.service.support.MappedBigIntegerVector;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
@@ -35,12 +36,13 @@ public final class ShufflesAndProofs {
 
 
     public ShufflesAndProofs(List<List<Encryption>> shuffles, List<ShuffleProof> shuffleProofs) {
-        this.shuffles = shuffles.parallelStream().map(ImmutableList::copyOf).collect(Collectors.toList());
+        this.shuffles = shuffles.parallelStream().map(MappedBigIntegerVector::immutableCopyOf)
+                .collect(Collectors.toList());
         this.shuffleProofs = ImmutableList.copyOf(shuffleProofs);
     }
 
     public List<List<Encryption>> getShuffles() {
-        return shuffles.parallelStream().map(ImmutableList::copyOf).collect(Collectors.toList());
+        return shuffles.parallelStream().map(MappedBigIntegerVector::immutableCopyOf).collect(Collectors.toList());
     }
 
     public List<ShuffleProof> getShuffleProofs() {
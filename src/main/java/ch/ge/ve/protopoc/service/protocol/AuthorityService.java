@@ -43,9 +43,28 @@ public interface AuthorityService {
 
     FinalizationCodePart handleConfirmation(Integer voterIndex, Confirmation confirmation);
 
+    /**
+     * Precompute the parts of the shuffle which do not depend on the encryptions (the permutation and the commitment
+     * to it), for an upper bound of the number of encryptions. Meant to be called during the voting phase.
+     */
+    void precomputeMixing();
+
+    /**
+     * Shuffle the confirmed ballots, and publish the shuffle. The proof is generated and published separately, by
+     * {@link #publishShuffleProof()}, so that the next authority may start shuffling in the meantime.
+     */
     void startMixing();
 
+    /**
+     * Shuffle the previous authority's shuffle, and publish the result. The proof is generated and published
+     * separately, by {@link #publishShuffleProof()}.
+     */
     void mixAgain();
 
+    /**
+     * Generate and publish the proof of the last shuffle published by this authority
+     */
+    void publishShuffleProof();
+
     void startPartialDecryption();
 }
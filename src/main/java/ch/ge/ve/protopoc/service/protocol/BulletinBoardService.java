@@ -52,7 +52,22 @@ public interface BulletinBoardService {
 
     List<FinalizationCodePart> publishConfirmation(Integer voterIndex, Confirmation confirmation) throws IncorrectConfirmationRuntimeException;
 
-    void publishShuffleAndProof(int j, List<Encryption> shuffle, ShuffleProof proof);
+    /**
+     * Publish the shuffle of authority j. The shuffle is available to the next authority as soon as it has been
+     * published, before the corresponding proof.
+     *
+     * @param j       the index of the authority
+     * @param shuffle the re-encrypted, shuffled encryptions
+     */
+    void publishShuffle(int j, List<Encryption> shuffle);
+
+    /**
+     * Publish the proof of the shuffle of authority j, once the shuffle itself has been published
+     *
+     * @param j     the index of the authority
+     * @param proof the shuffle proof
+     */
+    void publishShuffleProof(int j, ShuffleProof proof);
 
     List<Encryption> getPreviousShuffle(int j);
 
@@ -27,6 +27,7 @@ import ch.ge.ve.protopoc.service.exception.IncorrectConfirmationRuntimeException
 import ch.ge.ve.protopoc.service.exception.InvalidShuffleProofRuntimeException;
 import ch.ge.ve.protopoc.service.model.*;
 import ch.ge.ve.protopoc.service.model.polynomial.Point;
+import ch.ge.ve.protopoc.service.support.BatchVerificationQueue;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import org.slf4j.Logger;
@@ -46,6 +47,14 @@ import java.util.stream.Collectors;
  */
 public class DefaultAuthority implements AuthorityService {
     private static final Logger log = LoggerFactory.getLogger(DefaultAuthority.class);
+    /**
+     * Number of background threads precomputing the re-encryption randomness during the voting phase
+     */
+    private static final int RE_ENCRYPTION_POOL_THREADS = 1;
+    /**
+     * Maximal number of ballot or confirmation proofs verified at once
+     */
+    private static final int MAX_PROOF_BATCH_SIZE = 64;
     private final Logger perfLog = LoggerFactory.getLogger("PerformanceStats");
     private final int j;
     private final BulletinBoardService bulletinBoardService;
@@ -55,6 +64,8 @@ public class DefaultAuthority implements AuthorityService {
     private final VoteConfirmationAuthorityAlgorithms voteConfirmationAuthorityAlgorithms;
     private final MixingAuthorityAlgorithms mixingAuthorityAlgorithms;
     private final DecryptionAuthorityAlgorithms decryptionAuthorityAlgorithms;
+    private final BatchVerificationQueue<BallotAndQuery> ballotProofs;
+    private final BatchVerificationQueue<Confirmation> confirmationProofs;
     private final Queue<Long> ballotVerificationTimes = new ConcurrentLinkedQueue<>();
     private final Queue<Long> queryResponseTimes = new ConcurrentLinkedQueue<>();
     private final Queue<Long> confirmationVerificationTimes = new ConcurrentLinkedQueue<>();
@@ -62,6 +73,11 @@ public class DefaultAuthority implements AuthorityService {
     private EncryptionPublicKey myPublicKey;
     private EncryptionPrivateKey myPrivateKey;
     private EncryptionPublicKey systemPublicKey;
+    private ReEncryptionRandomnessPool reEncryptionRandomnessPool;
+    private volatile PrecomputedPermutation precomputedPermutation;
+    private List<Encryption> shuffledEncryptions;
+    private Shuffle shuffle;
+    private PrecomputedPermutation shufflePermutation;
     private PublicParameters publicParameters;
     private ElectionSet electionSet;
     private ElectorateData electorateData;
@@ -84,6 +100,12 @@ public class DefaultAuthority implements AuthorityService {
         this.voteConfirmationAuthorityAlgorithms = voteConfirmationAuthorityAlgorithms;
         this.mixingAuthorityAlgorithms = mixingAuthorityAlgorithms;
         this.decryptionAuthorityAlgorithms = decryptionAuthorityAlgorithms;
+        // the proofs of the ballots and confirmations received concurrently are verified together
+        this.ballotProofs = new BatchVerificationQueue<>(
+                bold_alpha -> voteCastingAuthorityAlgorithms.checkBallotProofs(bold_alpha, systemPublicKey),
+                MAX_PROOF_BATCH_SIZE);
+        this.confirmationProofs = new BatchVerificationQueue<>(
+                voteConfirmationAuthorityAlgorithms::checkConfirmationProofs, MAX_PROOF_BATCH_SIZE);
     }
 
     @Override
@@ -109,6 +131,22 @@ public class DefaultAuthority implements AuthorityService {
                 "The j-th key share should be equal to this authority's");
 
         systemPublicKey = keyEstablishmentAlgorithms.getPublicKey(publicKeyParts);
+        startReEncryptionRandomnessPool();
+    }
+
+    /**
+     * Start precomputing the re-encryption randomness, once both the system public key and the size of the
+     * electorate are known, whichever comes last. The pool holds the randomness on the heap: it is not used when the
+     * mixing vectors are kept out of the heap.
+     */
+    private void startReEncryptionRandomnessPool() {
+        if (reEncryptionRandomnessPool == null && systemPublicKey != null && electionSet != null &&
+                !mixingAuthorityAlgorithms.isOutOfCore()) {
+            // there are at most as many encryptions to shuffle as there are voters
+            reEncryptionRandomnessPool = new ReEncryptionRandomnessPool(mixingAuthorityAlgorithms, systemPublicKey,
+                    Math.max(1, electionSet.getVoters().size()));
+            reEncryptionRandomnessPool.start(RE_ENCRYPTION_POOL_THREADS);
+        }
     }
 
     @Override
@@ -118,6 +156,7 @@ public class DefaultAuthority implements AuthorityService {
         electorateData = electionPreparationAlgorithms.genElectorateData(electionSet);
 
         bulletinBoardService.publishPublicCredentials(j, electorateData.getD_hat());
+        startReEncryptionRandomnessPool();
     }
 
     @Override
@@ -143,8 +182,8 @@ public class DefaultAuthority implements AuthorityService {
         Stopwatch stopwatch = Stopwatch.createStarted();
         List<BigInteger> publicIdentificationCredentials =
                 publicCredentials.stream().map(p -> p.x).collect(Collectors.toList());
-        if (!voteCastingAuthorityAlgorithms.checkBallot(voterIndex, ballotAndQuery, systemPublicKey,
-                publicIdentificationCredentials, ballotEntries)) {
+        if (!voteCastingAuthorityAlgorithms.checkBallotWithoutProof(voterIndex, ballotAndQuery, systemPublicKey,
+                publicIdentificationCredentials, ballotEntries) || !ballotProofs.verify(ballotAndQuery)) {
             throw new IncorrectBallotRuntimeException(String.format("Ballot for voter %d was deemed invalid", voterIndex));
         }
         stopwatch.stop();
@@ -171,8 +210,9 @@ public class DefaultAuthority implements AuthorityService {
         List<BigInteger> publicConfirmationCredentials =
                 publicCredentials.stream().map(p -> p.y).collect(Collectors.toList());
 
-        if (!voteConfirmationAuthorityAlgorithms.checkConfirmation(voterIndex, confirmation,
-                publicConfirmationCredentials, ballotEntries, confirmationEntries)) {
+        if (!voteConfirmationAuthorityAlgorithms.checkConfirmationWithoutProof(voterIndex, confirmation,
+                publicConfirmationCredentials, ballotEntries, confirmationEntries) ||
+                !confirmationProofs.verify(confirmation)) {
             throw new IncorrectConfirmationRuntimeException("Confirmation for voter " + voterIndex + " was deemed invalid");
         }
         stopwatch.stop();
@@ -188,6 +228,19 @@ public class DefaultAuthority implements AuthorityService {
         return finalization;
     }
 
+    @Override
+    public void precomputeMixing() {
+        Preconditions.checkState(electionSet != null,
+                "The electorate data should have been generated first");
+        log.info("Authority " + j + " precomputing the permutation commitment");
+        Stopwatch precomputationWatch = Stopwatch.createStarted();
+        // there are at most as many encryptions to shuffle as there are voters
+        precomputedPermutation = mixingAuthorityAlgorithms.precomputePermutation(electionSet.getVoters().size());
+        precomputationWatch.stop();
+        perfLog.info(String.format("Authority %d : precomputed permutation commitment in %dms", j,
+                precomputationWatch.elapsed(TimeUnit.MILLISECONDS)));
+    }
+
     @Override
     public void startMixing() {
         log.info("Authority " + j + " started mixing");
@@ -204,17 +257,53 @@ public class DefaultAuthority implements AuthorityService {
 
     private void mixAndPublish(List<Encryption> encryptions) {
         Stopwatch shuffleWatch = Stopwatch.createStarted();
-        Shuffle shuffle = mixingAuthorityAlgorithms.genShuffle(encryptions, systemPublicKey);
+        PrecomputedPermutation permutation = takePrecomputedPermutation(encryptions.size());
+        Shuffle shuffle = mixingAuthorityAlgorithms.genShuffle(encryptions, systemPublicKey,
+                reEncryptionRandomnessPool, permutation == null ? null : permutation.getPsy());
         shuffleWatch.stop();
+        if (reEncryptionRandomnessPool != null) {
+            reEncryptionRandomnessPool.stop();
+            reEncryptionRandomnessPool = null;
+        }
         perfLog.info(String.format("Authority %d : shuffled in %dms", j, shuffleWatch.elapsed(TimeUnit.MILLISECONDS)));
+
+        shuffledEncryptions = encryptions;
+        this.shuffle = shuffle;
+        shufflePermutation = permutation;
+        bulletinBoardService.publishShuffle(j, shuffle.getBold_e_prime());
+    }
+
+    @Override
+    public void publishShuffleProof() {
+        Preconditions.checkState(shuffle != null,
+                "The shuffle needs to have been published first");
         Stopwatch shuffleProofWatch = Stopwatch.createStarted();
-        ShuffleProof shuffleProof = mixingAuthorityAlgorithms.genShuffleProof(encryptions,
-                shuffle.getBold_e_prime(), shuffle.getBold_r_prime(), shuffle.getPsy(), systemPublicKey);
+        ShuffleProof shuffleProof = mixingAuthorityAlgorithms.genShuffleProof(shuffledEncryptions,
+                shuffle.getBold_e_prime(), shuffle.getBold_r_prime(), shuffle.getPsy(), systemPublicKey,
+                shufflePermutation);
         shuffleProofWatch.stop();
         perfLog.info(String.format("Authority %d : generated shuffle proof in %dms", j,
                 shuffleProofWatch.elapsed(TimeUnit.MILLISECONDS)));
 
-        bulletinBoardService.publishShuffleAndProof(j, shuffle.getBold_e_prime(), shuffleProof);
+        bulletinBoardService.publishShuffleProof(j, shuffleProof);
+        // the re-encryption randomness is no longer needed
+        shuffledEncryptions = null;
+        shuffle = null;
+        shufflePermutation = null;
+    }
+
+    /**
+     * @param upper_n the number of encryptions to shuffle
+     * @return the precomputed permutation, restricted to upper_n, or <tt>null</tt> if none is available. A permutation
+     * is used for a single shuffle.
+     */
+    private PrecomputedPermutation takePrecomputedPermutation(int upper_n) {
+        PrecomputedPermutation precomputation = precomputedPermutation;
+        precomputedPermutation = null;
+        if (precomputation == null || precomputation.size() < upper_n) {
+            return null;
+        }
+        return mixingAuthorityAlgorithms.restrictPermutation(precomputation, upper_n);
     }
 
     @Override
@@ -24,6 +24,7 @@ package ch.ge.ve.protopoc.service.protocol;
 import ch.ge.ve.protopoc.service.exception.IncorrectConfirmationRuntimeException;
 import ch.ge.ve.protopoc.service.model.*;
 import ch.ge.ve.protopoc.service.model.polynomial.Point;
+import ch.ge.ve.protopoc.service.support.Hash;
 import com.google.common.base.Preconditions;
 
 import java.math.BigInteger;
@@ -38,6 +39,8 @@ import java.util.stream.IntStream;
 
 /**
  * Default implementation of the {@link BulletinBoardService}
+ * <p>The shuffles and the vectors of the shuffle proofs are memoized when they are published: they are hashed by the
+ * prover of the next shuffle and by every verifier, which all share the hashes computed by the first of them.</p>
  */
 public class DefaultBulletinBoard implements BulletinBoardService {
     private final List<AuthorityService> authorities = new ArrayList<>();
@@ -154,15 +157,30 @@ public class DefaultBulletinBoard implements BulletinBoardService {
     }
 
     @Override
-    public void publishShuffleAndProof(int j, List<Encryption> shuffle, ShuffleProof proof) {
+    public void publishShuffle(int j, List<Encryption> shuffle) {
         Preconditions.checkElementIndex(j, publicParameters.getS(),
                 "j needs to be within bounds");
         Preconditions.checkArgument(shuffles.size() == j,
                 "Shuffle j can only be inserted after the previous shuffles");
-        Preconditions.checkArgument(shuffleProofs.size() == j,
-                "Shuffle proof j can only be inserted after the previous shuffle proof");
-        shuffles.put(j, shuffle);
-        shuffleProofs.put(j, proof);
+        shuffles.put(j, Hash.memoized(shuffle));
+    }
+
+    @Override
+    public void publishShuffleProof(int j, ShuffleProof proof) {
+        Preconditions.checkElementIndex(j, publicParameters.getS(),
+                "j needs to be within bounds");
+        Preconditions.checkArgument(shuffles.containsKey(j),
+                "Shuffle proof j can only be inserted after shuffle j");
+        Preconditions.checkArgument(shuffleProofs.putIfAbsent(j, memoized(proof)) == null,
+                "Shuffle proofs may not be updated");
+    }
+
+    private static ShuffleProof memoized(ShuffleProof proof) {
+        ShuffleProof.T t = proof.getT();
+        ShuffleProof.T memoized_t = new ShuffleProof.T(t.getT_1(), t.getT_2(), t.getT_3(), t.getT_4(),
+                Hash.memoized(t.getT_hat()));
+        return new ShuffleProof(memoized_t, proof.getS(),
+                Hash.memoized(proof.getBold_c()), Hash.memoized(proof.getBold_c_hat()));
     }
 
     @Override
@@ -62,7 +62,7 @@ public class ElectionAdministrationSimulator {
         List<List<BigInteger>> partialDecryptions = tallyData.getPartialDecryptions();
         Stopwatch decryptionProofCheckWatch = Stopwatch.createStarted();
         if (!tallyingAuthoritiesAlgorithm.checkDecryptionProofs(decryptionProofs, publicKeyShares, finalShuffle,
-                partialDecryptions)) {
+                partialDecryptions, true)) {
             throw new InvalidDecryptionProofException("An invalid decryption proof was found");
         }
         decryptionProofCheckWatch.stop();
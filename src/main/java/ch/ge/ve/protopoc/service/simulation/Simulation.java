@@ -25,6 +25,7 @@ import ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic;
 import ch.ge.ve.protopoc.service.algorithm.*;
 import ch.ge.ve.protopoc.service.exception.InvalidDecryptionProofException;
 import ch.ge.ve.protopoc.service.exception.NotEnoughPrimesInGroupException;
+import ch.ge.ve.protopoc.service.exception.RandomGeneratorInitialisationRuntimeException;
 import ch.ge.ve.protopoc.service.model.*;
 import ch.ge.ve.protopoc.service.protocol.AuthorityService;
 import ch.ge.ve.protopoc.service.protocol.DefaultAuthority;
@@ -33,6 +34,7 @@ import ch.ge.ve.protopoc.service.protocol.DefaultVotingClient;
 import ch.ge.ve.protopoc.service.support.Conversion;
 import ch.ge.ve.protopoc.service.support.Hash;
 import ch.ge.ve.protopoc.service.support.RandomGenerator;
+import ch.ge.ve.protopoc.service.support.VectorStorage;
 import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
@@ -40,10 +42,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
@@ -51,7 +57,7 @@ import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpPublic;
 import static ch.ge.ve.protopoc.service.support.BigIntegers.TWO;
 import static java.math.BigInteger.ONE;
 import static java.math.BigInteger.ZERO;
@@ -60,9 +66,17 @@ import static java.math.BigInteger.ZERO;
  * Simulation class...
  */
 public class Simulation {
+    /**
+     * System property holding the directory in which the public mixing vectors are stored in memory-mapped files
+     */
+    public static final String MIXING_DIRECTORY_PROPERTY = "protopoc.mixing.directory";
     private static final Logger log = LoggerFactory.getLogger(Simulation.class);
     private static ElectionSetEnum electionSetConfig;
     private static int votersCount;
+    /**
+     * The seed of the deterministic benchmark mode, <tt>null</tt> when the simulation uses secure randomness
+     */
+    private final Long benchmarkSeed;
     private final SecureRandom secureRandom;
     private final RandomGenerator randomGenerator;
     private final PerformanceStats performanceStats = new PerformanceStats();
@@ -89,15 +103,49 @@ public class Simulation {
     private TallyingAuthoritiesAlgorithm tallyingAuthoritiesAlgorithm;
     private ElectionAdministrationSimulator electionAdministrationSimulator;
 
-    private Simulation() throws NoSuchProviderException, NoSuchAlgorithmException {
-        secureRandom = SecureRandom.getInstance("SHA1PRNG", "SUN");
-        randomGenerator = new RandomGenerator(secureRandom);
+    private Simulation(Long benchmarkSeed) throws NoSuchProviderException, NoSuchAlgorithmException {
+        this.benchmarkSeed = benchmarkSeed;
+        if (benchmarkSeed == null) {
+            secureRandom = SecureRandom.getInstance("SHA1PRNG", "SUN");
+            // one generator per thread, so that the parallel streams do not contend on the synchronized SHA1PRNG
+            randomGenerator = RandomGenerator.perThread(secureRandom, Simulation::createSecureRandom);
+        } else {
+            log.warn(String.format("Deterministic benchmark mode, with seed %d: all secrets are predictable",
+                    benchmarkSeed));
+            secureRandom = RandomGenerator.deterministicSecureRandomForBenchmark(benchmarkSeed, "simulation");
+            randomGenerator = new RandomGenerator(secureRandom);
+        }
+    }
+
+    /**
+     * @param stream the name of the component's stream, used in the deterministic benchmark mode only
+     * @return the random generator to be used by the component
+     */
+    private RandomGenerator randomGenerator(String stream) {
+        return benchmarkSeed == null ? randomGenerator :
+                RandomGenerator.deterministicForBenchmark(benchmarkSeed, stream);
+    }
+
+    /**
+     * @param stream the name of the component's stream, used in the deterministic benchmark mode only
+     * @return the (insecure) random to be used for the simulation of the voters' choices
+     */
+    private Random choicesRandom(String stream) {
+        return benchmarkSeed == null ? new Random() :
+                new Random(RandomGenerator.deterministicSecureRandomForBenchmark(benchmarkSeed, stream).nextLong());
+    }
+
+    private static SecureRandom createSecureRandom() {
+        try {
+            return SecureRandom.getInstance("SHA1PRNG", "SUN");
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RandomGeneratorInitialisationRuntimeException(e);
+        }
     }
 
     public static void main(String[] args) throws NoSuchProviderException, NoSuchAlgorithmException,
             InvalidDecryptionProofException, NotEnoughPrimesInGroupException {
         log.info("Starting simulation");
-        Simulation simulation = new Simulation();
 
         int level = 1;
         votersCount = 100;
@@ -111,6 +159,12 @@ public class Simulation {
         if (args.length >= 3) {
             votersCount = Integer.parseInt(args[2]);
         }
+        Long benchmarkSeed = null;
+        if (args.length >= 4) {
+            benchmarkSeed = Long.parseLong(args[3]);
+        }
+
+        Simulation simulation = new Simulation(benchmarkSeed);
 
         simulation.initializeSettings(level);
         simulation.createComponents();
@@ -123,8 +177,15 @@ public class Simulation {
 
         runCodeSheets();
 
+        ExecutorService precomputationExecutor = Executors.newSingleThreadExecutor();
+        CompletableFuture<Void> mixingPrecomputation = CompletableFuture.runAsync(
+                () -> authorities.forEach(AuthorityService::precomputeMixing), precomputationExecutor);
+
         List<Long> expectedTally = runVoting();
 
+        mixingPrecomputation.join();
+        precomputationExecutor.shutdown();
+
         runMixing();
 
         runDecryption();
@@ -166,9 +227,23 @@ public class Simulation {
     private void runMixing() {
         log.info("starting the mixing");
         performanceStats.start(performanceStats.mixing);
-        authorities.get(0).startMixing();
-        for (int i = 1; i < publicParameters.getS(); i++) {
-            authorities.get(i).mixAgain();
+        // each authority only needs the previous shuffle: it starts shuffling while the previous authorities are
+        // still generating their proofs
+        ExecutorService proofExecutor = Executors.newFixedThreadPool(publicParameters.getS());
+        List<CompletableFuture<Void>> shuffleProofs = new ArrayList<>();
+        try {
+            for (int i = 0; i < publicParameters.getS(); i++) {
+                AuthorityService authority = authorities.get(i);
+                if (i == 0) {
+                    authority.startMixing();
+                } else {
+                    authority.mixAgain();
+                }
+                shuffleProofs.add(CompletableFuture.runAsync(authority::publishShuffleProof, proofExecutor));
+            }
+            CompletableFuture.allOf(shuffleProofs.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            proofExecutor.shutdown();
         }
         performanceStats.stop(performanceStats.mixing);
     }
@@ -270,13 +345,7 @@ public class Simulation {
         printingAuthoritySimulator = new PrintingAuthoritySimulator(bulletinBoardService, votingCardPreparationAlgorithms);
         printingAuthoritySimulator.setAuthorities(authorities);
 
-        voterSimulators = IntStream.range(0, electionSet.getVoters().size()).mapToObj(i ->
-                new VoterSimulator(i,
-                        new DefaultVotingClient(bulletinBoardService,
-                                keyEstablishmentAlgorithms,
-                                voteCastingClientAlgorithms,
-                                voteConfirmationClientAlgorithms),
-                        voteConfirmationVoterAlgorithms))
+        voterSimulators = IntStream.range(0, electionSet.getVoters().size()).mapToObj(this::createVoterSimulator)
                 .collect(Collectors.toList());
 
         printingAuthoritySimulator.setVoterSimulators(voterSimulators);
@@ -286,17 +355,72 @@ public class Simulation {
         log.info("all simulators created");
     }
 
+    private VoterSimulator createVoterSimulator(int i) {
+        if (benchmarkSeed == null) {
+            return new VoterSimulator(i,
+                    new DefaultVotingClient(bulletinBoardService,
+                            keyEstablishmentAlgorithms,
+                            voteCastingClientAlgorithms,
+                            voteConfirmationClientAlgorithms),
+                    voteConfirmationVoterAlgorithms);
+        }
+        RandomGenerator voterRandomGenerator = randomGenerator("voter-" + i);
+        return new VoterSimulator(i,
+                new DefaultVotingClient(bulletinBoardService,
+                        new KeyEstablishmentAlgorithms(voterRandomGenerator),
+                        new VoteCastingClientAlgorithms(publicParameters, generalAlgorithms, voterRandomGenerator, hash),
+                        new VoteConfirmationClientAlgorithms(publicParameters, generalAlgorithms, voterRandomGenerator,
+                                hash)),
+                voteConfirmationVoterAlgorithms, choicesRandom("voter-" + i + "-choices"));
+    }
+
     private void createServices() {
         log.info("creating services");
         bulletinBoardService = new DefaultBulletinBoard();
-        authorities = IntStream.range(0, publicParameters.getS()).mapToObj(i ->
-                new DefaultAuthority(i, bulletinBoardService, keyEstablishmentAlgorithms, electionPreparationAlgorithms,
-                        voteCastingAuthorityAlgorithms, voteConfirmationAuthorityAlgorithms, mixingAuthorityAlgorithms,
-                        decryptionAuthorityAlgorithms)).collect(Collectors.toList());
+        authorities = IntStream.range(0, publicParameters.getS()).mapToObj(this::createAuthority)
+                .collect(Collectors.toList());
         bulletinBoardService.setAuthorities(authorities);
         log.info("created all services");
     }
 
+    private AuthorityService createAuthority(int j) {
+        if (benchmarkSeed == null) {
+            return new DefaultAuthority(j, bulletinBoardService, keyEstablishmentAlgorithms,
+                    electionPreparationAlgorithms, voteCastingAuthorityAlgorithms, voteConfirmationAuthorityAlgorithms,
+                    mixingAuthorityAlgorithms, decryptionAuthorityAlgorithms);
+        }
+        // one stream per component, as the phases of the protocol overlap (e.g. the precomputation of the mixing and
+        // the voting phase)
+        String authority = "authority-" + j;
+        VoteCastingAuthorityAlgorithms authorityVoteCastingAlgorithms = new VoteCastingAuthorityAlgorithms(
+                publicParameters, electionSet, generalAlgorithms, randomGenerator(authority + "-voting"), hash);
+        VoteConfirmationAuthorityAlgorithms authorityVoteConfirmationAlgorithms =
+                new VoteConfirmationAuthorityAlgorithms(publicParameters, generalAlgorithms,
+                        authorityVoteCastingAlgorithms, randomGenerator(authority + "-confirmation"), hash);
+        return new DefaultAuthority(j, bulletinBoardService,
+                new KeyEstablishmentAlgorithms(randomGenerator(authority + "-keys")),
+                new ElectionPreparationAlgorithms(publicParameters, randomGenerator(authority + "-electorate"), hash),
+                authorityVoteCastingAlgorithms, authorityVoteConfirmationAlgorithms,
+                new MixingAuthorityAlgorithms(publicParameters, generalAlgorithms, authorityVoteConfirmationAlgorithms,
+                        randomGenerator(authority + "-mixing"), mixingVectorStorage()),
+                new DecryptionAuthorityAlgorithms(publicParameters, generalAlgorithms,
+                        randomGenerator(authority + "-decryption")));
+    }
+
+    /**
+     * @return the storage of the mixing vectors: memory-mapped files in the directory given by the system property
+     * {@value #MIXING_DIRECTORY_PROPERTY}, if defined, the heap otherwise
+     */
+    private VectorStorage mixingVectorStorage() {
+        String directory = System.getProperty(MIXING_DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return VectorStorage.heap();
+        }
+        // all the mapped elements are in Z_p
+        int elementWidth = (publicParameters.getEncryptionGroup().getP().bitLength() + 7) / 8;
+        return VectorStorage.mapped(Paths.get(directory), elementWidth);
+    }
+
     private void createAlgorithms() {
         log.info("instantiating algorithms classes");
         generalAlgorithms = new GeneralAlgorithms(hash, conversion, publicParameters.getEncryptionGroup(),
@@ -304,14 +428,14 @@ public class Simulation {
         keyEstablishmentAlgorithms = new KeyEstablishmentAlgorithms(randomGenerator);
         electionPreparationAlgorithms = new ElectionPreparationAlgorithms(publicParameters, randomGenerator, hash);
         voteCastingAuthorityAlgorithms = new VoteCastingAuthorityAlgorithms(publicParameters, electionSet, generalAlgorithms, randomGenerator, hash);
-        voteConfirmationAuthorityAlgorithms = new VoteConfirmationAuthorityAlgorithms(publicParameters, generalAlgorithms, voteCastingAuthorityAlgorithms, hash);
+        voteConfirmationAuthorityAlgorithms = new VoteConfirmationAuthorityAlgorithms(publicParameters, generalAlgorithms, voteCastingAuthorityAlgorithms, randomGenerator, hash);
         votingCardPreparationAlgorithms = new VotingCardPreparationAlgorithms(publicParameters);
         voteCastingClientAlgorithms = new VoteCastingClientAlgorithms(publicParameters, generalAlgorithms, randomGenerator, hash);
         voteConfirmationClientAlgorithms = new VoteConfirmationClientAlgorithms(publicParameters, generalAlgorithms, randomGenerator, hash);
         voteConfirmationVoterAlgorithms = new VoteConfirmationVoterAlgorithms();
-        mixingAuthorityAlgorithms = new MixingAuthorityAlgorithms(publicParameters, generalAlgorithms, voteConfirmationAuthorityAlgorithms, randomGenerator);
+        mixingAuthorityAlgorithms = new MixingAuthorityAlgorithms(publicParameters, generalAlgorithms, voteConfirmationAuthorityAlgorithms, randomGenerator, mixingVectorStorage());
         decryptionAuthorityAlgorithms = new DecryptionAuthorityAlgorithms(publicParameters, generalAlgorithms, randomGenerator);
-        tallyingAuthoritiesAlgorithm = new TallyingAuthoritiesAlgorithm(publicParameters, generalAlgorithms);
+        tallyingAuthoritiesAlgorithm = new TallyingAuthoritiesAlgorithm(publicParameters, generalAlgorithms, randomGenerator);
         log.info("instantiated all algorithm classes");
     }
 
@@ -430,10 +554,10 @@ public class Simulation {
             }
 
             BigInteger i = randomGenerator.randomInZq(p_hat);
-            while (modExp(i, k, p_hat).compareTo(ONE) == 0) {
+            while (modExpPublic(i, k, p_hat).compareTo(ONE) == 0) {
                 i = randomGenerator.randomInZq(p_hat);
             }
-            BigInteger g_hat = modExp(i, k, p_hat);
+            BigInteger g_hat = modExpPublic(i, k, p_hat);
 
             try {
                 identificationGroup = new IdentificationGroup(p_hat, q_hat, g_hat);
@@ -484,15 +608,15 @@ public class Simulation {
         while (!safe) {
             h = randomGenerator.randomInZq(p);
 
-            safe = modExp(h, TWO, p).compareTo(ONE) != 0
-                    && modExp(h, q, p).compareTo(ONE) != 0
+            safe = modExpPublic(h, TWO, p).compareTo(ONE) != 0
+                    && modExpPublic(h, q, p).compareTo(ONE) != 0
                     && pMinusOne.mod(h).compareTo(BigInteger.ZERO) != 0;
 
             BigInteger gInv = safe ? h.modInverse(p) : ONE;
             safe = safe && pMinusOne.mod(gInv).compareTo(BigInteger.ZERO) != 0;
         }
         log.info("generator created");
-        return modExp(h, TWO, p);
+        return modExpPublic(h, TWO, p);
     }
 
     private List<Character> getDefaultAlphabet() {
@@ -620,7 +744,7 @@ public class Simulation {
                     totalSimulation);
             log.info("##### Performance statistics");
             log.info("");
-            log.info("- using LibGMP: " + BigIntegerArithmetic.isGmpLoaded());
+            log.info("- arithmetic backend: " + BigIntegerArithmetic.getBackend());
             log.info("- length of p: " + publicParameters.getEncryptionGroup().getP().bitLength());
             log.info("- number of voters: " + electionSet.getVoters().size());
             List<String> electionDescriptions = electionSet.getElections().stream()
@@ -45,14 +45,20 @@ public class VoterSimulator {
     private final Integer voterIndex;
     private final VotingClientService votingClient;
     private final VoteConfirmationVoterAlgorithms voteConfirmationVoterAlgorithms;
-    private final Random random = new Random(); // doesn't need to be secure, only used for simulation of user choices
+    private final Random random; // doesn't need to be secure, only used for simulation of user choices
     private VotingCard votingCard;
 
     public VoterSimulator(Integer voterIndex, VotingClientService votingClient,
                           VoteConfirmationVoterAlgorithms voteConfirmationVoterAlgorithms) {
+        this(voterIndex, votingClient, voteConfirmationVoterAlgorithms, new Random());
+    }
+
+    public VoterSimulator(Integer voterIndex, VotingClientService votingClient,
+                          VoteConfirmationVoterAlgorithms voteConfirmationVoterAlgorithms, Random random) {
         this.votingClient = votingClient;
         this.voterIndex = voterIndex;
         this.voteConfirmationVoterAlgorithms = voteConfirmationVoterAlgorithms;
+        this.random = random;
     }
 
     public void sendCodeSheet(VotingCard votingCard) {
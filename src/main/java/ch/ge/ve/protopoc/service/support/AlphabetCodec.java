@@ -0,0 +1,191 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.support;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conversions between integers and strings over a given alphabet, as defined in Algorithms 4.6 to 4.8.
+ * <p>The codec is built once per alphabet, with a lookup table from characters to their ranks. When the size of the
+ * alphabet is a power of two, each character maps to a fixed number of bits of the integer, and the conversions
+ * only slice the bits of its byte representation. Otherwise, the integer is cut into chunks of as many characters as
+ * fit in a <tt>long</tt>, so that only one <tt>BigInteger</tt> division (or multiplication) is performed per
+ * chunk.</p>
+ */
+public final class AlphabetCodec {
+    private final char[] characters;
+    private final int[] ranks;
+    private final BigInteger upper_n;
+    private final int bitsPerCharacter;
+    private final int charactersPerChunk;
+    private final long chunkModulus;
+    private final BigInteger bigChunkModulus;
+
+    /**
+     * @param upper_a the alphabet, of at least two distinct characters
+     */
+    public AlphabetCodec(List<Character> upper_a) {
+        Preconditions.checkArgument(upper_a.size() >= 2, "The alphabet must hold at least two characters");
+        int size = upper_a.size();
+        this.characters = new char[size];
+        int maxCharacter = 0;
+        for (int i = 0; i < size; i++) {
+            characters[i] = upper_a.get(i);
+            maxCharacter = Math.max(maxCharacter, characters[i]);
+        }
+        this.ranks = new int[maxCharacter + 1];
+        Arrays.fill(ranks, -1);
+        for (int i = size - 1; i >= 0; i--) {
+            // the lowest rank wins, as with List.indexOf
+            ranks[characters[i]] = i;
+        }
+        this.upper_n = BigInteger.valueOf(size);
+        this.bitsPerCharacter = Integer.bitCount(size) == 1 ? Integer.numberOfTrailingZeros(size) : 0;
+
+        int m = 0;
+        long modulus = 1L;
+        while (modulus <= Long.MAX_VALUE / size) {
+            modulus *= size;
+            m++;
+        }
+        this.charactersPerChunk = m;
+        this.chunkModulus = modulus;
+        this.bigChunkModulus = BigInteger.valueOf(modulus);
+    }
+
+    /**
+     * @return the size of the alphabet
+     */
+    public int size() {
+        return characters.length;
+    }
+
+    /**
+     * Algorithm 4.6: ToString
+     *
+     * @param x the integer to convert
+     * @param k the required String size
+     * @return a string of length k, using this alphabet, and representing x
+     */
+    public String toString(BigInteger x, int k) {
+        Preconditions.checkArgument(x.signum() >= 0, "x should be a non-negative integer");
+        Preconditions.checkArgument(upper_n.pow(k).compareTo(x) >= 0,
+                "x is too large to be encoded with k characters of alphabet upper_a");
+        char[] s = new char[k];
+        if (bitsPerCharacter > 0) {
+            byte[] bytes = x.toByteArray();
+            for (int i = 0; i < k; i++) {
+                s[k - 1 - i] = characters[bits(bytes, i * bitsPerCharacter, bitsPerCharacter)];
+            }
+        } else {
+            BigInteger current = x;
+            int i = k;
+            while (i > 0) {
+                BigInteger[] divideAndRemainder = current.divideAndRemainder(bigChunkModulus);
+                current = divideAndRemainder[0];
+                long chunk = divideAndRemainder[1].longValue();
+                for (int j = 0; j < charactersPerChunk && i > 0; j++) {
+                    s[--i] = characters[(int) (chunk % characters.length)];
+                    chunk /= characters.length;
+                }
+            }
+        }
+        return new String(s);
+    }
+
+    /**
+     * Algorithm 4.7: ToInteger
+     *
+     * @param upper_s the string to be converted
+     * @return the corresponding integer value
+     */
+    public BigInteger toInteger(String upper_s) {
+        int k = upper_s.length();
+        if (bitsPerCharacter > 0) {
+            int bitLength = k * bitsPerCharacter;
+            byte[] bytes = new byte[(bitLength + 7) / 8];
+            for (int i = 0; i < k; i++) {
+                setBits(bytes, (k - 1 - i) * bitsPerCharacter, rank(upper_s.charAt(i)));
+            }
+            return new BigInteger(1, bytes);
+        }
+
+        BigInteger x = BigInteger.ZERO;
+        int i = 0;
+        while (i < k) {
+            int chunkLength = Math.min(charactersPerChunk, k - i);
+            long chunk = 0L;
+            for (int j = 0; j < chunkLength; j++) {
+                chunk = chunk * characters.length + rank(upper_s.charAt(i++));
+            }
+            BigInteger multiplier = chunkLength == charactersPerChunk ? bigChunkModulus : upper_n.pow(chunkLength);
+            x = x.multiply(multiplier).add(BigInteger.valueOf(chunk));
+        }
+        return x;
+    }
+
+    /**
+     * Algorithm 4.8: ToString
+     *
+     * @param upper_b the byte array to represent as String
+     * @return the corresponding string
+     */
+    public String toString(byte[] upper_b) {
+        int k = (int) Math.ceil(8.0 * upper_b.length / (Math.log(characters.length) / Math.log(2)));
+        return toString(new BigInteger(1, upper_b), k);
+    }
+
+    private int rank(char c) {
+        int rank = c < ranks.length ? ranks[c] : -1;
+        Preconditions.checkArgument(rank >= 0,
+                String.format("character %s not found in alphabet %s", c, Arrays.toString(characters)));
+        return rank;
+    }
+
+    /**
+     * @return the <tt>count</tt> bits of the big-endian value held in <tt>bytes</tt>, starting from bit
+     * <tt>offset</tt> (counted from the least significant bit)
+     */
+    private static int bits(byte[] bytes, int offset, int count) {
+        int value = 0;
+        for (int b = count - 1; b >= 0; b--) {
+            int bit = offset + b;
+            int index = bytes.length - 1 - (bit >>> 3);
+            value = (value << 1) | (index >= 0 ? (bytes[index] >>> (bit & 7)) & 1 : 0);
+        }
+        return value;
+    }
+
+    private static void setBits(byte[] bytes, int offset, int value) {
+        for (int b = 0; value >>> b != 0; b++) {
+            if (((value >>> b) & 1) != 0) {
+                int bit = offset + b;
+                bytes[bytes.length - 1 - (bit >>> 3)] |= 1 << (bit & 7);
+            }
+        }
+    }
+}
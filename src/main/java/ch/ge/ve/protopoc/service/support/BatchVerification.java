@@ -0,0 +1,66 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This utility class isolates the invalid items of a batch, given a combined check on a subset of the items and an
+ * individual check on a single item.
+ * <p>The whole batch is checked at once first. Whenever a combined check fails, the subset is split in two halves
+ * which are checked again, down to individual checks on single items.</p>
+ */
+public class BatchVerification {
+    /**
+     * @param n           the number of items in the batch
+     * @param batchCheck  the combined check, on a list of item indices
+     * @param singleCheck the individual check, on an item index
+     * @return for each item, whether it is valid
+     */
+    public static List<Boolean> verify(int n, Predicate<List<Integer>> batchCheck, IntPredicate singleCheck) {
+        Boolean[] results = new Boolean[n];
+        if (n > 0) {
+            verify(IntStream.range(0, n).boxed().collect(Collectors.toList()), batchCheck, singleCheck, results);
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    private static void verify(List<Integer> indices, Predicate<List<Integer>> batchCheck, IntPredicate singleCheck,
+                               Boolean[] results) {
+        if (indices.size() == 1) {
+            int i = indices.get(0);
+            results[i] = singleCheck.test(i);
+        } else if (batchCheck.test(indices)) {
+            indices.forEach(i -> results[i] = true);
+        } else {
+            int half = indices.size() / 2;
+            verify(indices.subList(0, half), batchCheck, singleCheck, results);
+            verify(indices.subList(half, indices.size()), batchCheck, singleCheck, results);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * This class gathers the items submitted concurrently for verification into batches, verified at once (typically with
+ * {@link BatchVerification}).
+ * <p>Each caller queues its item and waits for its turn to verify: the caller whose turn comes verifies, in a single
+ * batch, all the items queued in the meantime (up to a maximal batch size), and the callers of those items find their
+ * result already computed. A single caller, with no concurrent submission, has its item verified on its own.</p>
+ * <p>If the verification of a batch fails with an exception (<em>e.g.</em> because one of the items is malformed),
+ * each item of the batch is verified on its own, and the exception is only reported to the caller of the items which
+ * caused it.</p>
+ *
+ * @param <T> the type of the items to be verified
+ */
+public class BatchVerificationQueue<T> {
+    private final Function<List<T>, List<Boolean>> batchCheck;
+    private final int maxBatchSize;
+    private final Queue<PendingCheck<T>> pendingChecks = new ConcurrentLinkedQueue<>();
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * @param batchCheck   the verification of a batch of items, returning the result of each item
+     * @param maxBatchSize the maximal number of items verified at once
+     */
+    public BatchVerificationQueue(Function<List<T>, List<Boolean>> batchCheck, int maxBatchSize) {
+        Preconditions.checkArgument(maxBatchSize > 0, "The batches must hold at least one item");
+        this.batchCheck = batchCheck;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Verify the given item, together with the items submitted concurrently
+     *
+     * @param item the item to be verified
+     * @return true if the item is valid, false otherwise
+     * @throws RuntimeException the exception raised by the verification of this item, if any
+     */
+    public boolean verify(T item) {
+        PendingCheck<T> check = new PendingCheck<>(item);
+        pendingChecks.add(check);
+        lock.lock();
+        try {
+            while (!check.isDone()) {
+                verifyBatch(nextBatch());
+            }
+            return check.getResult();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<PendingCheck<T>> nextBatch() {
+        List<PendingCheck<T>> batch = new ArrayList<>();
+        PendingCheck<T> check;
+        while (batch.size() < maxBatchSize && (check = pendingChecks.poll()) != null) {
+            batch.add(check);
+        }
+        return batch;
+    }
+
+    private void verifyBatch(List<PendingCheck<T>> batch) {
+        try {
+            List<Boolean> results = batchCheck.apply(batch.stream().map(c -> c.item).collect(Collectors.toList()));
+            Preconditions.checkState(results.size() == batch.size(), "There should be one result per item");
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result = results.get(i);
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).failure = e;
+            } else {
+                batch.forEach(c -> verifyBatch(Collections.singletonList(c)));
+            }
+        }
+    }
+
+    /**
+     * An item waiting for its verification. Its fields are only accessed while holding the lock of the queue.
+     */
+    private static final class PendingCheck<T> {
+        private final T item;
+        private Boolean result;
+        private RuntimeException failure;
+
+        private PendingCheck(T item) {
+            this.item = item;
+        }
+
+        private boolean isDone() {
+            return result != null || failure != null;
+        }
+
+        private boolean getResult() {
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+    }
+}
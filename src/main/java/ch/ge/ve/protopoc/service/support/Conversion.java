@@ -22,17 +22,24 @@
 package ch.ge.ve.protopoc.service.support;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class handles the conversions between strings, byte arrays and integers
  */
 public class Conversion {
     public static final Charset CONVERSION_CHARSET = Charset.forName("UTF-8");
-    private static final BigInteger BYTE_MULTIPLIER = BigInteger.valueOf(256L);
+    /**
+     * The alphabets are those of the public parameters: there are only a handful of them
+     */
+    private static final Map<List<Character>, AlphabetCodec> CODECS = new ConcurrentHashMap<>();
 
     /**
      * Algorithm 4.3: ToByteArray
@@ -55,14 +62,30 @@ public class Conversion {
         Preconditions.checkArgument(x.signum() >= 0, "x must be non-negative");
         Preconditions.checkArgument(n >= (int) Math.ceil(x.bitLength() / 8.0));
         byte[] byteArray = new byte[n];
+        byte[] twosComplement = x.toByteArray();
+        // the two's complement representation may hold an additional leading 0, for the sign
+        int length = Math.min(twosComplement.length, n);
+        System.arraycopy(twosComplement, twosComplement.length - length, byteArray, n - length, length);
+        return byteArray;
+    }
 
-        BigInteger current = x;
-        for (int i = 1; i <= n; i++) {
-            byteArray[n - i] = current.byteValue(); // = current.mod(256)
-            current = current.shiftRight(8); // current.divide(256)
+    /**
+     * Algorithm 4.4: ToByteArray, writing into a buffer
+     *
+     * @param x      the integer to be converted
+     * @param n      the target length (in bytes)
+     * @param buffer the buffer receiving the <tt>n</tt> bytes of the converted value, left-padded with <tt>0</tt>s,
+     *               at its current position
+     */
+    public void toByteArray(BigInteger x, int n, ByteBuffer buffer) {
+        Preconditions.checkArgument(x.signum() >= 0, "x must be non-negative");
+        Preconditions.checkArgument(n >= (int) Math.ceil(x.bitLength() / 8.0));
+        byte[] twosComplement = x.toByteArray();
+        int length = Math.min(twosComplement.length, n);
+        for (int i = 0; i < n - length; i++) {
+            buffer.put((byte) 0);
         }
-
-        return byteArray;
+        buffer.put(twosComplement, twosComplement.length - length, length);
     }
 
     /**
@@ -72,13 +95,8 @@ public class Conversion {
      * @return the corresponding integer (unsigned, non-injective conversion)
      */
     public BigInteger toInteger(byte[] byteArray) {
-        BigInteger integer = BigInteger.ZERO;
-        for (byte b : byteArray) {
-            integer = integer.multiply(BYTE_MULTIPLIER)
-                    // force b to be used as an unsigned value
-                    .add(BigInteger.valueOf(b & 0xFF));
-        }
-        return integer;
+        // sign-magnitude constructor: the bytes are read as an unsigned, big-endian value
+        return new BigInteger(1, byteArray);
     }
 
     /**
@@ -100,22 +118,7 @@ public class Conversion {
      * @return a string of length k, using alphabet A, and representing x
      */
     public String toString(BigInteger x, int k, List<Character> upper_a) {
-        Preconditions.checkArgument(x.signum() >= 0, "x should be a non-negative integer");
-        int alphabetSize = upper_a.size();
-        BigInteger N = BigInteger.valueOf(alphabetSize);
-        Preconditions.checkArgument(N.pow(k).compareTo(x) >= 0,
-                "x is too large to be encoded with k characters of alphabet upper_a");
-
-        StringBuilder sb = new StringBuilder(k);
-        BigInteger current = x;
-        for (int i = 1; i <= k; i++) {
-            BigInteger[] divideAndRemainder = current.divideAndRemainder(N);
-            current = divideAndRemainder[0];
-            // always insert before the previous character
-            sb.insert(0, upper_a.get(divideAndRemainder[1].intValue()));
-        }
-
-        return sb.toString();
+        return codec(upper_a).toString(x, k);
     }
 
     /**
@@ -126,17 +129,7 @@ public class Conversion {
      * @return the corresponding integer value
      */
     public BigInteger toInteger(String upper_s, List<Character> upper_a) {
-        BigInteger upper_n = BigInteger.valueOf(upper_a.size());
-
-        BigInteger x = BigInteger.ZERO;
-        for (int i = 0; i < upper_s.length(); i++) {
-            int rank_upper_a = upper_a.indexOf(upper_s.charAt(i));
-            Preconditions.checkArgument(rank_upper_a >= 0,
-                    String.format("character %s not found in alphabet %s", upper_s.charAt(i), upper_a));
-            x = x.multiply(upper_n).add(BigInteger.valueOf(rank_upper_a));
-        }
-
-        return x;
+        return codec(upper_a).toInteger(upper_s);
     }
 
     /**
@@ -147,8 +140,18 @@ public class Conversion {
      * @return the corresponding string
      */
     public String toString(byte[] upper_b, List<Character> upper_a) {
-        BigInteger x_upper_b = toInteger(upper_b);
-        int k = (int) Math.ceil(8.0 * upper_b.length / (Math.log(upper_a.size()) / Math.log(2)));
-        return toString(x_upper_b, k, upper_a);
+        return codec(upper_a).toString(upper_b);
+    }
+
+    /**
+     * @param upper_a the alphabet
+     * @return the codec for the given alphabet, built on its first use
+     */
+    public AlphabetCodec codec(List<Character> upper_a) {
+        AlphabetCodec codec = CODECS.get(upper_a);
+        if (codec == null) {
+            codec = CODECS.computeIfAbsent(ImmutableList.copyOf(upper_a), AlphabetCodec::new);
+        }
+        return codec;
     }
 }
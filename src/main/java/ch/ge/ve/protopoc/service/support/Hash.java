@@ -23,22 +23,59 @@ package ch.ge.ve.protopoc.service.support;
 
 import ch.ge.ve.protopoc.service.exception.DigestInitialisationRuntimeException;
 import ch.ge.ve.protopoc.service.model.SecurityParameters;
+import com.google.common.base.Preconditions;
 
 import java.math.BigInteger;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 /**
  * This class manages all the hashing operations and combinations
+ * <p>The message digests are cloned from a prototype once per thread and reused, and the recursive hashes are
+ * streamed: the hash of each child is written into a buffer of the current thread, and absorbed from there by the
+ * digest of its parent.</p>
+ * <p>Above a configurable number of elements, the hashes of the elements of a vector are computed in parallel, by
+ * chunks, and then absorbed by the digest of the vector in their original order: the result is the same.</p>
+ * <p>The vectors which are part of several hashes, such as the inputs of both challenges of a shuffle proof, may be
+ * wrapped with {@link #memoized(List)}: their hash is then only computed once.</p>
  */
 public class Hash {
+    /**
+     * Default number of elements from which the elements of a vector are hashed in parallel
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 2048;
+    private static final int PARALLEL_CHUNK_SIZE = 256;
+    private static final int PARALLEL_BLOCK_SIZE = 1 << 16;
     private final String digestAlgorithm, digestProvider;
     private final Conversion conversion;
     private final SecurityParameters securityParameters;
+    private final MessageDigest prototype;
+    private final int upper_l;
+    private final int parallelThreshold;
+    private final ThreadLocal<Deque<HashContext>> contexts = ThreadLocal.withInitial(ArrayDeque::new);
 
     public Hash(String digestAlgorithm, String digestProvider, SecurityParameters securityParameters, Conversion conversion) {
+        this(digestAlgorithm, digestProvider, securityParameters, conversion, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param digestAlgorithm    the name of the digest algorithm
+     * @param digestProvider     the name of the provider of the digest algorithm
+     * @param securityParameters the security parameters, defining the length L of the hashes
+     * @param conversion         the conversion implementation
+     * @param parallelThreshold  the number of elements from which the elements of a vector are hashed in parallel
+     */
+    public Hash(String digestAlgorithm, String digestProvider, SecurityParameters securityParameters,
+                Conversion conversion, int parallelThreshold) {
+        Preconditions.checkArgument(parallelThreshold > 1, "The parallel threshold must be greater than 1");
+        this.parallelThreshold = parallelThreshold;
         this.digestAlgorithm = digestAlgorithm;
         this.digestProvider = digestProvider;
         this.conversion = conversion;
@@ -53,6 +90,8 @@ public class Hash {
                             messageDigest.getDigestLength(),
                             securityParameters.getUpper_l()));
         }
+        this.prototype = messageDigest;
+        this.upper_l = securityParameters.getUpper_l();
     }
 
     private MessageDigest newMessageDigest() {
@@ -63,6 +102,14 @@ public class Hash {
         }
     }
 
+    private MessageDigest copyMessageDigest() {
+        try {
+            return (MessageDigest) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            return newMessageDigest();
+        }
+    }
+
     /**
      * Algorithm 4.9: RecHash_L, varargs version
      * <p>
@@ -73,19 +120,7 @@ public class Hash {
      * @return The recursive hash as defined in section 4.3
      */
     public byte[] recHash_L(Object... objects) {
-        MessageDigest messageDigest = newMessageDigest();
-        byte[] digest;
-        if (objects.length == 0) {
-            digest = messageDigest.digest();
-        } else if (objects.length == 1) {
-            return recHash_L(objects[0]);
-        } else {
-            for (Object object : objects) {
-                messageDigest.update(recHash_L(object));
-            }
-            digest = messageDigest.digest();
-        }
-        return ByteArrayUtils.truncate(digest, securityParameters.getUpper_l());
+        return computeHash(context -> context.hashElements(Arrays.asList(objects), 0));
     }
 
     /**
@@ -106,21 +141,7 @@ public class Hash {
      * @return the recursive hash as defined in section 4.3
      */
     public byte[] recHash_L(Object object) {
-        if (object instanceof String) {
-            return hash_L((String) object);
-        } else if (object instanceof BigInteger) {
-            return hash_L((BigInteger) object);
-        } else if (object instanceof byte[]) {
-            return hash_L((byte[]) object);
-        } else if (object instanceof Hashable) {
-            return recHash_L(((Hashable) object).elementsToHash());
-        } else if (object instanceof List) {
-            return recHash_L(((List) object).toArray());
-        } else if (object instanceof Object[]) {
-            return recHash_L((Object[]) object);
-        } else {
-            throw new IllegalArgumentException(String.format("Could not determine the type of object %s", object));
-        }
+        return computeHash(context -> context.hash(object, 0));
     }
 
     /**
@@ -130,9 +151,7 @@ public class Hash {
      * @return the hash of the provided byte array, truncated to L bytes
      */
     public byte[] hash_L(byte[] byteArray) {
-        MessageDigest messageDigest = newMessageDigest();
-        byte[] digest = messageDigest.digest(byteArray);
-        return ByteArrayUtils.truncate(digest, securityParameters.getUpper_l());
+        return computeHash(context -> context.hashBytes(byteArray, 0));
     }
 
     public byte[] hash_L(String s) {
@@ -143,6 +162,162 @@ public class Hash {
         return hash_L(conversion.toByteArray(integer));
     }
 
+    /**
+     * Wrap a vector which is hashed several times, so that its hash is only computed once.
+     * <p>The vector may not be modified afterwards, and its elements must be immutable: only integers, strings,
+     * {@link ImmutableHashable}s and other memoized vectors are accepted.</p>
+     *
+     * @param vector the vector to be hashed several times
+     * @param <T>    the type of the elements of the vector
+     * @return an unmodifiable view of the vector, whose hash is memoized
+     * @throws IllegalArgumentException if one of the elements may change
+     */
+    public static <T> List<T> memoized(List<T> vector) {
+        if (vector instanceof MemoizedVector) {
+            return vector;
+        }
+        boolean sealedIntegers = vector instanceof MappedBigIntegerVector && ((MappedBigIntegerVector) vector).isSealed();
+        Preconditions.checkArgument(sealedIntegers || vector.stream().allMatch(Hash::isImmutable),
+                "The elements of a memoized vector must be immutable");
+        return new MemoizedVector<>(vector);
+    }
+
+    /**
+     * @param vector a vector
+     * @return true if the vector has been wrapped by {@link #memoized(List)}
+     */
+    public static boolean isMemoized(List<?> vector) {
+        return vector instanceof MemoizedVector;
+    }
+
+    private static boolean isImmutable(Object element) {
+        return element instanceof BigInteger || element instanceof String ||
+                element instanceof ImmutableHashable || element instanceof MemoizedVector;
+    }
+
+    /**
+     * Run a hash computation with a context of the current thread. The contexts are taken from a per-thread pool, so
+     * that a thread may start a new computation while another one is suspended (<em>e.g.</em> by work stealing).
+     */
+    private byte[] computeHash(Function<HashContext, byte[]> computation) {
+        return withContext(context -> Arrays.copyOf(computation.apply(context), upper_l));
+    }
+
+    private <T> T withContext(Function<HashContext, T> computation) {
+        Deque<HashContext> pool = contexts.get();
+        HashContext context = pool.isEmpty() ? new HashContext() : pool.pop();
+        try {
+            return computation.apply(context);
+        } finally {
+            pool.push(context);
+        }
+    }
+
+    /**
+     * Absorb the hashes of the elements into the digest, computing them in parallel chunks. The elements are processed
+     * by blocks, to bound the memory holding the hashes waiting to be absorbed.
+     */
+    private void absorbInParallel(List<?> elements, MessageDigest messageDigest) {
+        List<?> randomAccessElements = elements instanceof RandomAccess ? elements : new ArrayList<>(elements);
+        int n = randomAccessElements.size();
+        byte[] hashes = new byte[Math.min(n, PARALLEL_BLOCK_SIZE) * upper_l];
+        for (int blockStart = 0; blockStart < n; blockStart += PARALLEL_BLOCK_SIZE) {
+            int start = blockStart;
+            int end = Math.min(n, blockStart + PARALLEL_BLOCK_SIZE);
+            IntStream.range(0, (end - start + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE).parallel()
+                    .forEach(chunk -> withContext(context -> {
+                        int chunkEnd = Math.min(end, start + (chunk + 1) * PARALLEL_CHUNK_SIZE);
+                        for (int i = start + chunk * PARALLEL_CHUNK_SIZE; i < chunkEnd; i++) {
+                            System.arraycopy(context.hash(randomAccessElements.get(i), 0), 0,
+                                    hashes, (i - start) * upper_l, upper_l);
+                        }
+                        return null;
+                    }));
+            messageDigest.update(hashes, 0, (end - start) * upper_l);
+        }
+    }
+
+    /**
+     * The message digests and buffers used by one recursive hash computation, one of each per level of recursion.
+     * <p>The value returned by the hash methods is the buffer of the given level (or a memoized hash), holding the
+     * hash in its first L bytes: it must not be modified, and is only valid until the next hash computed at the same
+     * level.</p>
+     */
+    private final class HashContext {
+        private final List<MessageDigest> digests = new ArrayList<>();
+        private final List<byte[]> buffers = new ArrayList<>();
+
+        private MessageDigest digest(int level) {
+            while (digests.size() <= level) {
+                digests.add(copyMessageDigest());
+                buffers.add(new byte[prototype.getDigestLength()]);
+            }
+            return digests.get(level);
+        }
+
+        private byte[] finish(int level) {
+            MessageDigest messageDigest = digest(level);
+            byte[] buffer = buffers.get(level);
+            try {
+                messageDigest.digest(buffer, 0, buffer.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException("The buffer should hold a complete digest", e);
+            }
+            return buffer;
+        }
+
+        byte[] hash(Object object, int level) {
+            if (!(object instanceof MemoizedVector)) {
+                return computeHash(object, level);
+            }
+            MemoizedVector<?> vector = (MemoizedVector<?>) object;
+            byte[] memoizedHash = vector.hashes.get(Hash.this);
+            if (memoizedHash == null) {
+                memoizedHash = Arrays.copyOf(computeHash(vector.vector, level), upper_l);
+                vector.hashes.putIfAbsent(Hash.this, memoizedHash);
+            }
+            return memoizedHash;
+        }
+
+        private byte[] computeHash(Object object, int level) {
+            if (object instanceof String) {
+                return hashBytes(conversion.toByteArray((String) object), level);
+            } else if (object instanceof BigInteger) {
+                return hashBytes(conversion.toByteArray((BigInteger) object), level);
+            } else if (object instanceof byte[]) {
+                return hashBytes((byte[]) object, level);
+            } else if (object instanceof Hashable) {
+                return hashElements(Arrays.asList(((Hashable) object).elementsToHash()), level);
+            } else if (object instanceof List) {
+                return hashElements((List<?>) object, level);
+            } else if (object instanceof Object[]) {
+                return hashElements(Arrays.asList((Object[]) object), level);
+            } else {
+                throw new IllegalArgumentException(String.format("Could not determine the type of object %s", object));
+            }
+        }
+
+        byte[] hashBytes(byte[] bytes, int level) {
+            digest(level).update(bytes);
+            return finish(level);
+        }
+
+        byte[] hashElements(List<?> elements, int level) {
+            if (elements.size() == 1) {
+                return hash(elements.get(0), level);
+            }
+            MessageDigest messageDigest = digest(level);
+            if (elements.size() >= parallelThreshold) {
+                absorbInParallel(elements, messageDigest);
+            } else {
+                for (Object element : elements) {
+                    messageDigest.update(hash(element, level + 1), 0, upper_l);
+                }
+            }
+            return finish(level);
+        }
+    }
+
     /**
      * This interface is used to facilitate hashing of objects representing tuples, so that the relevant elements can
      * be included in the the hash, in a predictable and coherent order.
@@ -155,4 +330,32 @@ public class Hash {
          */
         Object[] elementsToHash();
     }
+
+    /**
+     * A {@link Hashable} whose elements never change, and which may therefore be part of a memoized vector
+     */
+    public interface ImmutableHashable extends Hashable {
+    }
+
+    /**
+     * An unmodifiable view of a vector, holding its hash for each {@link Hash} instance which computed it
+     */
+    private static final class MemoizedVector<T> extends AbstractList<T> implements RandomAccess {
+        private final List<T> vector;
+        private final ConcurrentMap<Hash, byte[]> hashes = new ConcurrentHashMap<>(1);
+
+        private MemoizedVector(List<T> vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        public T get(int index) {
+            return vector.get(index);
+        }
+
+        @Override
+        public int size() {
+            return vector.size();
+        }
+    }
 }
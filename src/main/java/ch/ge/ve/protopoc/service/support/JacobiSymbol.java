@@ -31,49 +31,67 @@ public class JacobiSymbol {
      * Compute the jacobi symbol <code>(a/n)</code>, as described in:
      * <a href="http://nvlpubs.nist.gov/nistpubs/FIPS/NIST.FIPS.186-4.pdf">Digital signature standard (DSS). FIPS PUB 186-4, National Institute of Standards and
      Technology (NIST), 2013.</a>, pp. 76-77
+     * <p>The recursion of the reference algorithm is unrolled into a loop, the factors of two are stripped at once, and
+     * the computation switches to <tt>long</tt> arithmetic as soon as the values fit.</p>
      * @param initial_a the starting value of a
-     * @param n the value of n
+     * @param n the value of n, odd and positive
      * @return the computed jacobi symbol
      */
     public int computeJacobiSymbol(BigInteger initial_a, BigInteger n) {
-        // Step 1: a = a mod n
         BigInteger a = initial_a.mod(n);
-        // Step 2: if a = 1 or n = 1 return 1
-        if (a.equals(BigInteger.ONE) || n.equals(BigInteger.ONE)) {
-            return 1;
-        }
-        // Step 3: if a = 0 return 0
-        if (a.equals(BigInteger.ZERO)) {
-            return 0;
-        }
-        // Step 4: define e and a_1 such that a = 2^e * a_1 where a_1 is odd
-        int e = 0;
-        BigInteger a_1 = a;
-        while (a_1.remainder(BigIntegers.TWO).equals(BigInteger.ZERO)) {
-            e++;
-            a_1 = a_1.divide(BigIntegers.TWO);
-        }
-        // Step 5: if e is even, then s = 1;
-        //          else if n mod 8 = 1 or n mod 8 = 7, then s = 1
-        //          else if n mod 8 = 3 or n mod 8 = 5, then s = -1
-        int s;
-        if (e % 2 == 0) {
-            s = 1;
-        } else {
-            BigInteger n_mod_eight = n.mod(BigIntegers.EIGHT);
-            if (n_mod_eight.equals(BigInteger.ONE) || n_mod_eight.equals(BigIntegers.SEVEN)) {
-                s = 1;
-            } else { // n_mod_eight.equals(THREE) || n_mod_eight.equals(FIVE)
-                s = -1;
+        BigInteger m = n;
+        int s = 1;
+        while (m.bitLength() >= Long.SIZE) {
+            if (a.signum() == 0) {
+                return 0;
             }
+            // a = 2^e * a_1, with a_1 odd
+            int e = a.getLowestSetBit();
+            a = a.shiftRight(e);
+            s *= symbolStep(e, m.intValue(), a.intValue());
+            BigInteger m_1 = m.mod(a);
+            m = a;
+            a = m_1;
         }
-        // Step 6: if n mod 4 = 3 and a_1 mod 4 = 3, then s = -s
-        if (n.mod(BigIntegers.FOUR).equals(BigIntegers.THREE) && a_1.mod(BigIntegers.FOUR).equals(BigIntegers.THREE)) {
+        return s * computeJacobiSymbol(a.longValue(), m.longValue());
+    }
+
+    /**
+     * Compute the jacobi symbol <code>(a/n)</code> for small values
+     *
+     * @param initial_a the starting value of a, in [0, n)
+     * @param n the value of n, odd and positive
+     * @return the computed jacobi symbol
+     */
+    private int computeJacobiSymbol(long initial_a, long n) {
+        long a = initial_a;
+        long m = n;
+        int s = 1;
+        while (a != 0) {
+            int e = Long.numberOfTrailingZeros(a);
+            a >>>= e;
+            s *= symbolStep(e, (int) m, (int) a);
+            long m_1 = m % a;
+            m = a;
+            a = m_1;
+        }
+        return m == 1 ? s : 0;
+    }
+
+    /**
+     * Steps 5 and 6: the sign contributed by the factor <tt>2^e</tt> and by the quadratic reciprocity of a_1 and n
+     *
+     * @param e       the exponent of the factor of two stripped from a
+     * @param low_n   the lowest bits of n
+     * @param low_a_1 the lowest bits of the odd part a_1 of a
+     * @return the sign s
+     */
+    private static int symbolStep(int e, int low_n, int low_a_1) {
+        int n_mod_eight = low_n & 7;
+        int s = ((e & 1) == 1 && (n_mod_eight == 3 || n_mod_eight == 5)) ? -1 : 1;
+        if ((n_mod_eight & 3) == 3 && (low_a_1 & 3) == 3) {
             s = -s;
         }
-        // Step 7: n_1 = n mod a_1
-        BigInteger n_1 = n.mod(a_1);
-        // Step 8: return s * JacobiSymbol(n_1, a_1)
-        return s * computeJacobiSymbol(n_1, a_1);
+        return s;
     }
 }
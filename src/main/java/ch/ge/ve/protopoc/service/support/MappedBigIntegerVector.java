@@ -0,0 +1,177 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.support;
+
+import ch.ge.ve.protopoc.service.exception.VectorStorageRuntimeException;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A vector of non-negative BigIntegers, stored in a memory-mapped file.
+ * <p>Each element takes a fixed number of bytes (<em>e.g.</em> 256 bytes for the elements of a 2048-bit group), so
+ * that the element at a given index is read or written without any index structure. Only the pages being accessed are
+ * held in memory, by the operating system: the vector does not count against the heap.</p>
+ * <p>The elements may be set concurrently, at distinct indices, until the vector is {@link #seal() sealed}; it is
+ * read-only afterwards.</p>
+ * <p>The backing file is deleted as soon as it is mapped: the mapping keeps its content reachable, and the space is
+ * released when the vector is garbage-collected. On the systems which do not allow the deletion of a mapped file, it is
+ * deleted when the virtual machine exits instead.</p>
+ * <p>The pages may be written to the disk by the operating system: only public values may be stored in these
+ * vectors.</p>
+ */
+public final class MappedBigIntegerVector extends AbstractList<BigInteger> implements RandomAccess {
+    /**
+     * Maximum size of a single mapping
+     */
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+    private final int size;
+    private final int elementWidth;
+    private final int elementsPerSegment;
+    private final MappedByteBuffer[] segments;
+    private volatile boolean sealed;
+
+    private MappedBigIntegerVector(int size, int elementWidth, MappedByteBuffer[] segments) {
+        this.size = size;
+        this.elementWidth = elementWidth;
+        this.elementsPerSegment = MAX_SEGMENT_SIZE / elementWidth;
+        this.segments = segments;
+    }
+
+    /**
+     * Create a vector in a new file of the given directory, with all elements set to zero
+     *
+     * @param directory    the directory in which to create the backing file
+     * @param size         the number of elements
+     * @param elementWidth the number of bytes of each element
+     * @return the new vector
+     */
+    public static MappedBigIntegerVector create(Path directory, int size, int elementWidth) {
+        Preconditions.checkArgument(size >= 0, "The size should be non-negative");
+        Preconditions.checkArgument(elementWidth > 0 && elementWidth <= MAX_SEGMENT_SIZE,
+                "The element width should be positive");
+        int elementsPerSegment = MAX_SEGMENT_SIZE / elementWidth;
+        int segmentCount = (size + elementsPerSegment - 1) / elementsPerSegment;
+        try {
+            Path file = Files.createTempFile(directory, "vector", ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+                for (int k = 0; k < segmentCount; k++) {
+                    long offset = (long) k * elementsPerSegment * elementWidth;
+                    long length = (long) Math.min(elementsPerSegment, size - k * elementsPerSegment) * elementWidth;
+                    segments[k] = channel.map(FileChannel.MapMode.READ_WRITE, offset, length);
+                }
+                return new MappedBigIntegerVector(size, elementWidth, segments);
+            } finally {
+                delete(file);
+            }
+        } catch (IOException e) {
+            throw new VectorStorageRuntimeException("Could not create a mapped vector in " + directory, e);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * @param vector a vector
+     * @param <T>    the type of the elements
+     * @return the vector itself if it is a sealed mapped vector, a memoized vector or a seeded random vector, an
+     * immutable copy of it otherwise
+     */
+    public static <T> List<T> immutableCopyOf(List<T> vector) {
+        if (Hash.isMemoized(vector) || vector instanceof SeededRandomVector ||
+                vector instanceof MappedBigIntegerVector && ((MappedBigIntegerVector) vector).isSealed()) {
+            return vector;
+        }
+        return ImmutableList.copyOf(vector);
+    }
+
+    @Override
+    public BigInteger get(int index) {
+        Preconditions.checkElementIndex(index, size);
+        byte[] bytes = new byte[elementWidth];
+        slot(index).get(bytes);
+        return new BigInteger(1, bytes);
+    }
+
+    @Override
+    public BigInteger set(int index, BigInteger element) {
+        Preconditions.checkState(!sealed, "The vector is sealed");
+        Preconditions.checkArgument(element.signum() >= 0 && element.bitLength() <= elementWidth * Byte.SIZE,
+                "The element should be non-negative, and fit in the element width");
+        BigInteger previous = get(index);
+        byte[] bytes = element.toByteArray();
+        byte[] padded = new byte[elementWidth];
+        // toByteArray may have an extra leading zero byte, for the sign
+        int length = Math.min(bytes.length, elementWidth);
+        System.arraycopy(bytes, bytes.length - length, padded, elementWidth - length, length);
+        slot(index).put(padded);
+        return previous;
+    }
+
+    private ByteBuffer slot(int index) {
+        ByteBuffer buffer = segments[index / elementsPerSegment].duplicate();
+        buffer.position((index % elementsPerSegment) * elementWidth);
+        return buffer;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Make the vector read-only
+     *
+     * @return this vector
+     */
+    public MappedBigIntegerVector seal() {
+        sealed = true;
+        return this;
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public int getElementWidth() {
+        return elementWidth;
+    }
+}
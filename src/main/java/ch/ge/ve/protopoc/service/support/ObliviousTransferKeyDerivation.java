@@ -0,0 +1,87 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.support;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigInteger;
+
+/**
+ * Derivation of the masks of the oblivious transfer messages, shared by Algorithms 7.25 (GenResponse) and 7.27
+ * (GetPointMatrix): <tt>K = Truncate(RecHash_L(k, 1) || ... || RecHash_L(k, l_M), L_M)</tt>, with
+ * <tt>l_M = ceil(L_M / L)</tt>.
+ * <p>The hashes are xor-ed into the message as they are computed, so that neither the mask nor its intermediate
+ * concatenations are ever allocated.</p>
+ */
+public class ObliviousTransferKeyDerivation {
+    private final Hash hash;
+    private final int upper_l_m;
+    private final int l_m;
+
+    /**
+     * @param hash      the hash function
+     * @param upper_l_m the length of the messages, in bytes
+     * @param upper_l   the length of the hashes, in bytes
+     */
+    public ObliviousTransferKeyDerivation(Hash hash, int upper_l_m, int upper_l) {
+        Preconditions.checkArgument(upper_l_m > 0 && upper_l > 0, "The lengths must be positive");
+        this.hash = hash;
+        this.upper_l_m = upper_l_m;
+        this.l_m = (int) Math.ceil((double) upper_l_m / upper_l);
+    }
+
+    /**
+     * @param k      the key
+     * @param buffer the message, of length <tt>L_M</tt>, replaced by its xor with the mask derived from <tt>k</tt>
+     */
+    public void xorInPlace(BigInteger k, byte[] buffer) {
+        xor(k, buffer, buffer);
+    }
+
+    /**
+     * @param k       the key
+     * @param message the message, of length <tt>L_M</tt>
+     * @return a new array, holding the xor of the message with the mask derived from <tt>k</tt>
+     */
+    public byte[] xor(BigInteger k, byte[] message) {
+        byte[] result = new byte[upper_l_m];
+        xor(k, message, result);
+        return result;
+    }
+
+    private void xor(BigInteger k, byte[] message, byte[] result) {
+        Preconditions.checkArgument(message.length == upper_l_m,
+                "The message should be of length L_M. |message| = [" + message.length + "], L_M = [" + upper_l_m + "]");
+        int offset = 0;
+        for (int z = 1; z <= l_m; z++) {
+            byte[] block = hash.recHash_L(k, BigInteger.valueOf(z));
+            int length = Math.min(block.length, upper_l_m - offset);
+            for (int i = 0; i < length; i++) {
+                result[offset + i] = (byte) (message[offset + i] ^ block[i]);
+            }
+            offset += length;
+        }
+        Preconditions.checkArgument(offset == upper_l_m,
+                "The derived mask is shorter than L_M");
+    }
+}
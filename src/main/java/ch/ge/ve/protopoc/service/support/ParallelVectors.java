@@ -0,0 +1,177 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.support;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static java.math.BigInteger.ONE;
+
+/**
+ * Parallel kernels on indexed vectors.
+ * <p>The index range is split into contiguous chunks, which are processed by the common fork-join pool. Results are
+ * written at their index into a preallocated array, so that the order is preserved without boxing the indices nor
+ * merging partial results.</p>
+ * <p>Chunks are sized according to the cost of one modular exponentiation: kernels performing (at least) one
+ * exponentiation per element use a few chunks per worker thread, so that work stealing balances the load, whereas
+ * kernels performing one multiplication per element use chunks of at least as many elements as the bit length of the
+ * modulus, so that each chunk costs about as much as an exponentiation.</p>
+ */
+public final class ParallelVectors {
+    /**
+     * Number of chunks per worker thread, when each element costs about one exponentiation
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelVectors() {
+        // utility class
+    }
+
+    /**
+     * Compute <tt>(f(0), ..., f(n-1))</tt> in parallel
+     *
+     * @param n   the length of the vector
+     * @param f   the function computing the element at a given index
+     * @param <T> the type of the elements
+     * @return the vector of the computed elements, in index order
+     */
+    public static <T> List<T> parallelMap(int n, IntFunction<? extends T> f) {
+        Preconditions.checkArgument(n >= 0, "The length of the vector should be non-negative");
+        Object[] result = new Object[n];
+        parallelForEach(n, i -> result[i] = f.apply(i));
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(result);
+        return list;
+    }
+
+    /**
+     * Set <tt>target_i = f(i)</tt> for all indices of the target vector, in parallel
+     *
+     * @param target the vector to be filled, supporting {@link List#set(int, Object)} at distinct indices concurrently
+     * @param f      the function computing the element at a given index
+     * @param <T>    the type of the elements
+     * @return the target vector
+     */
+    public static <T> List<T> parallelFill(List<T> target, IntFunction<? extends T> f) {
+        parallelForEach(target.size(), i -> target.set(i, f.apply(i)));
+        return target;
+    }
+
+    /**
+     * Perform the given action for the indices <tt>0, ..., n-1</tt>, in parallel
+     *
+     * @param n      the number of indices
+     * @param action the action, performing about one exponentiation per index
+     */
+    public static void parallelForEach(int n, IntConsumer action) {
+        Preconditions.checkArgument(n >= 0, "The length of the vector should be non-negative");
+        forEachChunk(n, chunkCount(n, 1), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                action.accept(i);
+            }
+        });
+    }
+
+    /**
+     * Compute <tt>(f(a_0, b_0), ..., f(a_n-1, b_n-1))</tt> in parallel
+     *
+     * @param bold_a the first vector
+     * @param bold_b the second vector, of the same length as the first one
+     * @param f      the function combining two elements of the same index
+     * @param <A>    the type of the elements of the first vector
+     * @param <B>    the type of the elements of the second vector
+     * @param <R>    the type of the elements of the result
+     * @return the vector of the combined elements, in index order
+     */
+    public static <A, B, R> List<R> parallelZip(List<A> bold_a, List<B> bold_b,
+                                                BiFunction<? super A, ? super B, ? extends R> f) {
+        Preconditions.checkArgument(bold_a.size() == bold_b.size(), "The lengths of both vectors should be identical");
+        return parallelMap(bold_a.size(), i -> f.apply(bold_a.get(i), bold_b.get(i)));
+    }
+
+    /**
+     * Compute <tt>&prod;x_i mod m</tt> in parallel
+     *
+     * @param bold_x the vector of factors
+     * @param m      the modulus
+     * @return the product of all elements of the vector modulo <tt>m</tt>, one for the empty vector
+     */
+    public static BigInteger productMod(List<BigInteger> bold_x, BigInteger m) {
+        int n = bold_x.size();
+        return productMod(n, chunkCount(n, m.bitLength()), bold_x::get, m);
+    }
+
+    /**
+     * Compute <tt>&prod;f(i) mod m</tt> for the indices <tt>0, ..., n-1</tt>, in parallel, without storing the
+     * factors
+     *
+     * @param n the number of factors
+     * @param f the function computing the factor at a given index, performing about one exponentiation
+     * @param m the modulus
+     * @return the product of all factors modulo <tt>m</tt>, one if there is no factor
+     */
+    public static BigInteger productMod(int n, IntFunction<BigInteger> f, BigInteger m) {
+        Preconditions.checkArgument(n >= 0, "The number of factors should be non-negative");
+        return productMod(n, chunkCount(n, 1), f, m);
+    }
+
+    private static BigInteger productMod(int n, int chunks, IntFunction<BigInteger> f, BigInteger m) {
+        BigInteger[] partialProducts = new BigInteger[chunks];
+        Arrays.fill(partialProducts, ONE);
+        IntStream.range(0, chunks).parallel().forEach(k -> {
+            BigInteger product = ONE;
+            for (int i = chunkStart(n, chunks, k); i < chunkStart(n, chunks, k + 1); i++) {
+                product = product.multiply(f.apply(i)).mod(m);
+            }
+            partialProducts[k] = product;
+        });
+        return Arrays.stream(partialProducts).reduce(BigIntegers.multiplyMod(m)).orElse(ONE).mod(m);
+    }
+
+    private static int chunkCount(int n, int minChunkSize) {
+        int maxChunks = ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD;
+        return Math.max(1, Math.min(maxChunks, n / Math.max(1, minChunkSize)));
+    }
+
+    private static int chunkStart(int n, int chunks, int k) {
+        return (int) ((long) n * k / chunks);
+    }
+
+    private static void forEachChunk(int n, int chunks, ChunkConsumer consumer) {
+        IntStream.range(0, chunks).parallel()
+                .forEach(k -> consumer.accept(chunkStart(n, chunks, k), chunkStart(n, chunks, k + 1)));
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        void accept(int from, int to);
+    }
+}
@@ -21,23 +21,169 @@
 
 package ch.ge.ve.protopoc.service.support;
 
+import ch.ge.ve.protopoc.service.exception.RandomGeneratorInitialisationRuntimeException;
 import ch.ge.ve.protopoc.service.model.EncryptionGroup;
 import com.google.common.base.Preconditions;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
+import java.util.function.Supplier;
 
-import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExp;
+import static ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic.modExpSecret;
 
 /**
- * This class
+ * This class provides the random values needed by the algorithms.
+ * <p>By default, all the values are drawn from a single {@link SecureRandom}, shared by all threads. In the
+ * {@link #perThread(SecureRandom, Supplier) per-thread} mode, each thread draws from its own generator, seeded from a
+ * master generator, so that the parallel streams of the mixing and of the proofs do not contend on a single
+ * synchronized generator.</p>
  */
 public class RandomGenerator {
     private static final int MAX_ITERATIONS = Byte.MAX_VALUE - Byte.MIN_VALUE;
+    /**
+     * Number of bytes drawn from the master generator to seed each per-thread generator
+     */
+    private static final int SEED_LENGTH = 64;
     private final SecureRandom secureRandom;
+    private final ThreadLocal<SecureRandom> threadSecureRandom;
+    private final Long benchmarkSeed;
+    private final String benchmarkStream;
 
     public RandomGenerator(SecureRandom secureRandom) {
+        this(secureRandom, null, null);
+    }
+
+    private RandomGenerator(ThreadLocal<SecureRandom> threadSecureRandom) {
+        this.secureRandom = null;
+        this.threadSecureRandom = threadSecureRandom;
+        this.benchmarkSeed = null;
+        this.benchmarkStream = null;
+    }
+
+    private RandomGenerator(SecureRandom secureRandom, Long benchmarkSeed, String benchmarkStream) {
         this.secureRandom = secureRandom;
+        this.threadSecureRandom = null;
+        this.benchmarkSeed = benchmarkSeed;
+        this.benchmarkStream = benchmarkStream;
+    }
+
+    /**
+     * Create a random generator handing out one generator per thread.
+     * <p>Each generator is created by the factory when a thread first needs it, and seeded with bytes drawn from the
+     * master generator. The factory should return generators which are not seeded yet (e.g.
+     * <tt>SecureRandom.getInstance("SHA1PRNG", "SUN")</tt>), so that their output only depends on that seed.</p>
+     *
+     * @param master  the generator from which the seeds are drawn
+     * @param factory the factory creating the per-thread generators
+     * @return a random generator drawing its values from the generator of the calling thread
+     */
+    public static RandomGenerator perThread(SecureRandom master, Supplier<SecureRandom> factory) {
+        Preconditions.checkNotNull(master);
+        Preconditions.checkNotNull(factory);
+        return new RandomGenerator(ThreadLocal.withInitial(() -> {
+            byte[] seed = new byte[SEED_LENGTH];
+            master.nextBytes(seed);
+            SecureRandom secureRandom = factory.get();
+            secureRandom.setSeed(seed);
+            return secureRandom;
+        }));
+    }
+
+    /**
+     * Create a deterministic random generator, <strong>for reproducible benchmarks only</strong>.
+     * <p>All the values are derived from the seed and the name of the stream: anyone knowing them can predict every
+     * key, credential and randomization. Distinct streams (e.g. one per authority and one per voter) keep the values
+     * drawn by each component independent of the scheduling of the others.</p>
+     *
+     * @param seed   the benchmark seed
+     * @param stream the name of the stream, unique per component
+     * @return a random generator, whose output only depends on the seed and the name of the stream
+     */
+    public static RandomGenerator deterministicForBenchmark(long seed, String stream) {
+        return new RandomGenerator(deterministicSecureRandomForBenchmark(seed, stream), seed, stream);
+    }
+
+    /**
+     * Create a deterministic secure random, <strong>for reproducible benchmarks only</strong>
+     *
+     * @param seed   the benchmark seed
+     * @param stream the name of the stream, unique per component
+     * @return a secure random, whose output only depends on the seed and the name of the stream
+     * @see #deterministicForBenchmark(long, String)
+     */
+    public static SecureRandom deterministicSecureRandomForBenchmark(long seed, String stream) {
+        byte[] label = stream.getBytes(StandardCharsets.UTF_8);
+        try {
+            // SHA1PRNG's output only depends on the seed, provided it is set before the first value is drawn
+            SecureRandom secureRandom = SecureRandom.getInstance("SHA1PRNG", "SUN");
+            secureRandom.setSeed(ByteBuffer.allocate(Long.BYTES + label.length).putLong(seed).put(label).array());
+            return secureRandom;
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RandomGeneratorInitialisationRuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a random generator whose output only depends on the given seed, to regenerate values drawn from a secret
+     * seed (see {@link SeededRandomVector})
+     *
+     * @param seed the seed, drawn at random with {@link #randomBytes(int)}
+     * @return a random generator, whose output only depends on the seed
+     */
+    public static RandomGenerator seeded(byte[] seed) {
+        try {
+            // SHA1PRNG's output only depends on the seed, provided it is set before the first value is drawn
+            SecureRandom secureRandom = SecureRandom.getInstance("SHA1PRNG", "SUN");
+            secureRandom.setSeed(seed);
+            return new RandomGenerator(secureRandom);
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RandomGeneratorInitialisationRuntimeException(e);
+        }
+    }
+
+    /**
+     * @return true in the {@link #deterministicForBenchmark(long, String) deterministic benchmark} mode, where the
+     * values drawn concurrently depend on the scheduling of the threads, unless they are drawn from distinct
+     * sub-streams or in a fixed order
+     */
+    public boolean isDeterministic() {
+        return benchmarkSeed != null;
+    }
+
+    /**
+     * Get the generator of a sub-stream, for values drawn concurrently with the other values of this generator
+     * (<em>e.g.</em> by a background thread, or for distinct voters).
+     * <p>In the {@link #deterministicForBenchmark(long, String) deterministic benchmark} mode, the sub-stream is
+     * derived from the seed, the name of this stream and the name of the sub-stream, so that the values drawn from
+     * each of them do not depend on the scheduling of the threads: a name must thus be used only once per stream.
+     * Otherwise, the values are unpredictable anyway, and this generator is returned.</p>
+     *
+     * @param name the name of the sub-stream, unique within this stream
+     * @return the random generator of the sub-stream
+     */
+    public RandomGenerator subStream(String name) {
+        if (benchmarkSeed == null) {
+            return this;
+        }
+        return deterministicForBenchmark(benchmarkSeed, benchmarkStream + "/" + name);
+    }
+
+    private SecureRandom secureRandom() {
+        return threadSecureRandom == null ? secureRandom : threadSecureRandom.get();
+    }
+
+    /**
+     * @param length the number of bytes
+     * @return random bytes
+     */
+    public byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        secureRandom().nextBytes(bytes);
+        return bytes;
     }
 
     /**
@@ -50,7 +196,7 @@ public class RandomGenerator {
     public int randomIntInRange(int from, int to) {
         Preconditions.checkArgument(from <= to, "The lowerbound must be less or equal to the upperbound");
         if (from == to) return from;
-        return secureRandom.nextInt(to - from) + from;
+        return secureRandom().nextInt(to - from) + from;
     }
 
     /**
@@ -58,6 +204,7 @@ public class RandomGenerator {
      * @return a random BigInteger in range [0, upperbound)
      */
     public BigInteger randomBigInteger(BigInteger upperbound) {
+        SecureRandom secureRandom = secureRandom();
         for (int i = 0; i < MAX_ITERATIONS; i++) {
             BigInteger x = new BigInteger(upperbound.bitLength(), secureRandom);
             if (x.compareTo(upperbound) < 0) {
@@ -87,6 +234,6 @@ public class RandomGenerator {
      */
     public BigInteger randomInGq(EncryptionGroup encryptionGroup) {
         BigInteger x = randomInZq(encryptionGroup.getQ());
-        return modExp(encryptionGroup.getG(), x, encryptionGroup.getP());
+        return modExpSecret(encryptionGroup.getG(), x, encryptionGroup.getP());
     }
 }
@@ -0,0 +1,179 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A vector of secret random values in Z_q, which is never held as a whole: only a seed per chunk of consecutive
+ * elements is kept, and the values of a chunk are regenerated from its seed when they are accessed.
+ * <p>The seeds are drawn from a {@link RandomGenerator} when the vector is created, and each chunk is expanded by a
+ * generator seeded with its seed only (see {@link RandomGenerator#seeded(byte[])}): the vector always yields the
+ * same values. Each thread keeps the last chunk it accessed, so that sequential accesses regenerate each chunk once,
+ * and the heap needed is one seed per chunk plus one chunk per thread, whatever the length of the vector.</p>
+ * <p>Like any secret vector, it is never written to a file.</p>
+ */
+public final class SeededRandomVector extends AbstractList<BigInteger> implements RandomAccess {
+    private static final int SEED_LENGTH = 32;
+    private final BigInteger q;
+    private final int chunkSize;
+    private final byte[][] seeds;
+    private final int length;
+    private final int[] indices;
+    private final int size;
+    private final ThreadLocal<Chunk> lastChunk;
+
+    /**
+     * @param randomGenerator the generator from which the seeds are drawn
+     * @param size            the length of the vector
+     * @param q               the exclusive upper bound of the values, as in {@link RandomGenerator#randomInZq(BigInteger)}
+     * @param chunkSize       the number of values regenerated from each seed
+     */
+    public SeededRandomVector(RandomGenerator randomGenerator, int size, BigInteger q, int chunkSize) {
+        Preconditions.checkArgument(size >= 0, "The length of the vector should be non-negative");
+        Preconditions.checkArgument(chunkSize > 0, "The chunks should hold at least one value");
+        this.q = q;
+        this.chunkSize = chunkSize;
+        this.seeds = new byte[(size + chunkSize - 1) / chunkSize][];
+        for (int c = 0; c < seeds.length; c++) {
+            seeds[c] = randomGenerator.randomBytes(SEED_LENGTH);
+        }
+        this.length = size;
+        this.indices = null;
+        this.size = size;
+        this.lastChunk = new ThreadLocal<>();
+    }
+
+    private SeededRandomVector(SeededRandomVector vector, int[] indices) {
+        this.q = vector.q;
+        this.chunkSize = vector.chunkSize;
+        this.seeds = vector.seeds;
+        this.length = vector.length;
+        this.indices = indices;
+        this.size = indices.length;
+        this.lastChunk = vector.lastChunk;
+    }
+
+    /**
+     * @param indices increasing indices of this vector
+     * @return the vector <tt>(x_indices(0), ..., x_indices(n - 1))</tt>, regenerated from the same seeds
+     */
+    public SeededRandomVector select(int[] indices) {
+        Preconditions.checkArgument(this.indices == null, "Only a full vector may be restricted");
+        for (int k = 0; k < indices.length; k++) {
+            Preconditions.checkElementIndex(indices[k], length);
+            Preconditions.checkArgument(k == 0 || indices[k - 1] < indices[k], "The indices should be increasing");
+        }
+        return new SeededRandomVector(this, indices.clone());
+    }
+
+    @Override
+    public BigInteger get(int index) {
+        Preconditions.checkElementIndex(index, size);
+        int i = indices == null ? index : indices[index];
+        int c = i / chunkSize;
+        Chunk chunk = lastChunk.get();
+        if (chunk == null || chunk.index != c) {
+            chunk = regenerate(c);
+            lastChunk.set(chunk);
+        }
+        return chunk.values[i - c * chunkSize];
+    }
+
+    private Chunk regenerate(int c) {
+        RandomGenerator randomGenerator = RandomGenerator.seeded(seeds[c]);
+        BigInteger[] values = new BigInteger[Math.min(chunkSize, length - c * chunkSize)];
+        for (int k = 0; k < values.length; k++) {
+            values[k] = randomGenerator.randomInZq(q);
+        }
+        return new Chunk(c, values);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Split by index ranges, so that each thread of a parallel stream regenerates the chunks of its range only
+     */
+    @Override
+    public Spliterator<BigInteger> spliterator() {
+        return new IndexSpliterator(0, size);
+    }
+
+    private static final class Chunk {
+        private final int index;
+        private final BigInteger[] values;
+
+        private Chunk(int index, BigInteger[] values) {
+            this.index = index;
+            this.values = values;
+        }
+    }
+
+    private final class IndexSpliterator implements Spliterator<BigInteger> {
+        private int from;
+        private final int to;
+
+        private IndexSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super BigInteger> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(get(from++));
+            return true;
+        }
+
+        @Override
+        public Spliterator<BigInteger> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle - from < chunkSize) {
+                return null;
+            }
+            Spliterator<BigInteger> prefix = new IndexSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
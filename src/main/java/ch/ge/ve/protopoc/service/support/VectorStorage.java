@@ -0,0 +1,88 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+
+package ch.ge.ve.protopoc.service.support;
+
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Storage of the large vectors computed by the algorithms, either on the heap or in memory-mapped files (see
+ * {@link MappedBigIntegerVector}).
+ * <p>The content of memory-mapped vectors may reach the disk: this storage is only meant for public values, secret
+ * vectors must be kept on the heap, or regenerated from secret seeds (see {@link SeededRandomVector}).</p>
+ */
+public interface VectorStorage {
+    /**
+     * @param n the length of the vector
+     * @return a new vector of length n, whose elements are to be set
+     */
+    List<BigInteger> allocate(int n);
+
+    /**
+     * @param vector a vector allocated by this storage, whose elements have all been set
+     * @return the vector, which will no longer be modified
+     */
+    default List<BigInteger> seal(List<BigInteger> vector) {
+        return vector;
+    }
+
+    /**
+     * @return true if the vectors are kept out of the heap
+     */
+    default boolean isMapped() {
+        return false;
+    }
+
+    /**
+     * @return the storage of the vectors in arrays on the heap
+     */
+    static VectorStorage heap() {
+        return n -> Arrays.asList(new BigInteger[n]);
+    }
+
+    /**
+     * @param directory    the directory in which to create the backing files
+     * @param elementWidth the number of bytes of each element
+     * @return the storage of the vectors in memory-mapped files
+     */
+    static VectorStorage mapped(Path directory, int elementWidth) {
+        return new VectorStorage() {
+            @Override
+            public List<BigInteger> allocate(int n) {
+                return MappedBigIntegerVector.create(directory, n, elementWidth);
+            }
+
+            @Override
+            public List<BigInteger> seal(List<BigInteger> vector) {
+                return vector instanceof MappedBigIntegerVector ? ((MappedBigIntegerVector) vector).seal() : vector;
+            }
+
+            @Override
+            public boolean isMapped() {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic
+
+import spock.lang.Specification
+
+import static ch.ge.ve.protopoc.service.support.BigIntegers.*
+import static java.math.BigInteger.ONE
+import static java.math.BigInteger.ZERO
+
+/**
+ * Tests on the arithmetic backends and their selection
+ */
+class ArithmeticBackendsTest extends Specification {
+    static final BigInteger p = new BigInteger("170141183460469231731687303715884105727") // 2^127 - 1
+
+    def "all available backends should agree with BigInteger"() {
+        given:
+        def random = new Random(42L)
+        def bases = (0..<20).collect { new BigInteger(126, random).add(TWO) }
+        def exponents = (0..<20).collect { new BigInteger(130, random).subtract(ONE.shiftLeft(129)) }
+
+        expect:
+        ArithmeticBackends.available().every { backend ->
+            (0..<20).every { i ->
+                backend.modExp(bases[i], exponents[i], p) == bases[i].modPow(exponents[i], p) &&
+                        backend.modExpPublic(bases[i], exponents[i], p) == bases[i].modPow(exponents[i], p) &&
+                        backend.modInverse(bases[i], p) == bases[i].modInverse(p)
+            } &&
+                    backend.modExp(THREE, TWO, ELEVEN) == NINE &&
+                    backend.modExp(THREE, ZERO, ELEVEN) == ONE &&
+                    backend.jacobiSymbol(BigInteger.TEN, ELEVEN) == -1 &&
+                    backend.jacobiSymbol(THREE, ELEVEN) == 1
+        }
+    }
+
+    def "byName should find the configured backend"() {
+        expect:
+        ArithmeticBackends.byName("jdk") instanceof JdkArithmeticBackend
+        ArithmeticBackends.byName("montgomery") instanceof MontgomeryArithmeticBackend
+
+        when:
+        ArithmeticBackends.byName("abacus")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "fastest should pick one of the candidate backends"() {
+        given:
+        def candidates = [new JdkArithmeticBackend(), new MontgomeryArithmeticBackend()]
+
+        expect:
+        candidates.contains(ArithmeticBackends.fastest(candidates))
+    }
+
+    def "the counting backend should record the operations"() {
+        given:
+        def counting = new CountingArithmeticBackend(new JdkArithmeticBackend())
+
+        when:
+        counting.modExp(THREE, TWO, ELEVEN)
+        counting.modExp(THREE, FOUR, ELEVEN)
+        counting.modExpPublic(THREE, FIVE, ELEVEN)
+        counting.modInverse(THREE, ELEVEN)
+        counting.multiExp([THREE, FOUR], [ONE, TWO], ELEVEN)
+        def fixedBase = counting.fixedBase(THREE, ELEVEN, FIVE)
+        def powers = [fixedBase.modExp(TWO), fixedBase.modExp(FOUR), fixedBase.modExpSecret(THREE)]
+
+        then:
+        counting.getCounts() == [
+                (CountingArithmeticBackend.Operation.MOD_EXP)         : 2L,
+                (CountingArithmeticBackend.Operation.MOD_EXP_PUBLIC)  : 1L,
+                (CountingArithmeticBackend.Operation.MOD_INVERSE)     : 1L,
+                (CountingArithmeticBackend.Operation.JACOBI_SYMBOL)   : 0L,
+                (CountingArithmeticBackend.Operation.MULTI_EXP)       : 1L,
+                (CountingArithmeticBackend.Operation.FIXED_BASE_TABLE): 1L,
+                (CountingArithmeticBackend.Operation.FIXED_BASE_EXP)  : 2L,
+                (CountingArithmeticBackend.Operation.FIXED_BASE_SECRET_EXP)  : 1L
+        ]
+        powers == [NINE, FOUR, FIVE]
+    }
+}
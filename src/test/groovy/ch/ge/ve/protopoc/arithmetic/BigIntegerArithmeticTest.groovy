@@ -0,0 +1,72 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic
+
+import spock.lang.Specification
+
+import static ch.ge.ve.protopoc.service.support.BigIntegers.*
+import static java.math.BigInteger.ONE
+import static java.math.BigInteger.ZERO
+
+/**
+ * Tests on the batch operations and the public exponentiations of {@link BigIntegerArithmetic}
+ */
+class BigIntegerArithmeticTest extends Specification {
+    static final BigInteger p = BigInteger.valueOf(167L)
+
+    def "batchModInverse should invert each value"() {
+        expect:
+        BigIntegerArithmetic.batchModInverse(values, ELEVEN) == values.collect { it.modInverse(ELEVEN) }
+
+        where:
+        values << [[], [THREE], [TWO, THREE, FOUR, FIVE, BigInteger.TEN], [BigInteger.valueOf(25L), NINE]]
+    }
+
+    def "parallelBatchModInverse should invert each value, in order"() {
+        given:
+        def values = (1..<1000).collect { BigInteger.valueOf(it % 166 + 1) }
+
+        expect:
+        BigIntegerArithmetic.parallelBatchModInverse(values, p) == values.collect { it.modInverse(p) }
+    }
+
+    def "batchModInverse should fail if a value is not invertible"() {
+        when:
+        BigIntegerArithmetic.batchModInverse([TWO, ELEVEN, THREE], ELEVEN)
+
+        then:
+        thrown(ArithmeticException)
+    }
+
+    def "modExpPublic should reduce or invert negative exponents consistently"() {
+        given:
+        def q = BigInteger.valueOf(83L)
+
+        expect:
+        BigIntegerArithmetic.modExpPublic(FOUR, exponent, p, q) == FOUR.modPow(exponent, p)
+        BigIntegerArithmetic.modExpPublic(FOUR, exponent, p) == FOUR.modPow(exponent, p)
+
+        where:
+        exponent << [ZERO, ONE, BigInteger.valueOf(82L), ONE.negate(), BigInteger.valueOf(-5L),
+                     BigInteger.valueOf(-82L), BigInteger.valueOf(-1000L)]
+    }
+}
@@ -0,0 +1,110 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic
+
+import spock.lang.Specification
+
+import static ch.ge.ve.protopoc.service.support.BigIntegers.*
+import static java.math.BigInteger.ONE
+import static java.math.BigInteger.ZERO
+
+/**
+ * Tests on the fixed-base exponentiation tables, checked against {@link BigInteger#modPow(BigInteger, BigInteger)}
+ */
+class FixedBaseExponentiationTest extends Specification {
+    static final BigInteger p = BigInteger.valueOf(167L)
+    static final BigInteger q = BigInteger.valueOf(83L)
+
+    def "modExp should match modPow for all exponents in Z_q"() {
+        given:
+        def fixedBase = new FixedBaseExponentiation(FOUR, p, q, windowSize)
+
+        expect:
+        (0..<83).every { fixedBase.modExp(BigInteger.valueOf(it)) == FOUR.modPow(BigInteger.valueOf(it), p) }
+
+        where:
+        windowSize << [1, 2, 3, 4, 6]
+    }
+
+    def "modExp should handle negative exponents and exponents beyond the table"() {
+        given:
+        def fixedBase = new FixedBaseExponentiation(FOUR, p, q)
+
+        expect:
+        fixedBase.modExp(exponent) == result
+
+        where:
+        exponent                 || result
+        BigInteger.valueOf(-1L)  || FOUR.modInverse(p)
+        BigInteger.valueOf(-82L) || FOUR
+        BigInteger.valueOf(300L) || FOUR.modPow(BigInteger.valueOf(300L), p)
+    }
+
+    def "modExpSecret should match modPow for all exponents in Z_q"() {
+        given:
+        def fixedBase = new FixedBaseExponentiation(FOUR, p, q, windowSize)
+
+        expect:
+        (0..<83).every { fixedBase.modExpSecret(BigInteger.valueOf(it)) == FOUR.modPow(BigInteger.valueOf(it), p) }
+
+        where:
+        windowSize << [1, 2, 3, 4, 6]
+    }
+
+    def "modExpSecret should match modPow for a modulus spanning several words"() {
+        given:
+        def random = new Random(42L)
+        def bigP = BigInteger.probablePrime(300, random)
+        // the whole multiplicative group, of order p - 1
+        def bigQ = bigP.subtract(ONE)
+        def base = BigInteger.valueOf(4L)
+        def fixedBase = new FixedBaseExponentiation(base, bigP, bigQ)
+
+        expect:
+        (0..<10).every {
+            def exponent = new BigInteger(bigQ.bitLength() - 1, random)
+            fixedBase.modExpSecret(exponent) == base.modPow(exponent, bigP)
+        }
+        fixedBase.modExpSecret(ZERO) == ONE
+        fixedBase.modExpSecret(ONE.negate()) == base.modInverse(bigP)
+    }
+
+    def "modExpSecret should handle negative exponents and exponents beyond the table"() {
+        given:
+        def fixedBase = new FixedBaseExponentiation(FOUR, p, q)
+
+        expect:
+        fixedBase.modExpSecret(exponent) == result
+
+        where:
+        exponent                 || result
+        BigInteger.valueOf(-1L)  || FOUR.modInverse(p)
+        BigInteger.valueOf(-82L) || FOUR
+        BigInteger.valueOf(300L) || FOUR.modPow(BigInteger.valueOf(300L), p)
+    }
+
+    def "modExpFixedBase should share tables between equal bases"() {
+        expect:
+        BigIntegerArithmetic.fixedBase(FOUR, p, q).is(BigIntegerArithmetic.fixedBase(new BigInteger("4"), p, q))
+        BigIntegerArithmetic.modExpFixedBase(THREE, TWO, ELEVEN, FIVE) == NINE
+    }
+}
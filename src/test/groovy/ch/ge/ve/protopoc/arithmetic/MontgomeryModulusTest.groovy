@@ -0,0 +1,116 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import static java.math.BigInteger.ONE
+import static java.math.BigInteger.ZERO
+
+/**
+ * Tests on the limb-based Montgomery arithmetic
+ */
+class MontgomeryModulusTest extends Specification {
+
+    def "both exponentiations should agree with BigInteger.modPow for moduli of #bitLength bits"() {
+        given:
+        def random = new Random(bitLength)
+        def modulus = new BigInteger(bitLength, random).setBit(bitLength - 1).setBit(0)
+        def montgomeryModulus = new MontgomeryModulus(modulus)
+        def bases = (0..<10).collect { new BigInteger(bitLength + 8, random) }
+        def exponents = (0..<10).collect { new BigInteger(Math.max(bitLength + 40 * (it % 3) - 20 * (it % 2), 1), random) }
+
+        expect:
+        (0..<10).every { i ->
+            def expected = bases[i].modPow(exponents[i], modulus)
+            montgomeryModulus.modExpSecret(bases[i], exponents[i]) == expected &&
+                    montgomeryModulus.modExpPublic(bases[i], exponents[i]) == expected
+        }
+        montgomeryModulus.modExpSecret(bases[0], ZERO) == ONE.mod(modulus)
+        montgomeryModulus.modExpPublic(bases[0], ZERO) == ONE.mod(modulus)
+        montgomeryModulus.modExpSecret(modulus.subtract(ONE), ONE) == modulus.subtract(ONE)
+        montgomeryModulus.modExpPublic(modulus.subtract(ONE), ONE) == modulus.subtract(ONE)
+        montgomeryModulus.modExpSecret(modulus, exponents[0]) == ZERO.modPow(exponents[0], modulus)
+
+        where:
+        bitLength << [2, 31, 32, 33, 64, 127, 521, 1024, 2048, 3072]
+    }
+
+    def "the squaring should agree with the multiplication, including the values close to the modulus"() {
+        given:
+        def random = new Random(7L)
+        def modulus = ONE.shiftLeft(1024).subtract(BigInteger.valueOf(105L)) // 2^1024 - 105, odd
+        def montgomeryModulus = new MontgomeryModulus(modulus)
+        int size = 32
+        long[] scratch = new long[2 * size + 2]
+        def rInverse = ONE.shiftLeft(1024).modInverse(modulus)
+        def values = [ZERO, ONE, modulus.subtract(ONE), modulus.subtract(BigInteger.valueOf(2L))] +
+                (0..<20).collect { new BigInteger(1024, random).mod(modulus) }
+
+        expect:
+        values.every { value ->
+            long[] a = MontgomeryModulus.toLimbs(value, size)
+            long[] squared = new long[size]
+            long[] multiplied = new long[size]
+            montgomeryModulus.square(a, squared, scratch)
+            montgomeryModulus.multiply(a, a, multiplied, scratch)
+            squared == multiplied &&
+                    MontgomeryModulus.fromLimbs(squared) == value.pow(2).multiply(rInverse).mod(modulus)
+        }
+    }
+
+    def "concurrent exponentiations should not interfere with each other"() {
+        given:
+        def random = new Random(3L)
+        def modulus = new BigInteger(1024, random).setBit(1023).setBit(0)
+        def montgomeryModulus = new MontgomeryModulus(modulus)
+        def bases = (0..<64).collect { new BigInteger(1024, random) }
+        def exponents = (0..<64).collect { new BigInteger(1024, random) }
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        def futures = (0..<64).collect { i ->
+            executor.submit({
+                i % 2 == 0 ? montgomeryModulus.modExpSecret(bases[i], exponents[i]) :
+                        montgomeryModulus.modExpPublic(bases[i], exponents[i])
+            } as Callable)
+        }
+        def results = futures*.get()
+
+        then:
+        results == (0..<64).collect { i -> bases[i].modPow(exponents[i], modulus) }
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "the modulus should be odd"() {
+        when:
+        new MontgomeryModulus(BigInteger.valueOf(10L))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,55 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.arithmetic
+
+import spock.lang.Specification
+
+/**
+ * Tests on the multi-exponentiation methods, checked against a product of {@link BigInteger#modPow(BigInteger, BigInteger)}
+ */
+class MultiExponentiationTest extends Specification {
+    static final BigInteger p = BigInteger.valueOf(167L)
+    static final BigInteger q = BigInteger.valueOf(83L)
+
+    def "multiExp should match the product of individual exponentiations"() {
+        given:
+        def random = new Random(n)
+        def bases = (0..<n).collect { BigInteger.valueOf(2 + random.nextInt(165)) }
+        def exponents = (0..<n).collect { new BigInteger(q.bitLength() + 3, random) }
+        def expected = (0..<n).inject(BigInteger.ONE) { acc, i -> acc * bases[i].modPow(exponents[i], p) % p }
+
+        expect:
+        MultiExponentiation.multiExp(bases, exponents, p) == expected
+        MultiExponentiation.parallelMultiExp(bases, exponents, p) == expected
+
+        where:
+        n << [0, 1, 5, MultiExponentiation.PIPPENGER_THRESHOLD - 1, MultiExponentiation.PIPPENGER_THRESHOLD, 1000]
+    }
+
+    def "multiExp should refuse negative exponents"() {
+        when:
+        MultiExponentiation.multiExp([BigInteger.TEN], [BigInteger.ONE.negate()], p)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
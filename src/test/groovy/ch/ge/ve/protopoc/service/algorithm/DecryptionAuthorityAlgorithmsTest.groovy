@@ -21,9 +21,10 @@
 
 package ch.ge.ve.protopoc.service.algorithm
 
+import ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic
+import ch.ge.ve.protopoc.arithmetic.JdkArithmeticBackend
 import ch.ge.ve.protopoc.service.model.*
 import ch.ge.ve.protopoc.service.support.RandomGenerator
-import spock.lang.Specification
 
 import static ch.ge.ve.protopoc.service.support.BigIntegers.*
 import static java.math.BigInteger.ONE
@@ -32,7 +33,7 @@ import static java.math.BigInteger.ZERO
 /**
  * Tests for the algorithms performed during the decryption phase
  */
-class DecryptionAuthorityAlgorithmsTest extends Specification {
+class DecryptionAuthorityAlgorithmsTest extends MembershipStubbingSpecification {
     // Primary Mocks
     GeneralAlgorithms generalAlgorithms = Mock()
     RandomGenerator randomGenerator = Mock()
@@ -53,7 +54,8 @@ class DecryptionAuthorityAlgorithmsTest extends Specification {
 
     void setup() {
         decryptionAuthorityAlgorithms = new DecryptionAuthorityAlgorithms(publicParameters, generalAlgorithms, randomGenerator)
-
+        stubVectorMembership(generalAlgorithms)
+        randomGenerator.subStream(_) >> randomGenerator
     }
 
     def "checkShuffleProofs should check the shuffles performed by the other authorities"() {
@@ -109,6 +111,47 @@ class DecryptionAuthorityAlgorithmsTest extends Specification {
         decryptionAuthorityAlgorithms.checkShuffleProofs(bold_pi, e_0, bold_E, pk, j) == true
     }
 
+    def "without LibGMP, checkShuffleProof should test the membership of the vectors probabilistically"() {
+        given: "a shuffle and its proof"
+        def e_0 = [
+                new Encryption(FIVE, ONE),
+                new Encryption(THREE, FOUR),
+                new Encryption(FIVE, NINE)
+        ]
+        def e_1 = [
+                new Encryption(ONE, FIVE),
+                new Encryption(FOUR, THREE),
+                new Encryption(ONE, FOUR)
+        ]
+        def pk = new EncryptionPublicKey(THREE, encryptionGroup)
+        def t = new ShuffleProof.T(THREE, NINE, FIVE, [THREE, FOUR], [FOUR, FOUR, FOUR])
+        def s = new ShuffleProof.S(ONE, TWO, THREE, FOUR, [TWO, FOUR, ONE], [THREE, ZERO, ONE])
+        def pi = new ShuffleProof(t, s, [NINE, THREE, THREE], [FOUR, FIVE, ONE])
+
+        and: "some mocked collaborators"
+        generalAlgorithms.getGenerators(3) >> [FOUR, THREE, FIVE]
+        generalAlgorithms.getNIZKPChallenges(3, [e_0, e_1, [NINE, THREE, THREE]] as List[], 1) >>
+                [TWO, ZERO, THREE]
+        generalAlgorithms.getNIZKPChallenge(_, _, 1) >> ZERO
+        generalAlgorithms.isMember(_) >> true
+        generalAlgorithms.isInZ_q(_ as BigInteger) >> { BigInteger it -> 0 <= it && it < encryptionGroup.q }
+
+        and: "the pure Java arithmetic backend"
+        def backend = BigIntegerArithmetic.getBackend().getDelegate()
+        BigIntegerArithmetic.setBackend(new JdkArithmeticBackend())
+
+        when:
+        def valid = decryptionAuthorityAlgorithms.checkShuffleProof(pi, e_0, e_1, pk)
+
+        then:
+        5 * generalAlgorithms.areAllMembers(_, randomGenerator, 1) >> true
+        0 * generalAlgorithms.areAllMembers(_)
+        valid
+
+        cleanup:
+        BigIntegerArithmetic.setBackend(backend)
+    }
+
     def "checkShuffleProofs should fail given an invalid proof"() {
         given: "a series of encryptions"
         def e_0 = [
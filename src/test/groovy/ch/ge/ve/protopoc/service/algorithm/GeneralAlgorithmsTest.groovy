@@ -27,10 +27,14 @@ import ch.ge.ve.protopoc.service.model.IdentificationGroup
 import ch.ge.ve.protopoc.service.support.Conversion
 import ch.ge.ve.protopoc.service.support.Hash
 import ch.ge.ve.protopoc.service.support.JacobiSymbol
+import ch.ge.ve.protopoc.service.support.RandomGenerator
 import spock.lang.Specification
 
+import java.security.SecureRandom
+
 import static ch.ge.ve.protopoc.service.support.BigIntegers.*
 import static java.math.BigInteger.ONE
+import static java.math.BigInteger.ZERO
 
 /**
  * This specification defines the expected behaviour of the general algorithms
@@ -63,6 +67,26 @@ class GeneralAlgorithmsTest extends Specification {
         ELEVEN | false
     }
 
+    def "areAllMembers"() {
+        given:
+        def randomGenerator = new RandomGenerator(new SecureRandom())
+
+        expect:
+        generalAlgorithms.areAllMembers(bold_x) == result
+        generalAlgorithms.areAllMembers(bold_x, randomGenerator, 40) == result
+
+        where:
+        bold_x                                                | result
+        []                                                    | true
+        [ONE, THREE, FOUR, FIVE, NINE]                        | true
+        [ONE, THREE, TWO, FIVE]                               | false
+        [ZERO, ONE]                                           | false
+        [NINE, ELEVEN]                                        | false
+        [FOUR, FIVE] * 1500                                   | true
+        [FOUR, FIVE] * 1500 + [BigInteger.valueOf(7L)]        | false
+        [TWO, BigInteger.valueOf(6L)] + [FOUR, FIVE] * 1500   | false
+    }
+
     def "getPrimes"() {
         given:
         jacobiSymbol.computeJacobiSymbol(THREE, ELEVEN) >> 1
@@ -0,0 +1,40 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.algorithm
+
+import spock.lang.Specification
+
+/**
+ * Base class for the tests of the algorithms checking the membership of whole vectors with a mocked
+ * {@link GeneralAlgorithms}
+ */
+abstract class MembershipStubbingSpecification extends Specification {
+    /**
+     * Answer the vector membership checks, exact or probabilistic, with the element-wise stubs of each feature
+     *
+     * @param generalAlgorithms the mocked general algorithms
+     */
+    void stubVectorMembership(GeneralAlgorithms generalAlgorithms) {
+        generalAlgorithms.areAllMembers(_) >> { args -> args[0].every { generalAlgorithms.isMember(it) } }
+        generalAlgorithms.areAllMembers(_, _, _) >> { args -> args[0].every { generalAlgorithms.isMember(it) } }
+    }
+}
@@ -23,8 +23,12 @@ package ch.ge.ve.protopoc.service.algorithm
 
 import ch.ge.ve.protopoc.arithmetic.BigIntegerArithmetic
 import ch.ge.ve.protopoc.service.model.*
+import ch.ge.ve.protopoc.service.support.MappedBigIntegerVector
 import ch.ge.ve.protopoc.service.support.RandomGenerator
-import spock.lang.Specification
+import ch.ge.ve.protopoc.service.support.SeededRandomVector
+import ch.ge.ve.protopoc.service.support.VectorStorage
+
+import java.nio.file.Files
 
 import static ch.ge.ve.protopoc.service.support.BigIntegers.*
 import static java.math.BigInteger.ONE
@@ -33,7 +37,7 @@ import static java.math.BigInteger.ZERO
 /**
  * Tests on the mixing algorithms
  */
-class MixingAuthorityAlgorithmsTest extends Specification {
+class MixingAuthorityAlgorithmsTest extends MembershipStubbingSpecification {
     def defaultAlphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_".toCharArray() as List<Character>
     EncryptionGroup encryptionGroup = new EncryptionGroup(ELEVEN, FIVE, THREE, FOUR)
     IdentificationGroup identificationGroup = new IdentificationGroup(ELEVEN, FIVE, THREE)
@@ -53,8 +57,12 @@ class MixingAuthorityAlgorithmsTest extends Specification {
     DecryptionAuthorityAlgorithms decryptionAuthorityAlgorithms
 
     void setup() {
+        randomGenerator.subStream(_) >> randomGenerator
+        // the stubbed random values are answered in order: they must be drawn sequentially
+        randomGenerator.isDeterministic() >> true
         mixingAuthorityAlgorithms = new MixingAuthorityAlgorithms(publicParameters, generalAlgorithms, voteConfirmationAuthorityAlgorithms, randomGenerator)
         decryptionAuthorityAlgorithms = new DecryptionAuthorityAlgorithms(publicParameters, generalAlgorithms, randomGenerator)
+        stubVectorMembership(generalAlgorithms)
     }
 
     def "getEncryptions should retrieve a list of valid, confirmed encryptions"() {
@@ -110,9 +118,8 @@ class MixingAuthorityAlgorithmsTest extends Specification {
         then:
         shuffle.bold_e_prime.size() == 3
         shuffle.bold_r_prime.size() == 3
-        shuffle.bold_r_prime.containsAll([ONE, TWO, FOUR]) // making the shuffle parallel made the
-        // test run order unpredictable
-        shuffle.psy == [1, 0, 2]
+        shuffle.bold_r_prime == [ONE, TWO, FOUR]
+        shuffle.psy == Permutation.of(1, 0, 2)
 
         def p = ELEVEN
         def pk = THREE
@@ -132,12 +139,78 @@ class MixingAuthorityAlgorithmsTest extends Specification {
         e_prime_2.b == (NINE * pk.modPow(r_2, p)) % p
     }
 
+    def "genShuffle should draw the re-encryption randomness from the pool"() {
+        given:
+        randomGenerator.randomIntInRange(_, _) >>> [1, 1, 2] // psy = [1, 0, 2]
+        randomGenerator.randomInZq(FIVE) >>> [ONE, TWO, FOUR]
+        def bold_e = [
+                new Encryption(FIVE, ONE),
+                new Encryption(THREE, FOUR),
+                new Encryption(FIVE, NINE)
+        ]
+        def publicKey = new EncryptionPublicKey(THREE, encryptionGroup)
+        def pool = new ReEncryptionRandomnessPool(mixingAuthorityAlgorithms, publicKey, 3)
+
+        and: "the expected preconditions checks"
+        generalAlgorithms.isMember(ONE) >> true
+        generalAlgorithms.isMember(THREE) >> true
+        generalAlgorithms.isMember(FOUR) >> true
+        generalAlgorithms.isMember(FIVE) >> true
+        generalAlgorithms.isMember(NINE) >> true
+
+        and: "a filled pool"
+        pool.start(1)
+        while (pool.size() < 3) {
+            Thread.sleep(1)
+        }
+
+        when:
+        def shuffle = mixingAuthorityAlgorithms.genShuffle(bold_e, publicKey, pool)
+
+        then:
+        shuffle.bold_r_prime == [ONE, TWO, FOUR]
+        pool.hits == 3
+        shuffle.psy == Permutation.of(1, 0, 2)
+        (0..2).every { i ->
+            def e_prime = shuffle.bold_e_prime.get(shuffle.psy.inverse().get(i))
+            def r = shuffle.bold_r_prime.get(i)
+            e_prime.a == (bold_e.get(i).a * THREE.modPow(r, ELEVEN)) % ELEVEN &&
+                    e_prime.b == (bold_e.get(i).b * THREE.modPow(r, ELEVEN)) % ELEVEN
+        }
+
+        cleanup:
+        pool.stop()
+    }
+
+    def "restrictPermutation should restrict the permutation and its commitment to the first upper_n elements"() {
+        given: "a commitment to psy = [2, 0, 3, 1], with c_psy(i) = g^r_psy(i) * h_i mod p"
+        def psy = Permutation.of(2, 0, 3, 1)
+        def bold_h = [FOUR, FIVE, NINE, THREE]
+        def bold_r = [ONE, TWO, THREE, FOUR]
+        def bold_c = (0..3).collect { j -> (THREE.modPow(bold_r[j], ELEVEN) * bold_h[psy.inverse().get(j)]) % ELEVEN }
+        def precomputation = new PrecomputedPermutation(psy, bold_h, new PermutationCommitment(bold_c, bold_r))
+
+        when:
+        def restricted = mixingAuthorityAlgorithms.restrictPermutation(precomputation, 2)
+
+        then:
+        restricted.psy == Permutation.of(1, 0)
+        restricted.bold_h == [FOUR, FIVE]
+        restricted.permutationCommitment.bold_r == [ONE, THREE]
+        restricted.permutationCommitment.bold_c == [bold_c[0], bold_c[2]]
+        (0..1).every { i ->
+            def j = restricted.psy.get(i)
+            restricted.permutationCommitment.bold_c[j] ==
+                    (THREE.modPow(restricted.permutationCommitment.bold_r[j], ELEVEN) * restricted.bold_h[i]) % ELEVEN
+        }
+    }
+
     def "genPermutation should generate a valid permutation"() {
         given:
         randomGenerator.randomIntInRange(_, _) >>> randomInts
 
         expect:
-        mixingAuthorityAlgorithms.genPermutation(n) == psy
+        mixingAuthorityAlgorithms.genPermutation(n) == Permutation.of(psy)
 
         where:
         n | randomInts   || psy
@@ -180,7 +253,7 @@ class MixingAuthorityAlgorithmsTest extends Specification {
                 new Encryption(ONE, FOUR)
         ]
         def bold_r_prime = [ONE, FOUR, TWO]
-        def psy = [1, 0, 2]
+        def psy = Permutation.of(1, 0, 2)
         def pk = new EncryptionPublicKey(THREE, encryptionGroup)
         generalAlgorithms.getGenerators(3) >> [FOUR, THREE, FIVE]
         randomGenerator.randomInZq(FIVE) >>> [
@@ -231,15 +304,15 @@ class MixingAuthorityAlgorithmsTest extends Specification {
         generalAlgorithms.isMember(FIVE) >> true
 
         when:
-        def commitment = mixingAuthorityAlgorithms.genPermutationCommitment(psy, bold_h)
+        def commitment = mixingAuthorityAlgorithms.genPermutationCommitment(Permutation.of(psy), bold_h)
 
         then:
         commitment.bold_r.containsAll(random)
-        commitment.bold_c.get(0) == BigIntegerArithmetic.modExp(THREE, commitment.bold_r.get(0), ELEVEN)
+        commitment.bold_c.get(0) == BigIntegerArithmetic.modExpSecret(THREE, commitment.bold_r.get(0), ELEVEN)
                 .multiply(bold_h.get(psy.get(0))).mod(ELEVEN)
-        commitment.bold_c.get(1) == BigIntegerArithmetic.modExp(THREE, commitment.bold_r.get(1), ELEVEN)
+        commitment.bold_c.get(1) == BigIntegerArithmetic.modExpSecret(THREE, commitment.bold_r.get(1), ELEVEN)
                 .multiply(bold_h.get(psy.get(1))).mod(ELEVEN)
-        commitment.bold_c.get(2) == BigIntegerArithmetic.modExp(THREE, commitment.bold_r.get(2), ELEVEN)
+        commitment.bold_c.get(2) == BigIntegerArithmetic.modExpSecret(THREE, commitment.bold_r.get(2), ELEVEN)
                 .multiply(bold_h.get(psy.get(2))).mod(ELEVEN)
 
         where:
@@ -263,4 +336,81 @@ class MixingAuthorityAlgorithmsTest extends Specification {
         bold_u             | bold_r            || bold_c
         [ZERO, TWO, THREE] | [FOUR, ZERO, ONE] || [FOUR, FIVE, ONE]
     }
+
+    def "genCommitmentChainParallel should generate the same chain as genCommitmentChain"() {
+        given:
+        randomGenerator.randomInZq(FIVE) >>> bold_r
+
+        and: "the expected preconditions checks"
+        generalAlgorithms.isMember(FOUR) >> true
+        generalAlgorithms.isInZ_q(_ as BigInteger) >> { BigInteger x -> 0 <= x && x < encryptionGroup.q }
+
+        expect:
+        mixingAuthorityAlgorithms.genCommitmentChainParallel(FOUR, bold_u) == new CommitmentChain(bold_c, bold_r)
+
+        where:
+        bold_u                   | bold_r                  || bold_c
+        [ZERO, TWO, THREE]       | [FOUR, ZERO, ONE]       || [FOUR, FIVE, ONE]
+        [ONE, FOUR, TWO, THREE]  | [TWO, ONE, THREE, ZERO] || [THREE, ONE, FIVE, FOUR]
+    }
+
+    def "for a fixed seed, genCommitmentChainParallel should generate the same chain as genCommitmentChain"() {
+        given: "two instances drawing from the same deterministic stream"
+        def sequentialAlgorithms = new MixingAuthorityAlgorithms(publicParameters, generalAlgorithms,
+                voteConfirmationAuthorityAlgorithms, RandomGenerator.deterministicForBenchmark(42L, "mixing"))
+        def parallelAlgorithms = new MixingAuthorityAlgorithms(publicParameters, generalAlgorithms,
+                voteConfirmationAuthorityAlgorithms, RandomGenerator.deterministicForBenchmark(42L, "mixing"))
+        def bold_u = (0..<300).collect { BigInteger.valueOf((it * 7 + 3) % 5) }
+
+        and: "the expected preconditions checks"
+        generalAlgorithms.isMember(FOUR) >> true
+        generalAlgorithms.isInZ_q(_ as BigInteger) >> { BigInteger x -> 0 <= x && x < encryptionGroup.q }
+
+        expect:
+        sequentialAlgorithms.genCommitmentChain(FOUR, bold_u) ==
+                parallelAlgorithms.genCommitmentChainParallel(FOUR, bold_u)
+    }
+
+    def "the parallel commitment chain should only be used with enough cores and a long enough chain"() {
+        expect:
+        MixingAuthorityAlgorithms.useParallelCommitmentChain(n, parallelism) == parallel
+
+        where:
+        n       | parallelism || parallel
+        100_000 | 1           || false
+        100_000 | 2           || false
+        100_000 | 32          || true
+        3       | 32          || false
+    }
+
+    def "with a mapped storage, the commitment chain should be stored in memory-mapped vectors, and its randomness regenerated from seeds"() {
+        given:
+        def directory = Files.createTempDirectory("vectors")
+        def mappedAlgorithms = new MixingAuthorityAlgorithms(publicParameters, generalAlgorithms,
+                voteConfirmationAuthorityAlgorithms, RandomGenerator.deterministicForBenchmark(42L, "mixing"),
+                VectorStorage.mapped(directory, 1))
+        def sequentialAlgorithms = new MixingAuthorityAlgorithms(publicParameters, generalAlgorithms,
+                voteConfirmationAuthorityAlgorithms, RandomGenerator.deterministicForBenchmark(42L, "mixing"),
+                VectorStorage.mapped(directory, 1))
+        def bold_u = (0..<3000).collect { BigInteger.valueOf((it * 7 + 3) % 5) }
+
+        and: "the expected preconditions checks"
+        generalAlgorithms.isMember(FOUR) >> true
+        generalAlgorithms.isInZ_q(_ as BigInteger) >> { BigInteger x -> 0 <= x && x < encryptionGroup.q }
+
+        when:
+        def chain = mappedAlgorithms.genCommitmentChainParallel(FOUR, bold_u)
+
+        then:
+        chain.bold_c instanceof MappedBigIntegerVector
+        chain.bold_r instanceof SeededRandomVector
+        (0..<3000).every { i ->
+            def c_i_minus_one = i == 0 ? FOUR : chain.bold_c[i - 1]
+            chain.bold_c[i] == THREE.modPow(chain.bold_r[i], ELEVEN).multiply(c_i_minus_one.modPow(bold_u[i], ELEVEN)).mod(ELEVEN)
+        }
+        chain == sequentialAlgorithms.genCommitmentChain(FOUR, bold_u)
+
+        cleanup:
+        directory.toFile().deleteDir()
+    }
 }
@@ -0,0 +1,96 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.algorithm
+
+import ch.ge.ve.protopoc.service.model.EncryptionGroup
+import ch.ge.ve.protopoc.service.model.EncryptionPublicKey
+import ch.ge.ve.protopoc.service.model.ReEncryptionRandomness
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import static ch.ge.ve.protopoc.service.support.BigIntegers.*
+import static java.math.BigInteger.ONE
+
+/**
+ * Tests on the background precomputation of the re-encryption randomness
+ */
+class ReEncryptionRandomnessPoolTest extends Specification {
+    EncryptionPublicKey publicKey = new EncryptionPublicKey(THREE, new EncryptionGroup(ELEVEN, FIVE, THREE, FOUR))
+    MixingAuthorityAlgorithms mixingAuthorityAlgorithms = Mock()
+
+    def "the background threads should only compute the values which fit in the pool"() {
+        given:
+        def computed = new AtomicInteger()
+        mixingAuthorityAlgorithms.genReEncryptionRandomness(publicKey) >> {
+            computed.incrementAndGet()
+            new ReEncryptionRandomness(ONE, THREE, THREE)
+        }
+        mixingAuthorityAlgorithms.genReEncryptionRandomness(publicKey, 1) >> [new ReEncryptionRandomness(TWO, NINE, NINE)]
+        def pool = new ReEncryptionRandomnessPool(mixingAuthorityAlgorithms, publicKey, 2)
+
+        when:
+        pool.start(3)
+        new PollingConditions(timeout: 5).eventually {
+            assert pool.size() == 2
+        }
+        def values = pool.take(3)
+
+        then:
+        computed.get() == 2
+        values*.r_prime == [ONE, ONE, TWO]
+        pool.hits == 2
+        pool.misses == 1
+
+        cleanup:
+        pool.stop()
+    }
+
+    def "the values should be computed on demand when the background threads fail"() {
+        given:
+        def attempts = new AtomicInteger()
+        mixingAuthorityAlgorithms.genReEncryptionRandomness(publicKey) >> {
+            attempts.incrementAndGet()
+            throw new IllegalStateException("failure")
+        }
+        mixingAuthorityAlgorithms.genReEncryptionRandomness(publicKey, 2) >>
+                [new ReEncryptionRandomness(ONE, THREE, THREE), new ReEncryptionRandomness(TWO, NINE, NINE)]
+        def pool = new ReEncryptionRandomnessPool(mixingAuthorityAlgorithms, publicKey, 2)
+
+        when:
+        pool.start(1)
+        new PollingConditions(timeout: 5).eventually {
+            assert attempts.get() == 1
+        }
+        def values = pool.take(2)
+
+        then:
+        attempts.get() == 1
+        values*.r_prime == [ONE, TWO]
+        pool.hits == 0
+        pool.misses == 2
+
+        cleanup:
+        pool.stop()
+    }
+}
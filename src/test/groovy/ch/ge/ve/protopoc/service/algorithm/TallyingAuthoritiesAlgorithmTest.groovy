@@ -25,7 +25,7 @@ import ch.ge.ve.protopoc.service.exception.NotEnoughPrimesInGroupException
 import ch.ge.ve.protopoc.service.exception.TallyingRuntimeException
 import ch.ge.ve.protopoc.service.model.*
 import ch.ge.ve.protopoc.service.simulation.SimulationConstants
-import spock.lang.Specification
+import ch.ge.ve.protopoc.service.support.RandomGenerator
 
 import static ch.ge.ve.protopoc.service.support.BigIntegers.*
 import static java.math.BigInteger.ONE
@@ -34,9 +34,10 @@ import static java.math.BigInteger.ZERO
 /**
  * Tests for the algorithms performed during the tallying phase
  */
-class TallyingAuthoritiesAlgorithmTest extends Specification {
+class TallyingAuthoritiesAlgorithmTest extends MembershipStubbingSpecification {
     // Primary Mocks
     GeneralAlgorithms generalAlgorithms = Mock()
+    RandomGenerator randomGenerator = Mock()
 
     def defaultAlphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_".toCharArray() as List<Character>
     EncryptionGroup encryptionGroup = new EncryptionGroup(ELEVEN, FIVE, THREE, FOUR)
@@ -53,7 +54,8 @@ class TallyingAuthoritiesAlgorithmTest extends Specification {
     TallyingAuthoritiesAlgorithm tallyingAuthoritiesAlgorithm
 
     void setup() {
-        tallyingAuthoritiesAlgorithm = new TallyingAuthoritiesAlgorithm(publicParameters, generalAlgorithms)
+        tallyingAuthoritiesAlgorithm = new TallyingAuthoritiesAlgorithm(publicParameters, generalAlgorithms, randomGenerator)
+        stubVectorMembership(generalAlgorithms)
     }
 
     def "checkDecryptionProofs should validate the proofs for all authorities"() {
@@ -86,6 +88,69 @@ class TallyingAuthoritiesAlgorithmTest extends Specification {
         tallyingAuthoritiesAlgorithm.checkDecryptionProofs(bold_pi_prime, bold_pk, bold_e, bold_B_prime)
     }
 
+    def "checkDecryptionProofs in batch mode should validate the proofs for all authorities"() {
+        given: "Some input data"
+        def bold_pi_prime = [
+                new DecryptionProof([NINE, THREE, NINE, FIVE, FOUR], ZERO),
+                new DecryptionProof([FOUR, NINE, FOUR, THREE, FIVE], ONE)
+        ]
+        def bold_pk = [FIVE, THREE]
+        def bold_e = [
+                new Encryption(ONE, FIVE),
+                new Encryption(NINE, THREE),
+                new Encryption(FOUR, FOUR),
+                new Encryption(FOUR, NINE)
+        ]
+        def bold_B_prime = [
+                [FOUR, FIVE, NINE, THREE],
+                [FIVE, THREE, FOUR, NINE]
+        ]
+        generalAlgorithms.getNIZKPChallenge(*_) >>> [ONE, TWO]
+        randomGenerator.randomBigInteger(TWO) >>> [ONE, ZERO, ONE, ONE, ONE, ONE, ZERO, ONE]
+        and: "the expected preconditions checks"
+        generalAlgorithms.isMember(ONE) >> true
+        generalAlgorithms.isMember(THREE) >> true
+        generalAlgorithms.isMember(FOUR) >> true
+        generalAlgorithms.isMember(FIVE) >> true
+        generalAlgorithms.isMember(NINE) >> true
+        generalAlgorithms.isInZ_q(_ as BigInteger) >> { BigInteger x -> 0 <= x && x < encryptionGroup.q }
+
+        expect: "the decryption proofs check to succeed"
+        tallyingAuthoritiesAlgorithm.checkDecryptionProofs(bold_pi_prime, bold_pk, bold_e, bold_B_prime, true)
+    }
+
+    def "checkDecryptionProofs in batch mode should reject an invalid proof"() {
+        given: "Some input data, with an invalid partial decryption"
+        def bold_pi_prime = [new DecryptionProof([NINE, THREE, NINE, FIVE, FOUR], ZERO)]
+        def bold_pk = [FIVE]
+        def bold_e = [
+                new Encryption(ONE, FIVE),
+                new Encryption(NINE, THREE),
+                new Encryption(FOUR, FOUR),
+                new Encryption(FOUR, NINE)
+        ]
+        def bold_B_prime = [[FOUR, FIVE, NINE, NINE]]
+        def otherPublicParameters = new PublicParameters(
+                securityParameters, encryptionGroup, identificationGroup, primeField,
+                FIVE, defaultAlphabet, FIVE, defaultAlphabet,
+                defaultAlphabet, 2, defaultAlphabet, 2, 1, 5
+        )
+        def otherTallyingAuthoritiesAlgorithm = new TallyingAuthoritiesAlgorithm(otherPublicParameters,
+                generalAlgorithms, randomGenerator)
+        generalAlgorithms.getNIZKPChallenge(*_) >> ONE
+        randomGenerator.randomBigInteger(TWO) >> ONE
+        and: "the expected preconditions checks"
+        generalAlgorithms.isMember(ONE) >> true
+        generalAlgorithms.isMember(THREE) >> true
+        generalAlgorithms.isMember(FOUR) >> true
+        generalAlgorithms.isMember(FIVE) >> true
+        generalAlgorithms.isMember(NINE) >> true
+        generalAlgorithms.isInZ_q(_ as BigInteger) >> { BigInteger x -> 0 <= x && x < encryptionGroup.q }
+
+        expect: "the decryption proofs check to fail"
+        !otherTallyingAuthoritiesAlgorithm.checkDecryptionProofs(bold_pi_prime, bold_pk, bold_e, bold_B_prime, true)
+    }
+
     def "checkDecryptionProof should correctly validate an authority's partial decryption proof"() {
         given: "Some input data"
         def pi_prime = new DecryptionProof([NINE, THREE, NINE, FIVE, FOUR], ZERO)
@@ -144,7 +209,7 @@ class TallyingAuthoritiesAlgorithmTest extends Specification {
                 defaultAlphabet, 2, defaultAlphabet, 2, 4, 5
         )
         def otherTallyingAuthoritiesAlgorithm = new TallyingAuthoritiesAlgorithm(otherPublicParameters,
-                generalAlgorithms)
+                generalAlgorithms, randomGenerator)
 
         and: "Some primes"
         // The primes in G_83 : [2, 3, 7, 11, 19, 29, 31, 47, 61, 89, 97, 107, 127, 137, 157]
@@ -69,6 +69,7 @@ class VoteCastingAuthorityAlgorithmsTest extends Specification {
         voter0.addDomainsOfInfluence(domainOfInfluence)
         voter1.addDomainsOfInfluence(domainOfInfluence)
 
+        randomGenerator.subStream(_) >> randomGenerator
         voteCastingAuthority = new VoteCastingAuthorityAlgorithms(publicParameters, electionSet, generalAlgorithms, randomGenerator, hash)
     }
 
@@ -159,6 +160,34 @@ class VoteCastingAuthorityAlgorithmsTest extends Specification {
         [FIVE, FOUR, THREE] | [THREE, NINE, THREE] | ONE   | NINE | THREE | FOUR || false
     }
 
+    def "checkBallotProofs should isolate the invalid ballot proofs"() {
+        given: "a fixed encryption key and challenge"
+        def encryptionKey = new EncryptionPublicKey(THREE, encryptionGroup)
+        generalAlgorithms.getNIZKPChallenge(*_) >> FOUR
+        randomGenerator.randomBigInteger(TWO) >> ONE
+
+        and: "the expected preconditions checks"
+        generalAlgorithms.isMember(THREE) >> true
+        generalAlgorithms.isMember(FOUR) >> true
+        generalAlgorithms.isMember(NINE) >> true
+        generalAlgorithms.isMember_G_q_hat(ONE) >> true
+        generalAlgorithms.isMember_G_q_hat(FIVE) >> true
+        generalAlgorithms.isMember_G_q_hat(NINE) >> true
+        generalAlgorithms.isInZ_q(_ as BigInteger) >> { BigInteger x -> 0 <= x && x < encryptionGroup.q }
+        generalAlgorithms.isInZ_q_hat(_ as BigInteger) >> { BigInteger x -> 0 <= x && x < identificationGroup.q_hat }
+
+        and: "a valid proof (values from genBallotProof), an invalid one and another valid one"
+        def bold_pi = [
+                new NonInteractiveZKP([FIVE, FOUR, THREE], [THREE, NINE, ZERO]),
+                new NonInteractiveZKP([NINE, FOUR, THREE], [THREE, NINE, ZERO]),
+                new NonInteractiveZKP([FIVE, FOUR, THREE], [THREE, NINE, ZERO])
+        ]
+
+        expect: "the invalid proof to be identified"
+        voteCastingAuthority.checkBallotProofs(bold_pi, [ONE] * 3, [NINE] * 3, [THREE] * 3, encryptionKey) ==
+                [true, false, true]
+    }
+
     def "genResponse should generate a valid response to an OT query"() {
         given: "a fixed encryption key and challenge"
         def encryptionKey = new EncryptionPublicKey(THREE, encryptionGroup)
@@ -25,6 +25,7 @@ import ch.ge.ve.protopoc.service.exception.BallotNotFoundRuntimeException
 import ch.ge.ve.protopoc.service.model.*
 import ch.ge.ve.protopoc.service.model.polynomial.Point
 import ch.ge.ve.protopoc.service.support.Hash
+import ch.ge.ve.protopoc.service.support.RandomGenerator
 import spock.lang.Specification
 
 import static ch.ge.ve.protopoc.service.support.BigIntegers.*
@@ -48,6 +49,7 @@ class VoteConfirmationAuthorityAlgorithmsTest extends Specification {
 
     GeneralAlgorithms generalAlgorithms = Mock()
     VoteCastingAuthorityAlgorithms voteCastingAuthority = Mock()
+    RandomGenerator randomGenerator = Mock()
     Hash hash = Mock()
 
     VoteConfirmationAuthorityAlgorithms voteConfirmationAuthority
@@ -55,7 +57,8 @@ class VoteConfirmationAuthorityAlgorithmsTest extends Specification {
 
     void setup() {
         voteConfirmationAuthority =
-                new VoteConfirmationAuthorityAlgorithms(publicParameters, generalAlgorithms, voteCastingAuthority, hash)
+                new VoteConfirmationAuthorityAlgorithms(publicParameters, generalAlgorithms, voteCastingAuthority,
+                        randomGenerator, hash)
     }
 
     def "checkConfirmation should verify if a given confirmation is valid"() {
@@ -138,6 +141,23 @@ class VoteConfirmationAuthorityAlgorithmsTest extends Specification {
         [FIVE] | [THREE] | THREE || false
     }
 
+    def "checkConfirmationProofs should isolate the invalid confirmation proofs"() {
+        given:
+        generalAlgorithms.getNIZKPChallenge(*_) >> ONE
+        randomGenerator.randomBigInteger(TWO) >> ONE
+
+        and: "the expected preconditions checks"
+        generalAlgorithms.isMember_G_q_hat(_ as BigInteger) >> true
+        generalAlgorithms.isInZ_q_hat(_ as BigInteger) >> { BigInteger x -> 0 <= x && x < identificationGroup.q_hat }
+
+        expect:
+        voteConfirmationAuthority.checkConfirmationProofs(
+                [new NonInteractiveZKP([FIVE], [THREE]),
+                 new NonInteractiveZKP([FOUR], [THREE]),
+                 new NonInteractiveZKP([FIVE], [THREE])],
+                [ONE, ONE, ONE]) == [true, false, true]
+    }
+
     def "getFinalization should hash the correct points and return the adequate values"() {
         given: "a set of parameters"
         def pointMatrix = [
@@ -0,0 +1,114 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.model
+
+import spock.lang.Specification
+
+/**
+ * Tests on the validation and the operations of {@link Permutation}
+ */
+class PermutationTest extends Specification {
+
+    def "of should reject the values which are not a permutation"() {
+        when:
+        Permutation.of(values as int[])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        values << [
+                [0, 0],       // duplicate
+                [1, 2, 0, 1], // duplicate, one value missing
+                [0, 2],       // out of range (too large)
+                [-1, 0],      // out of range (negative)
+                [3, 0, 1]     // out of range (equal to the size)
+        ]
+    }
+
+    def "of should accept a list of indices and copy the given values"() {
+        given:
+        int[] values = [2, 0, 1]
+
+        when:
+        def psy = Permutation.of(values)
+        values[0] = 0
+
+        then:
+        psy == Permutation.of([2, 0, 1])
+        psy.size() == 3
+        psy.get(0) == 2
+        psy.asList() == [2, 0, 1]
+    }
+
+    def "the empty permutation should be valid"() {
+        expect:
+        Permutation.of().size() == 0
+        Permutation.of().apply([]) == []
+    }
+
+    def "inverse should undo the permutation"() {
+        given:
+        def psy = Permutation.of(values as int[])
+
+        expect:
+        psy.inverse().asList() == inverse
+        psy.inverse().inverse() == psy
+        psy.inverse().apply(psy.apply(["a", "b", "c", "d"])) == ["a", "b", "c", "d"]
+
+        where:
+        values       || inverse
+        [0, 1, 2, 3] || [0, 1, 2, 3]
+        [1, 2, 3, 0] || [3, 0, 1, 2]
+        [2, 0, 3, 1] || [1, 3, 0, 2]
+    }
+
+    def "apply should pick the elements at the permuted indices"() {
+        expect:
+        Permutation.of(2, 0, 1).apply(["a", "b", "c"]) == ["c", "a", "b"]
+    }
+
+    def "apply should reject a list whose size differs from the permutation"() {
+        when:
+        Permutation.of(1, 0).apply(["a", "b", "c"])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "the permuted list and the list of indices should be read-only"() {
+        given:
+        def psy = Permutation.of(1, 0)
+
+        when:
+        psy.apply(["a", "b"]).set(0, "c")
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        psy.asList().set(0, 0)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+}
@@ -0,0 +1,110 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.protocol
+
+import ch.ge.ve.protopoc.service.algorithm.*
+import ch.ge.ve.protopoc.service.model.*
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.security.KeyPair
+import java.util.concurrent.atomic.AtomicInteger
+
+import static ch.ge.ve.protopoc.service.support.BigIntegers.*
+import static java.math.BigInteger.ONE
+
+/**
+ * Tests on the authorities' side of the protocol
+ */
+class DefaultAuthorityTest extends Specification {
+    def defaultAlphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_".toCharArray() as List<Character>
+    EncryptionGroup encryptionGroup = new EncryptionGroup(ELEVEN, FIVE, THREE, FOUR)
+    IdentificationGroup identificationGroup = new IdentificationGroup(ELEVEN, FIVE, THREE)
+    SecurityParameters securityParameters = new SecurityParameters(1, 1, 2, 0.99)
+    PrimeField primeField = new PrimeField(ELEVEN)
+    PublicParameters publicParameters = new PublicParameters(
+            securityParameters, encryptionGroup, identificationGroup, primeField,
+            FIVE, defaultAlphabet, FIVE, defaultAlphabet,
+            defaultAlphabet, 2, defaultAlphabet, 2, 2, 3
+    )
+    EncryptionPublicKey myPublicKey = new EncryptionPublicKey(FOUR, encryptionGroup)
+    EncryptionPublicKey otherPublicKey = new EncryptionPublicKey(NINE, encryptionGroup)
+    EncryptionPublicKey systemPublicKey = new EncryptionPublicKey(THREE, encryptionGroup)
+
+    BulletinBoardService bulletinBoardService = Mock()
+    KeyEstablishmentAlgorithms keyEstablishmentAlgorithms = Mock()
+    ElectionPreparationAlgorithms electionPreparationAlgorithms = Mock()
+    VoteCastingAuthorityAlgorithms voteCastingAuthorityAlgorithms = Mock()
+    VoteConfirmationAuthorityAlgorithms voteConfirmationAuthorityAlgorithms = Mock()
+    MixingAuthorityAlgorithms mixingAuthorityAlgorithms = Mock()
+    DecryptionAuthorityAlgorithms decryptionAuthorityAlgorithms = Mock()
+
+    DefaultAuthority authority
+
+    void setup() {
+        authority = new DefaultAuthority(0, bulletinBoardService, keyEstablishmentAlgorithms,
+                electionPreparationAlgorithms, voteCastingAuthorityAlgorithms, voteConfirmationAuthorityAlgorithms,
+                mixingAuthorityAlgorithms, decryptionAuthorityAlgorithms)
+
+        bulletinBoardService.getPublicParameters() >> publicParameters
+        bulletinBoardService.getPublicKeyParts() >> [myPublicKey, otherPublicKey]
+        bulletinBoardService.getElectionSet() >> new ElectionSet([new Voter(), new Voter()], [], [])
+        keyEstablishmentAlgorithms.generateKeyPair(encryptionGroup) >>
+                new KeyPair(myPublicKey, new EncryptionPrivateKey(TWO, encryptionGroup))
+        keyEstablishmentAlgorithms.getPublicKey([myPublicKey, otherPublicKey]) >> systemPublicKey
+        electionPreparationAlgorithms.genElectorateData(_) >> new ElectorateData([], [], [], [])
+    }
+
+    def "the shuffle should use the re-encryption randomness precomputed once the key and the electorate are known"() {
+        given:
+        def encryptions = [new Encryption(FIVE, NINE), new Encryption(THREE, FOUR)]
+        def shuffle = new Shuffle(encryptions.reverse(), [ONE, TWO], Permutation.of(1, 0))
+        ReEncryptionRandomnessPool usedPool = null
+        def precomputed = new AtomicInteger()
+        mixingAuthorityAlgorithms.genReEncryptionRandomness(systemPublicKey) >> {
+            precomputed.incrementAndGet()
+            new ReEncryptionRandomness(TWO, NINE, NINE)
+        }
+        mixingAuthorityAlgorithms.getEncryptions(_, _) >> encryptions
+
+        when: "the electorate data is generated after the public key is built, as in the simulation"
+        authority.generateKeys()
+        authority.buildPublicKey()
+        authority.generateElectorateData()
+
+        and: "the pool had time to precompute the randomness of both encryptions"
+        new PollingConditions(timeout: 5).eventually { assert precomputed.get() >= 2 }
+        authority.startMixing()
+
+        then:
+        1 * mixingAuthorityAlgorithms.genShuffle(encryptions, systemPublicKey, _ as ReEncryptionRandomnessPool, null) >> {
+            args ->
+                usedPool = args[2]
+                usedPool.take(2)
+                shuffle
+        }
+        1 * bulletinBoardService.publishShuffle(0, shuffle.bold_e_prime)
+        usedPool.publicKey == systemPublicKey
+        usedPool.hits == 2
+        usedPool.misses == 0
+    }
+}
@@ -0,0 +1,120 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.protocol
+
+import ch.ge.ve.protopoc.service.model.*
+import ch.ge.ve.protopoc.service.support.Hash
+import spock.lang.Specification
+
+import static ch.ge.ve.protopoc.service.support.BigIntegers.*
+import static java.math.BigInteger.ONE
+import static java.math.BigInteger.ZERO
+
+/**
+ * Tests on the publication of the shuffles and their proofs on the bulletin board
+ */
+class DefaultBulletinBoardTest extends Specification {
+    def defaultAlphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_".toCharArray() as List<Character>
+    EncryptionGroup encryptionGroup = new EncryptionGroup(ELEVEN, FIVE, THREE, FOUR)
+    IdentificationGroup identificationGroup = new IdentificationGroup(ELEVEN, FIVE, THREE)
+    SecurityParameters securityParameters = new SecurityParameters(1, 1, 2, 0.99)
+    PrimeField primeField = new PrimeField(ELEVEN)
+    PublicParameters publicParameters = new PublicParameters(
+            securityParameters, encryptionGroup, identificationGroup, primeField,
+            FIVE, defaultAlphabet, FIVE, defaultAlphabet,
+            defaultAlphabet, 2, defaultAlphabet, 2, 2, 3
+    )
+    def shuffle = [new Encryption(FIVE, NINE), new Encryption(THREE, FOUR)]
+    def proof = new ShuffleProof(
+            new ShuffleProof.T(THREE, NINE, FIVE, [THREE, FOUR], [FOUR, FOUR]),
+            new ShuffleProof.S(ONE, TWO, THREE, FOUR, [TWO, FOUR], [THREE, ZERO]),
+            [FOUR, FIVE], [THREE, NINE])
+
+    DefaultBulletinBoard bulletinBoard = new DefaultBulletinBoard()
+
+    void setup() {
+        bulletinBoard.publishPublicParameters(publicParameters)
+    }
+
+    def "a shuffle proof should be rejected before its shuffle has been published"() {
+        when:
+        bulletinBoard.publishShuffleProof(0, proof)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "a shuffle proof may not be published twice"() {
+        given:
+        bulletinBoard.publishShuffle(0, shuffle)
+        bulletinBoard.publishShuffleProof(0, proof)
+
+        when:
+        bulletinBoard.publishShuffleProof(0, proof)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "the shuffles and proofs should only be available once every proof has been published"() {
+        given:
+        bulletinBoard.publishShuffle(0, shuffle)
+        bulletinBoard.publishShuffle(1, shuffle.reverse())
+        bulletinBoard.publishShuffleProof(1, proof)
+
+        when:
+        bulletinBoard.getShufflesAndProofs()
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        bulletinBoard.publishShuffleProof(0, proof)
+        def shufflesAndProofs = bulletinBoard.getShufflesAndProofs()
+
+        then:
+        shufflesAndProofs.shuffles == [shuffle, shuffle.reverse()]
+        shufflesAndProofs.shuffleProofs == [proof, proof]
+    }
+
+    def "the published shuffles and proof vectors should be memoized, and shared by every reader"() {
+        given:
+        bulletinBoard.publishShuffle(0, shuffle)
+        bulletinBoard.publishShuffle(1, shuffle.reverse())
+        bulletinBoard.publishShuffleProof(0, proof)
+        bulletinBoard.publishShuffleProof(1, proof)
+
+        when:
+        def first = bulletinBoard.getShufflesAndProofs()
+        def second = bulletinBoard.getShufflesAndProofs()
+
+        then:
+        first.shuffles.every { Hash.isMemoized(it) }
+        first.shuffleProofs.every {
+            Hash.isMemoized(it.bold_c) && Hash.isMemoized(it.bold_c_hat) && Hash.isMemoized(it.t.t_hat)
+        }
+        first.shuffles[0].is(second.shuffles[0])
+        first.shuffleProofs[0].bold_c.is(second.shuffleProofs[0].bold_c)
+        bulletinBoard.getPreviousShuffle(0).is(first.shuffles[0])
+        first.shuffleProofs == [proof, proof]
+    }
+}
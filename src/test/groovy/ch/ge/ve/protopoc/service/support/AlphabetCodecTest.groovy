@@ -0,0 +1,103 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support
+
+import spock.lang.Specification
+
+/**
+ * Tests for the {@link AlphabetCodec}, against the textbook definitions of Algorithms 4.6 and 4.7
+ */
+class AlphabetCodecTest extends Specification {
+    static final List<Character> BASE_64 = ((('A'..'Z') + ('a'..'z') + ('0'..'9')).collect { it as char } +
+            ['=', '/']*.charAt(0)) as List<Character>
+    static final List<Character> BASE_62 = BASE_64.subList(0, 62)
+    static final List<Character> HEX = ('0123456789ABCDEF'.toCharArray() as List<Character>)
+    static final List<Character> DECIMAL = ('0123456789'.toCharArray() as List<Character>)
+    static final List<Character> BINARY = ['0' as char, '1' as char]
+
+    private static String referenceToString(BigInteger x, int k, List<Character> upper_a) {
+        def n = BigInteger.valueOf(upper_a.size())
+        def sb = new StringBuilder()
+        def current = x
+        k.times {
+            sb.insert(0, upper_a.get(current.mod(n).intValue()))
+            current = current.divide(n)
+        }
+        return sb.toString()
+    }
+
+    def "toString and toInteger should match the definitions of the specification"() {
+        given:
+        def codec = new AlphabetCodec(upper_a)
+        def random = new Random(42L)
+        def n = BigInteger.valueOf(upper_a.size())
+
+        expect:
+        [0, 1, 7, 63, 64, 65, 100, 521].every { bits ->
+            def x = new BigInteger(bits, random)
+            int k = (0..600).find { n.pow(it) > x }
+            [k, k + 3].every {
+                def s = codec.toString(x, it)
+                s == referenceToString(x, it, upper_a) && codec.toInteger(s) == x
+            }
+        }
+
+        where:
+        upper_a << [BASE_64, BASE_62, HEX, DECIMAL, BINARY]
+    }
+
+    def "toString(byte[]) should use ceil(8 * |B| / log2(|A|)) characters"() {
+        given:
+        def codec = new AlphabetCodec(upper_a)
+        def bytes = [0x01, 0xFF, 0x7A, 0x00, 0x33] as byte[]
+
+        expect:
+        codec.toString(bytes).length() == k
+        codec.toInteger(codec.toString(bytes)) == new BigInteger(1, bytes)
+
+        where:
+        upper_a || k
+        BASE_64 || 7
+        BASE_62 || 7
+        HEX     || 10
+        BINARY  || 40
+    }
+
+    def "toString should refuse values which do not fit in k characters"() {
+        when:
+        new AlphabetCodec(BASE_64).toString(BigInteger.valueOf(4097), 2)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "toInteger should refuse characters outside of the alphabet"() {
+        when:
+        new AlphabetCodec(HEX).toInteger(s)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        s << ["12G", "é", "a"]
+    }
+}
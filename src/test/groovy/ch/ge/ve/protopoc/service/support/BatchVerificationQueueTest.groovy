@@ -0,0 +1,104 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.Function
+
+/**
+ * Tests on the gathering of concurrent verifications into batches
+ */
+class BatchVerificationQueueTest extends Specification {
+    def "a single item should be verified on its own"() {
+        given:
+        def batches = []
+        def queue = new BatchVerificationQueue<Integer>({ List<Integer> items ->
+            batches << items
+            items.collect { it % 2 == 0 }
+        } as Function, 4)
+
+        expect:
+        queue.verify(2)
+        !queue.verify(3)
+        batches == [[2], [3]]
+    }
+
+    def "the items submitted concurrently should be verified in batches, each caller getting its own result"() {
+        given:
+        def batchSizes = Collections.synchronizedList([])
+        def firstBatchStarted = new CountDownLatch(1)
+        def othersQueued = new CountDownLatch(1)
+        def queue = new BatchVerificationQueue<Integer>({ List<Integer> items ->
+            batchSizes << items.size()
+            firstBatchStarted.countDown()
+            // hold the first batch until the other items have been queued
+            othersQueued.await(10, TimeUnit.SECONDS)
+            items.collect { it % 2 == 0 }
+        } as Function, 4)
+        def executor = Executors.newFixedThreadPool(7)
+
+        when:
+        def first = executor.submit({ queue.verify(0) } as Callable)
+        firstBatchStarted.await(10, TimeUnit.SECONDS)
+        def others = (1..6).collect { i -> executor.submit({ queue.verify(i) } as Callable) }
+        Thread.sleep(200)
+        othersQueued.countDown()
+        def results = [first.get()] + others*.get()
+        executor.shutdown()
+
+        then:
+        results == (0..6).collect { it % 2 == 0 }
+        batchSizes.sum() == 7
+        batchSizes[0] == 1
+        batchSizes.max() == 4
+    }
+
+    def "an item making the batch fail should only fail its own verification"() {
+        given:
+        def queue = new BatchVerificationQueue<Integer>({ List<Integer> items ->
+            if (items.contains(-1)) {
+                throw new IllegalArgumentException("malformed item")
+            }
+            items.collect { it % 2 == 0 }
+        } as Function, 4)
+        def executor = Executors.newFixedThreadPool(3)
+
+        when:
+        def futures = [2, -1, 4].collect { i -> executor.submit({ queue.verify(i) } as Callable) }
+        def valid = [futures[0].get(), futures[2].get()]
+        futures[1].get()
+
+        then:
+        valid == [true, true]
+        def e = thrown(ExecutionException)
+        e.cause instanceof IllegalArgumentException
+
+        cleanup:
+        executor.shutdown()
+    }
+}
@@ -23,6 +23,8 @@ package ch.ge.ve.protopoc.service.support
 
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+
 /**
  * This test class holds the tests for the conversion algorithms defined in {@link Conversion}
  */
@@ -52,6 +54,23 @@ class ConversionTest extends Specification {
 
     }
 
+    def "toByteArray(BigInteger, int, ByteBuffer)"() {
+        given:
+        def random = new Random(2048L)
+        def values = (0..<20).collect { new BigInteger(2048 - it, random) }
+        def buffer = ByteBuffer.allocate(300 * values.size())
+
+        when:
+        values.each { conversion.toByteArray(it, 257, buffer) }
+
+        then:
+        buffer.position() == 257 * values.size()
+        values.withIndex().every { x, i ->
+            Arrays.copyOfRange(buffer.array(), 257 * i, 257 * (i + 1)) == conversion.toByteArray(x, 257) &&
+                    conversion.toByteArray(x, 257) == ([0] * 257 + x.toByteArray().toList()).takeRight(257) as byte[]
+        }
+    }
+
     def "toByteArray(BigInteger)"() {
         expect:
         conversion.toByteArray(x) == (bytes as byte[])
@@ -78,6 +97,19 @@ class ConversionTest extends Specification {
               BigInteger.valueOf(12_938_765_425_438L)]
     }
 
+    def "toInteger should read the bytes as an unsigned value"() {
+        expect:
+        conversion.toInteger(bytes as byte[]) == x
+
+        where:
+        bytes              || x
+        []                 || BigInteger.ZERO
+        [0x00, 0x00]       || BigInteger.ZERO
+        [0xFF]             || BigInteger.valueOf(255)
+        [0xFF, 0x00]       || BigInteger.valueOf(65_280)
+        [0x00, 0x80, 0x01] || BigInteger.valueOf(32_769)
+    }
+
     def "toByteArray(String)"() {
         expect:
         conversion.toByteArray(s) == (bytes as byte[])
@@ -90,7 +122,7 @@ class ConversionTest extends Specification {
 
     def "toString(BigInteger, int, List<Character>)"() {
         expect:
-        conversion.toString(x, k, A as List<Character>) == s
+        conversion.toString(x, k, A.collect { it as Character }) == s
 
         where:
         x                          | k | A        || s
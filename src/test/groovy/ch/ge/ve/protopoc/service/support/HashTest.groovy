@@ -21,11 +21,14 @@
 
 package ch.ge.ve.protopoc.service.support
 
+import ch.ge.ve.protopoc.service.model.Encryption
 import ch.ge.ve.protopoc.service.model.SecurityParameters
+import ch.ge.ve.protopoc.service.model.polynomial.Point
 import spock.lang.Specification
 
 import javax.xml.bind.DatatypeConverter
 import java.nio.charset.Charset
+import java.security.MessageDigest
 
 /**
  * This test class holds the tests for the hashing functions defined in {@link Hash}
@@ -63,4 +66,85 @@ class HashTest extends Specification {
         ["test", BigInteger.valueOf(42L), [0xCC, 0xFF] as byte[]] as Object[]               | [63, -98, 73, -96, 58, 68, 104, -27, -28, -118, 71, -7, 76, -52, -121, 103, -33, -108, -4, 126, 106, 58, 15, -57, -39, 103, 111, 0, 38, 93, 29, 2, 115, -81, -84, -30, -121, -15, -95, -120, 84, 55, 100, 83, 80, 12, -113, -49, 69, 85, -92, 33, 85, -24, -5, -9, 93, -71, -30, -66, 116, -97, -84, 112] as byte[]
         ["test", [BigInteger.valueOf(42L)] as Object[], [0xCC, 0xFF] as byte[]] as Object[] | [63, -98, 73, -96, 58, 68, 104, -27, -28, -118, 71, -7, 76, -52, -121, 103, -33, -108, -4, 126, 106, 58, 15, -57, -39, 103, 111, 0, 38, 93, 29, 2, 115, -81, -84, -30, -121, -15, -95, -120, 84, 55, 100, 83, 80, 12, -113, -49, 69, 85, -92, 33, 85, -24, -5, -9, 93, -71, -30, -66, 116, -97, -84, 112] as byte[]
     }
+
+    def "recHash_L should match a direct implementation of the specification"() {
+        given:
+        conversion.toByteArray(_ as String) >> { args -> (args[0] as String).getBytes(charset) }
+        conversion.toByteArray(_ as BigInteger) >> { args -> (args[0] as BigInteger).toByteArray() }
+
+        expect:
+        hash.recHash_L(object) == referenceRecHash(object)
+        hash.recHash_L(object, "test") == referenceRecHash([object, "test"] as Object[])
+
+        where:
+        object << [
+                [] as Object[],
+                [BigInteger.ONE] as Object[],
+                [BigInteger.ONE, [BigInteger.TEN] as Object[], []],
+                new Encryption(BigInteger.valueOf(3L), BigInteger.valueOf(5L)),
+                (0..<50).collect { new Point(BigInteger.valueOf(it), BigInteger.valueOf(2 * it)) },
+                [[BigInteger.ONE, "a"], [[[BigInteger.TEN]]], new Encryption(BigInteger.ONE, BigInteger.ZERO)]
+        ]
+    }
+
+    def "recHash_L should give the same result when hashing vectors in parallel"() {
+        given:
+        conversion.toByteArray(_ as BigInteger) >> { args -> (args[0] as BigInteger).toByteArray() }
+        def parallelHash = new Hash("SHA-512", "SUN", securityParameters, conversion, 2)
+        def bold_e = (0..<1000).collect { new Encryption(BigInteger.valueOf(it), BigInteger.valueOf(it + 1)) }
+        def y = [bold_e, bold_e.collect { it.getA() } as Object[], BigInteger.TEN] as Object[]
+
+        expect:
+        parallelHash.recHash_L(y) == hash.recHash_L(y)
+        parallelHash.recHash_L(bold_e) == referenceRecHash(bold_e)
+    }
+
+    def "recHash_L should hash a memoized vector only once"() {
+        given:
+        def bold_e = (0..<20).collect { new Encryption(BigInteger.valueOf(it), BigInteger.valueOf(it + 1)) }
+        def memoized_bold_e = Hash.memoized(bold_e)
+
+        when:
+        def first = hash.recHash_L(memoized_bold_e)
+        def second = hash.recHash_L([memoized_bold_e, BigInteger.TEN] as Object[])
+
+        then:
+        41 * conversion.toByteArray(_ as BigInteger) >> { args -> (args[0] as BigInteger).toByteArray() }
+        first == referenceRecHash(bold_e)
+        second == referenceRecHash([bold_e, BigInteger.TEN] as Object[])
+        memoized_bold_e == bold_e
+    }
+
+    def "only the vectors of immutable elements may be memoized"() {
+        when:
+        Hash.memoized([BigInteger.ONE, "test".getBytes(charset)])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        Hash.memoized([BigInteger.ONE]).add(BigInteger.TEN)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    byte[] referenceRecHash(Object object) {
+        def messageDigest = MessageDigest.getInstance("SHA-512", "SUN")
+        if (object instanceof String) {
+            return Arrays.copyOf(messageDigest.digest((object as String).getBytes(charset)), 64)
+        } else if (object instanceof BigInteger) {
+            return Arrays.copyOf(messageDigest.digest((object as BigInteger).toByteArray()), 64)
+        } else if (object instanceof Hash.Hashable) {
+            return referenceRecHash((object as Hash.Hashable).elementsToHash())
+        } else if (object instanceof List) {
+            return referenceRecHash((object as List).toArray())
+        }
+        def objects = object as Object[]
+        if (objects.length == 1) {
+            return referenceRecHash(objects[0])
+        }
+        objects.each { messageDigest.update(referenceRecHash(it)) }
+        return Arrays.copyOf(messageDigest.digest(), 64)
+    }
 }
@@ -51,4 +51,18 @@ class JacobiSymbolTest extends Specification {
         BigInteger.valueOf(14L) | BigInteger.valueOf(59L)            | -1
         BigInteger.valueOf(15L) | BigInteger.valueOf(59L)            | 1
     }
+
+    def "getJacobiSymbol should match Euler's criterion for a large prime"() {
+        given:
+        def p = BigInteger.ONE.shiftLeft(521).subtract(BigInteger.ONE) // Mersenne prime
+        def random = new Random(521L)
+        def values = (0..<50).collect { new BigInteger(530, random) } + [BigInteger.ZERO, p, p.shiftLeft(3)]
+
+        expect:
+        values.every { a ->
+            def euler = a.modPow(p.shiftRight(1), p)
+            def expected = euler == BigInteger.ONE ? 1 : (euler == BigInteger.ZERO ? 0 : -1)
+            jacobiSymbol.computeJacobiSymbol(a, p) == expected
+        }
+    }
 }
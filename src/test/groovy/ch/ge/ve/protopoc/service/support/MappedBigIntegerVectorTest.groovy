@@ -0,0 +1,109 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support
+
+import com.google.common.collect.ImmutableList
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static java.math.BigInteger.ONE
+import static java.math.BigInteger.ZERO
+
+/**
+ * Tests on the memory-mapped vectors
+ */
+class MappedBigIntegerVectorTest extends Specification {
+    Path directory = Files.createTempDirectory("vectors")
+
+    void cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "a new vector should hold zeros"() {
+        when:
+        def vector = MappedBigIntegerVector.create(directory, 3, 8)
+
+        then:
+        vector == [ZERO, ZERO, ZERO]
+    }
+
+    def "the backing file should be deleted once mapped"() {
+        when:
+        def vector = MappedBigIntegerVector.create(directory, 2, 8)
+        vector.set(1, ONE)
+
+        then:
+        directory.toFile().list().length == 0
+        vector == [ZERO, ONE]
+    }
+
+    def "set should store the elements at their index"() {
+        given:
+        def values = [ZERO, ONE, 255G, 256G, ONE.shiftLeft(63), ONE.shiftLeft(64).subtract(ONE)]
+        def vector = MappedBigIntegerVector.create(directory, values.size(), 8)
+
+        when:
+        values.eachWithIndex { value, i -> vector.set(values.size() - 1 - i, value) }
+
+        then:
+        vector == values.reverse()
+    }
+
+    def "set should reject elements which do not fit in the element width"() {
+        given:
+        def vector = MappedBigIntegerVector.create(directory, 1, 2)
+
+        when:
+        vector.set(0, value)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        value << [ONE.shiftLeft(16), ONE.negate()]
+    }
+
+    def "a sealed vector should be read-only, and kept as is by immutableCopyOf"() {
+        given:
+        def vector = MappedBigIntegerVector.create(directory, 2, 4)
+        vector.set(0, ONE)
+        vector.seal()
+
+        when:
+        vector.set(1, ONE)
+
+        then:
+        thrown(IllegalStateException)
+        MappedBigIntegerVector.immutableCopyOf(vector).is(vector)
+    }
+
+    def "immutableCopyOf should copy the vectors which may still change"() {
+        given:
+        def vector = MappedBigIntegerVector.create(directory, 2, 4)
+
+        expect:
+        MappedBigIntegerVector.immutableCopyOf(vector) instanceof ImmutableList
+        MappedBigIntegerVector.immutableCopyOf([ONE, ZERO]) instanceof ImmutableList
+    }
+}
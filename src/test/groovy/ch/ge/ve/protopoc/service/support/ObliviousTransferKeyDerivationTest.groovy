@@ -0,0 +1,70 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support
+
+import spock.lang.Specification
+
+import static java.math.BigInteger.ONE
+
+/**
+ * Tests for the masks of the oblivious transfer messages, defined in {@link ObliviousTransferKeyDerivation}
+ */
+class ObliviousTransferKeyDerivationTest extends Specification {
+    Hash hash = Mock()
+    BigInteger k = BigInteger.valueOf(5L)
+    ObliviousTransferKeyDerivation keyDerivation
+
+    void setup() {
+        // L_M = 3, L = 2: K = Truncate(RecHash_L(k, 1) || RecHash_L(k, 2), 3)
+        keyDerivation = new ObliviousTransferKeyDerivation(hash, 3, 2)
+        hash.recHash_L(k, ONE) >> ([0x0F, 0xF0] as byte[])
+        hash.recHash_L(k, BigInteger.valueOf(2L)) >> ([0x33, 0x44] as byte[])
+    }
+
+    def "xor should mask the message with the truncated concatenation of the hashes"() {
+        given:
+        def message = [0xFF, 0x00, 0x11] as byte[]
+
+        expect:
+        keyDerivation.xor(k, message) == ([0xF0, 0xF0, 0x22] as byte[])
+        message == ([0xFF, 0x00, 0x11] as byte[])
+    }
+
+    def "xorInPlace should replace the message by its masked value"() {
+        given:
+        def message = [0xFF, 0x00, 0x11] as byte[]
+
+        when:
+        keyDerivation.xorInPlace(k, message)
+
+        then:
+        message == ([0xF0, 0xF0, 0x22] as byte[])
+    }
+
+    def "xor should refuse messages whose length is not L_M"() {
+        when:
+        keyDerivation.xor(k, [0x00, 0x00] as byte[])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,82 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support
+
+import spock.lang.Specification
+
+import static java.math.BigInteger.ONE
+import static java.math.BigInteger.valueOf
+
+/**
+ * Tests on the parallel vector kernels
+ */
+class ParallelVectorsTest extends Specification {
+    def "parallelMap should preserve the index order"() {
+        expect:
+        ParallelVectors.parallelMap(n, { i -> valueOf(i * i) }) == (0..<n).collect { valueOf(it * it) }
+
+        where:
+        n << [0, 1, 7, 1000]
+    }
+
+    def "parallelZip should combine the elements of the same index"() {
+        expect:
+        ParallelVectors.parallelZip([1, 2, 3], ["a", "b", "c"], { i, s -> s * i }) == ["a", "bb", "ccc"]
+    }
+
+    def "parallelZip should reject vectors of different lengths"() {
+        when:
+        ParallelVectors.parallelZip([1, 2, 3], ["a", "b"], { i, s -> s * i })
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "productMod should compute the product of all elements modulo m"() {
+        given:
+        def m = valueOf(1_000_003L)
+        def bold_x = (1..n).collect { valueOf(it) }
+
+        expect:
+        ParallelVectors.productMod(bold_x, m) == bold_x.inject(ONE) { acc, x -> acc.multiply(x).mod(m) }
+
+        where:
+        n << [1, 2, 100, 10_000]
+    }
+
+    def "productMod should compute the product of the factors computed at each index"() {
+        given:
+        def m = valueOf(1_000_003L)
+
+        expect:
+        ParallelVectors.productMod(n, { i -> valueOf(3L).modPow(valueOf(i), m) }, m) ==
+                valueOf(3L).modPow(valueOf(((long) n * (n - 1)).intdiv(2)), m)
+
+        where:
+        n << [0, 1, 2, 100, 10_000]
+    }
+
+    def "productMod of the empty vector should be one"() {
+        expect:
+        ParallelVectors.productMod([], valueOf(11L)) == ONE
+    }
+}
@@ -0,0 +1,109 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support
+
+import spock.lang.Specification
+
+import java.security.SecureRandom
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+/**
+ * Tests for the per-thread mode of the {@link RandomGenerator}
+ */
+class RandomGeneratorTest extends Specification {
+    static SecureRandom seeded(long seed) {
+        def secureRandom = SecureRandom.getInstance("SHA1PRNG", "SUN")
+        secureRandom.setSeed(seed)
+        return secureRandom
+    }
+
+    static RandomGenerator perThread(long seed) {
+        RandomGenerator.perThread(seeded(seed), { SecureRandom.getInstance("SHA1PRNG", "SUN") })
+    }
+
+    def "the per-thread generators should be derived deterministically from the master generator"() {
+        given:
+        def q = BigInteger.valueOf(1_000_003L)
+
+        expect:
+        (0..<10).collect { perThread(42L).randomInZq(q) } as Set == [perThread(42L).randomInZq(q)] as Set
+        perThread(42L).randomBigInteger(q.pow(8)) != perThread(43L).randomBigInteger(q.pow(8))
+    }
+
+    def "each thread should draw from its own generator"() {
+        given:
+        def randomGenerator = perThread(42L)
+        def upperbound = BigInteger.ONE.shiftLeft(256)
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        def draws = executor.invokeAll((0..<4).collect {
+            { -> (0..<100).collect { randomGenerator.randomBigInteger(upperbound) } } as Callable<List<BigInteger>>
+        })*.get()
+
+        then:
+        draws.flatten().every { it.signum() >= 0 && it < upperbound }
+        draws.flatten().toSet().size() == 400
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "the benchmark generators should only depend on the seed and the name of the stream"() {
+        given:
+        def q = BigInteger.ONE.shiftLeft(256)
+        def draw = { long seed, String stream ->
+            def randomGenerator = RandomGenerator.deterministicForBenchmark(seed, stream)
+            (0..<5).collect { randomGenerator.randomInZq(q) }
+        }
+
+        expect:
+        draw(42L, "authority-0") == draw(42L, "authority-0")
+        draw(42L, "authority-0") != draw(42L, "authority-1")
+        draw(42L, "authority-0") != draw(43L, "authority-0")
+    }
+
+    def "the benchmark sub-streams should only depend on the seed and the names of the stream and sub-stream"() {
+        given:
+        def q = BigInteger.ONE.shiftLeft(256)
+        def draw = { String stream, String name ->
+            def randomGenerator = RandomGenerator.deterministicForBenchmark(42L, stream).subStream(name)
+            (0..<5).collect { randomGenerator.randomInZq(q) }
+        }
+
+        expect:
+        draw("authority-0", "voter-1") == draw("authority-0", "voter-1")
+        draw("authority-0", "voter-1") != draw("authority-0", "voter-2")
+        draw("authority-0", "voter-1") != draw("authority-1", "voter-1")
+    }
+
+    def "outside of the benchmark mode, a sub-stream should be the generator itself"() {
+        given:
+        def randomGenerator = perThread(42L)
+
+        expect:
+        randomGenerator.subStream("voter-1").is(randomGenerator)
+        !randomGenerator.isDeterministic()
+        RandomGenerator.deterministicForBenchmark(42L, "authority-0").subStream("voter-1").isDeterministic()
+    }
+}
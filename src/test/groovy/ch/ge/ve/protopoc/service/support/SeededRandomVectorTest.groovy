@@ -0,0 +1,78 @@
+/*-------------------------------------------------------------------------------------------------
+ - #%L                                                                                            -
+ - chvote-protocol-poc                                                                            -
+ - %%                                                                                             -
+ - Copyright (C) 2016 - 2017 République et Canton de Genève                                       -
+ - %%                                                                                             -
+ - This program is free software: you can redistribute it and/or modify                           -
+ - it under the terms of the GNU Affero General Public License as published by                    -
+ - the Free Software Foundation, either version 3 of the License, or                              -
+ - (at your option) any later version.                                                            -
+ -                                                                                                -
+ - This program is distributed in the hope that it will be useful,                                -
+ - but WITHOUT ANY WARRANTY; without even the implied warranty of                                 -
+ - MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the                                   -
+ - GNU General Public License for more details.                                                   -
+ -                                                                                                -
+ - You should have received a copy of the GNU Affero General Public License                       -
+ - along with this program. If not, see <http://www.gnu.org/licenses/>.                           -
+ - #L%                                                                                            -
+ -------------------------------------------------------------------------------------------------*/
+
+package ch.ge.ve.protopoc.service.support
+
+import spock.lang.Specification
+
+/**
+ * Tests on the secret random vectors regenerated from per-chunk seeds
+ */
+class SeededRandomVectorTest extends Specification {
+    static final BigInteger q = BigInteger.valueOf(1009L)
+
+    def "the values should be regenerated identically, whatever the order of the accesses"() {
+        given:
+        def vector = new SeededRandomVector(RandomGenerator.deterministicForBenchmark(42L, "test"), 1000, q, 64)
+
+        when:
+        def forward = (0..<1000).collect { vector[it] }
+        def backward = (999..0).collect { vector[it] }.reverse()
+        def parallel = vector.parallelStream().collect()
+
+        then:
+        forward == backward
+        forward == parallel
+        forward.every { 0 <= it && it < q }
+        forward.toSet().size() > 500
+    }
+
+    def "vectors drawn from the same generator should have independent seeds"() {
+        given:
+        def randomGenerator = RandomGenerator.deterministicForBenchmark(42L, "test")
+        def first = new SeededRandomVector(randomGenerator, 100, q, 64)
+        def second = new SeededRandomVector(randomGenerator, 100, q, 64)
+
+        expect:
+        first != second
+    }
+
+    def "a selection should hold the values at the given indices"() {
+        given:
+        def vector = new SeededRandomVector(RandomGenerator.deterministicForBenchmark(42L, "test"), 200, q, 16)
+        int[] indices = [0, 5, 17, 63, 64, 199]
+
+        expect:
+        vector.select(indices) == indices.collect { vector[it] }
+        vector.select(indices).size() == 6
+    }
+
+    def "a selection should only accept increasing indices"() {
+        given:
+        def vector = new SeededRandomVector(RandomGenerator.deterministicForBenchmark(42L, "test"), 200, q, 16)
+
+        when:
+        vector.select([5, 3] as int[])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}